@@ -0,0 +1,211 @@
+/**
+ * AllocationCheck.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.IndividualRandomStream;
+import sh.pcod.LightField;
+import sh.pcod.TypedFunctions;
+import sh.pcod.EggStage.IBMFunction_HatchSuccess;
+import sh.pcod.EpijuvStage.IBMFunction_Epijuv_VerticalSwimmingSpeed;
+import sh.pcod.FDLStage.IBMFunction_FDL_VerticalSwimmingSpeed;
+import sh.pcod.FDLpfStage.IBMFunction_FDLpf_VerticalSwimmingSpeed;
+import sh.pcod.YSLStage.IBMFunction_YSL_PNR;
+import sh.pcod.YSLStage.IBMFunction_YSL_YSA;
+import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
+
+/**
+ * Allocation-rate regression check for the per-step calculations used by the
+ * stages' step() methods: the typed BIOEN entry point, TotalMortality(...) and
+ * calcLight(...) with caller-supplied output arrays, the shared light field and
+ * the module's IBM functions called through TypedFunctions.value(...).
+ *
+ * This checks the calculations, not step() itself, which needs the ROMS fields
+ * and is not allocation-free: the framework functions selected for vertical
+ * movement (fcnVM returns a new double[]), vertical velocity, mortality and
+ * habitat suitability are called through the boxed calculate(Object), and the
+ * Lagrangian particle tracking, the DateTimeFunctions and the track and report
+ * strings allocate as well.
+ *
+ * Each calculation is warmed up and then run over a fixed input corpus while the
+ * bytes allocated by the current thread are measured (com.sun.management.ThreadMXBean).
+ * A calculation fails if it allocates more than the limit (default 8 bytes per call,
+ * i.e. essentially nothing).
+ *
+ * Usage:
+ *   java -cp benchmarks.jar:framework.jar sh.pcod.benchmarks.AllocationCheck [calls]
+ *
+ * The limit can be overridden by the system property "allocation.maxBytesPerCall".
+ * The exit status is 1 if any calculation fails.
+ */
+public class AllocationCheck {
+
+    /** default number of measured calls per calculation */
+    public static final int DEFAULT_CALLS = 200000;
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    private AllocationCheck(){}
+
+    /**
+     * One calculation to check.
+     */
+    interface Task {
+        void run(int i);
+    }
+
+    public static void main(String[] args) {
+        int calls = (args.length>0) ? Integer.parseInt(args[0]) : DEFAULT_CALLS;
+        double maxBytes = Double.parseDouble(System.getProperty("allocation.maxBytesPerCall","8"));
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!mx.isThreadAllocatedMemorySupported()) {
+            System.out.println("allocation check: thread allocated memory is not supported by this JVM");
+            return;
+        }
+        mx.setThreadAllocatedMemoryEnabled(true);
+        System.out.println("allocation check: calls = "+calls+", max bytes/call = "+maxBytes);
+        boolean passed = true;
+        for (String name: names()) {
+            double b = bytesPerCall(mx,task(name),calls);
+            boolean ok = b<=maxBytes;
+            report(System.out,name,b,ok);
+            passed &= ok;
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) System.exit(1);
+    }
+
+    /**
+     * Returns the names of the checked calculations.
+     */
+    static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (String light: new String[]{"day","night","dark"}) {
+            names.add("bioen."+light);
+            names.add("bioen.tabulated."+light);
+            names.add("mortality."+light);
+        }
+        names.add("calcLight");
+        names.add("surfaceLight");
+        names.add("typedFunction.unary");
+        names.add("typedFunction.binary");
+        return names;
+    }
+
+    /**
+     * Measures the bytes allocated per call of task, after warming it up.
+     */
+    static double bytesPerCall(com.sun.management.ThreadMXBean mx, Task task, int calls) {
+        long id = Thread.currentThread().getId();
+        for (int i=0; i<calls; i++) task.run(i&(CORPUS_SIZE-1));//warm up
+        long b0 = mx.getThreadAllocatedBytes(id);
+        for (int i=0; i<calls; i++) task.run(i&(CORPUS_SIZE-1));
+        long b1 = mx.getThreadAllocatedBytes(id);
+        return ((double) (b1-b0))/calls;
+    }
+
+    /**
+     * Creates the task for the named calculation, with its input corpus.
+     */
+    static Task task(String name) {
+        final Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        String light = name.substring(name.lastIndexOf('.')+1);
+        final boolean night = "night".equals(light);
+        final boolean dark = "dark".equals(light);
+        if (name.startsWith("bioen")) {
+            final boolean tabulated = name.startsWith("bioen.tabulated");
+            final IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+            final BioenergeticsInput[] ins = BenchmarkInputs.bioenergetics(BenchmarkInputs.DEFAULT_SEED,CORPUS_SIZE,
+                                                BenchmarkInputs.MIN_SL,BenchmarkInputs.MAX_SL,night);
+            for (int i=0; i<CORPUS_SIZE; i++) {
+                if (dark) ins[i].eb = 0.0;
+                ins[i].tabulatedVisualRange = tabulated;
+                ins[i].tabulatedCapture = tabulated;
+                ins[i].random = new IndividualRandomStream(i,0);
+            }
+            final BioenergeticsResult out = new BioenergeticsResult();
+            return new Task() {
+                @Override
+                public void run(int i) {
+                    fcn.calculate(ins[i],out);
+                }
+            };
+        }
+        if (name.startsWith("mortality")) {
+            final double[][] v = new double[CORPUS_SIZE][];
+            for (int i=0; i<CORPUS_SIZE; i++) {
+                double[] lt = BenchmarkInputs.light(r,100*r.nextDouble(),night);
+                double sl = BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble();
+                double dwmax = BenchmarkInputs.dryWeight(sl);
+                v[i] = new double[]{sl,dark ? 0.0 : lt[0],lt[1],dwmax*(0.6+0.4*r.nextDouble()),r.nextDouble(),dwmax};
+            }
+            final double[] out = new double[5];
+            return new Task() {
+                @Override
+                public void run(int i) {
+                    double[] x = v[i];
+                    IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(x[0],x[1],x[2],x[3],x[4],x[5],false,out);
+                }
+            };
+        }
+        if (name.equals("calcLight")) {
+            final double[][] v = new double[CORPUS_SIZE][];
+            for (int i=0; i<CORPUS_SIZE; i++) {
+                v[i] = new double[]{5*r.nextDouble(),100*r.nextDouble(),20+2000*r.nextDouble()};
+            }
+            final double[] out = new double[2];
+            return new Task() {
+                @Override
+                public void run(int i) {
+                    double[] x = v[i];
+                    IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(x[0],x[1],x[2],out);
+                }
+            };
+        }
+        if (name.startsWith("typedFunction")) {
+            //several function classes, so the call site is not inlined (as in a model run)
+            final boolean unary = name.endsWith("unary");
+            final IBMFunctionInterface[] fcns = unary ?
+                new IBMFunctionInterface[]{new IBMFunction_YSL_PNR(),new IBMFunction_YSL_YSA(),new IBMFunction_HatchSuccess()} :
+                new IBMFunctionInterface[]{new IBMFunction_FDL_VerticalSwimmingSpeed(),new IBMFunction_FDLpf_VerticalSwimmingSpeed(),
+                                           new IBMFunction_Epijuv_VerticalSwimmingSpeed()};
+            final double[][] v = new double[CORPUS_SIZE][];
+            for (int i=0; i<CORPUS_SIZE; i++) {
+                v[i] = new double[]{0.5+10*r.nextDouble(),5+20*r.nextDouble()};//temperature, total length
+            }
+            final Double[] args2 = new Double[2];
+            return new Task() {
+                @Override
+                public void run(int i) {
+                    double[] x = v[i];
+                    IBMFunctionInterface fcn = fcns[i%fcns.length];
+                    if (unary) TypedFunctions.value(fcn,x[0]);
+                    else TypedFunctions.value(fcn,x[0],x[1],args2);
+                }
+            };
+        }
+        //surfaceLight: latitudes at one model time, as in one time step
+        final double time = BenchmarkInputs.time(r,false);
+        final double[] lat = new double[CORPUS_SIZE];
+        for (int i=0; i<CORPUS_SIZE; i++) lat[i] = BenchmarkInputs.latitude(r);
+        return new Task() {
+            @Override
+            public void run(int i) {
+                LightField.surfaceLight(lat[i],time);
+            }
+        };
+    }
+
+    private static void report(PrintStream ps, String name, double bytesPerCall, boolean ok) {
+        ps.println(String.format("    %-24s %10.2f bytes/call  %s",name,bytesPerCall,ok ? "ok" : "FAILED"));
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * BenchmarkInputs.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.LightField;
+
+/**
+ * Reproducible, randomized inputs for the sh.pcod physiology kernels.
+ *
+ * Values are drawn over the ranges seen in Bering Sea / Gulf of Alaska runs:
+ * latitudes 52-62 N, depths 0-100 m, temperatures -1-12 deg C and standard
+ * lengths 4-30 mm. Dry weight follows the length-weight relationship used by
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.getL_fromW(...). Light at depth is
+ * calculated as in the stage classes, either around local noon (day) or around
+ * midnight (night).
+ */
+public final class BenchmarkInputs {
+
+    /** default seed for the input corpus */
+    public static final long DEFAULT_SEED = 20261016L;
+
+    /** minimum standard length (mm) */
+    public static final double MIN_SL = 4.0;
+    /** maximum standard length (mm) */
+    public static final double MAX_SL = 30.0;
+
+    private BenchmarkInputs(){}
+
+    /**
+     * Creates n BIOEN inputs with standard lengths drawn uniformly between minSL and maxSL.
+     *
+     * @param seed  - random seed
+     * @param n     - number of inputs
+     * @param minSL - minimum standard length (mm)
+     * @param maxSL - maximum standard length (mm)
+     * @param night - true for light around midnight, false for light around noon
+     * @return the inputs
+     */
+    public static BioenergeticsInput[] bioenergetics(long seed, int n, double minSL, double maxSL, boolean night) {
+        Random r = new Random(seed);
+        BioenergeticsInput[] ins = new BioenergeticsInput[n];
+        for (int i=0; i<n; i++) {
+            ins[i] = new BioenergeticsInput();
+            randomize(r,ins[i],minSL+(maxSL-minSL)*r.nextDouble(),night);
+        }
+        return ins;
+    }
+
+    /**
+     * Sets all (Double[]) fields of the input to random values for a larva or
+     * juvenile of the given standard length.
+     *
+     * @param r       - random number generator
+     * @param in      - input to set
+     * @param std_len - standard length (mm)
+     * @param night   - true for light around midnight, false for light around noon
+     */
+    public static void randomize(Random r, BioenergeticsInput in, double std_len, boolean night) {
+        double depth = 100*r.nextDouble();
+        double[] light = light(r,depth,night);
+        double m = dryWeight(std_len);
+        in.t          = -1+13*r.nextDouble();
+        in.m          = m;
+        in.dt         = 3600;
+        in.dtday      = in.dt/86400;
+        in.std_len    = std_len;
+        in.eb         = light[0];
+        in.windX      = 15*r.nextDouble();
+        in.windY      = 15*r.nextDouble();
+        in.depth      = depth;
+        in.stm_sta    = 0.06*m*r.nextDouble();
+        in.attCoeff   = light[1];
+        in.eup        = 20*r.nextDouble();
+        in.ncas       = 20*r.nextDouble();
+        in.ncao       = 20*r.nextDouble();
+        in.cop        = 20*r.nextDouble();
+        in.pCO2       = 300+900*r.nextDouble();
+        in.ageFromYSL = 90*r.nextDouble();
+        in.dwmax      = m*(1+0.2*r.nextDouble());
+    }
+
+    /**
+     * Returns the dry weight (mg) for a standard length (mm), the inverse of
+     * IBMFunction_NonEggStageBIOENGrowthRateDW.getL_fromW(...).
+     */
+    public static double dryWeight(double std_len) {
+        return 1.976E-06*Math.pow(std_len,2.974)*1000;
+    }
+
+    /**
+     * Returns a random latitude (deg N).
+     */
+    public static double latitude(Random r) {
+        return 52+10*r.nextDouble();
+    }
+
+    /**
+     * Returns a random model time (year day with fraction of day) around local
+     * noon (night = false) or midnight (night = true).
+     */
+    public static double time(Random r, boolean night) {
+        double doy = 1+r.nextInt(365);
+        double hour = night ? 21+6*r.nextDouble() : 9+6*r.nextDouble();
+        return doy+(hour%24)/24;
+    }
+
+    /**
+     * Calculates light at depth as in the stage classes.
+     *
+     * @return double[] - {Eb, attenuation coefficient}
+     */
+    public static double[] light(Random r, double depth, boolean night) {
+        double lat = latitude(r);
+        double chla = 5*r.nextDouble();
+        double bathym = 20+2000*r.nextDouble();
+        double slig = LightField.surfaceLightExact(lat,time(r,night));
+        double[] eb2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chla,depth,bathym);
+        return new double[]{0.42*slig*eb2[1],eb2[0]};
+    }
+}
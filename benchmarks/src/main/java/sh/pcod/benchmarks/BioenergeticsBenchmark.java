@@ -0,0 +1,109 @@
+/**
+ * BioenergeticsBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.pcod.BioenergeticsBatch;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.IndividualRandomStream;
+
+/**
+ * Benchmarks for the BIOEN growth function (IBMFunction_NonEggStageBIOENGrowthRateDW).
+ *
+ * Each invocation calculates one individual from a fixed corpus of inputs with
+ * standard lengths within 10% of stdLen and light around noon (day), around
+ * midnight (night) or none at depth (dark). Times are per individual.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BioenergeticsBenchmark {
+
+    /** number of individuals in the input corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    @Param({"day", "night", "dark"})
+    public String light;
+
+    @Param({"4", "8", "15", "30"})
+    public double stdLen;
+
+    @Param({"false", "true"})
+    public boolean tabulatedVisualRange;
+
+    @Param({"false", "true"})
+    public boolean tabulatedCapture;
+
+    private final IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+    private BioenergeticsInput[] ins;
+    private Double[][] boxed;
+    private BioenergeticsResult out;
+    private BioenergeticsBatch batch;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        boolean night = "night".equals(light);
+        ins = new BioenergeticsInput[CORPUS_SIZE];
+        boxed = new Double[CORPUS_SIZE][];
+        batch = new BioenergeticsBatch(CORPUS_SIZE);
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            BioenergeticsInput in = new BioenergeticsInput();
+            BenchmarkInputs.randomize(r,in,stdLen*(0.9+0.2*r.nextDouble()),night);
+            if ("dark".equals(light)) in.eb = 0.0;
+            in.tabulatedVisualRange = tabulatedVisualRange;
+            in.tabulatedCapture = tabulatedCapture;
+            in.random = new IndividualRandomStream(i,0);
+            ins[i] = in;
+            boxed[i] = new Double[]{in.t,in.m,in.dt,in.dtday,in.std_len,in.eb,in.windX,in.windY,in.depth,
+                                    in.stm_sta,in.attCoeff,in.eup,in.ncas,in.ncao,in.cop,in.pCO2,in.ageFromYSL,in.dwmax};
+            batch.setInput(i,in);
+        }
+        out = new BioenergeticsResult();
+        next = 0;
+    }
+
+    /** the original boxed entry point (Math.random() for random numbers) */
+    @Benchmark
+    public Object calculateBoxed() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return fcn.calculate(boxed[next]);
+    }
+
+    /** the typed entry point used by the stages */
+    @Benchmark
+    public BioenergeticsResult calculateTyped() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        fcn.calculate(ins[next],out);
+        return out;
+    }
+
+    /** the struct-of-arrays batch used by ParallelStepper, over the whole corpus */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public double[] calculateBatch() {
+        batch.calculate(CORPUS_SIZE);
+        return batch.gr_mg;
+    }
+}
@@ -0,0 +1,407 @@
+/**
+ * EquivalenceHarness.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import sh.pcod.BioenergeticsBatch;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.IndividualRandomStream;
+import sh.pcod.LightField;
+import sh.pcod.SolarEphemeris;
+
+/**
+ * Golden-output check of the model's BIOEN growth, mortality and light
+ * calculations (and their optimized or tabulated variants) against the frozen
+ * reference copies in ReferenceBioenergetics.
+ *
+ * All variants are run over the same randomized input corpus (see BenchmarkInputs),
+ * with identical random number streams for each individual. For each variant and
+ * output the harness reports the max absolute and relative errors and the number
+ * of samples outside tolerance. A sample is within tolerance if its absolute
+ * error is at most the variant's absolute tolerance or its relative error is at
+ * most the variant's relative tolerance. Variants whose random number use differs
+ * from the reference (tabulated capture) are compared on the corpus means instead.
+ * The BIOEN batch (BioenergeticsBatch) is compared with the reference as well.
+ * The shared solar ephemeris is compared with the zenith angle given by the
+ * framework over a fixed lon/lat/time grid, refined around sunrise and sunset.
+ *
+ * Usage:
+ *   java -cp benchmarks.jar:framework.jar sh.pcod.benchmarks.EquivalenceHarness [n [seed]]
+ *
+ * Tolerances can be overridden by the system properties "equivalence.[variant].abs"
+ * and "equivalence.[variant].rel". The exit status is 1 if any variant fails.
+ */
+public class EquivalenceHarness {
+
+    /** default number of inputs in the corpus */
+    public static final int DEFAULT_N = 20000;
+
+    /** BIOEN outputs, in the order of BioenergeticsResult.getValues() */
+    public static final String[] BIOEN_OUTPUTS = {"gr_mg","meta","ing","assi","stomachFullness","avgRank","avgSize","eps","metamax","gr_mg_max"};
+    /** TotalMortality(...) outputs */
+    public static final String[] MORTALITY_OUTPUTS = {"mortality","starved","fishMortality","invertebrateMortality","starvationMortality"};
+    /** number of inputs per batch in the bioen.batch comparison (not a divisor of DEFAULT_N) */
+    public static final int BATCH_SIZE = 300;
+    /** every DARK_EVERY-th sample of the BIOEN and mortality corpora is in darkness */
+    public static final int DARK_EVERY = 8;
+    /** light outputs */
+    public static final String[] LIGHT_OUTPUTS = {"surfaceLight","attCoef","ebDepth"};
+    /** solar zenith angle outputs */
+    public static final String[] ZENITH_OUTPUTS = {"zenith"};
+    /** day/night outputs (1 if the zenith angle is above SolarEphemeris.HORIZON_ZENITH) */
+    public static final String[] DAY_NIGHT_OUTPUTS = {"night"};
+    /** time step (min) of the zenith grid */
+    public static final int ZENITH_STEP = 20;
+    /** offsets (min) from sunrise and sunset added to the zenith grid */
+    public static final double[] ZENITH_OFFSETS = {-5,-1,-1.0/6,0,1.0/6,1,5};
+
+    private EquivalenceHarness(){}
+
+    public static void main(String[] args) {
+        int n = (args.length>0) ? Integer.parseInt(args[0]) : DEFAULT_N;
+        long seed = (args.length>1) ? Long.parseLong(args[1]) : BenchmarkInputs.DEFAULT_SEED;
+        List<Comparison> cmps = run(n,seed);
+        boolean passed = true;
+        System.out.println("equivalence check: n = "+n+", seed = "+seed);
+        for (Comparison c: cmps) {
+            c.report(System.out);
+            passed &= c.passed();
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) System.exit(1);
+    }
+
+    /**
+     * Runs all comparisons over a corpus of n inputs.
+     *
+     * @param n    - number of inputs
+     * @param seed - random seed for the corpus
+     * @return the comparisons, with accumulated errors
+     */
+    public static List<Comparison> run(int n, long seed) {
+        List<Comparison> cmps = new ArrayList<>();
+        cmps.add(bioenergetics(n,seed));
+        cmps.add(bioenergeticsBatch(n,seed));
+        cmps.add(bioenergeticsTabulatedVisualRange(n,seed));
+        cmps.add(bioenergeticsTabulatedCapture(n,seed));
+        cmps.add(mortality(n,seed,false));
+        cmps.add(mortality(n,seed,true));
+        cmps.add(light(n,seed,false));
+        cmps.add(light(n,seed,true));
+        cmps.add(zenith(false));
+        cmps.add(zenith(true));
+        return cmps;
+    }
+
+    /**
+     * Creates the input for sample i of the BIOEN corpus. Even samples have light
+     * around noon, odd samples around midnight. Every DARK_EVERY-th sample has
+     * no light at depth.
+     */
+    static BioenergeticsInput bioenergeticsInput(long seed, int i) {
+        Random r = new Random(seed+31L*i);
+        BioenergeticsInput in = new BioenergeticsInput();
+        double sl = BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble();
+        BenchmarkInputs.randomize(r,in,sl,(i&1)==1);
+        if (i%DARK_EVERY==DARK_EVERY-1) in.eb = 0.0;
+        in.random = new IndividualRandomStream(i,0);
+        return in;
+    }
+
+    static Comparison bioenergetics(int n, long seed) {
+        Comparison cmp = new Comparison("bioen",BIOEN_OUTPUTS,0,0,false);
+        ReferenceBioenergetics ref = new ReferenceBioenergetics();
+        IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+        BioenergeticsResult r0 = new BioenergeticsResult();
+        BioenergeticsResult r1 = new BioenergeticsResult();
+        for (int i=0; i<n; i++) {
+            ref.calculate(bioenergeticsInput(seed,i),r0);
+            fcn.calculate(bioenergeticsInput(seed,i),r1);
+            cmp.add(values(r0),values(r1));
+        }
+        return cmp;
+    }
+
+    /**
+     * Compares the struct-of-arrays batch (as used by ParallelStepper) with the
+     * reference, in batches of BATCH_SIZE inputs (the last one partly filled).
+     */
+    static Comparison bioenergeticsBatch(int n, long seed) {
+        Comparison cmp = new Comparison("bioen.batch",BIOEN_OUTPUTS,0,0,false);
+        ReferenceBioenergetics ref = new ReferenceBioenergetics();
+        BioenergeticsBatch batch = new BioenergeticsBatch(BATCH_SIZE);
+        BioenergeticsResult r0 = new BioenergeticsResult();
+        BioenergeticsResult r1 = new BioenergeticsResult();
+        for (int i0=0; i0<n; i0+=batch.capacity) {
+            int nb = Math.min(batch.capacity,n-i0);
+            for (int j=0; j<nb; j++) batch.setInput(j,bioenergeticsInput(seed,i0+j));
+            batch.calculate(nb);
+            for (int j=0; j<nb; j++) {
+                ref.calculate(bioenergeticsInput(seed,i0+j),r0);
+                batch.getResult(j,r1);
+                cmp.add(values(r0),values(r1));
+            }
+        }
+        return cmp;
+    }
+
+    static Comparison bioenergeticsTabulatedVisualRange(int n, long seed) {
+        Comparison cmp = new Comparison("bioen.tabulatedVisualRange",BIOEN_OUTPUTS,1.0E-12,1.0E-4,false);
+        ReferenceBioenergetics ref = new ReferenceBioenergetics();
+        IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+        BioenergeticsResult r0 = new BioenergeticsResult();
+        BioenergeticsResult r1 = new BioenergeticsResult();
+        for (int i=0; i<n; i++) {
+            ref.calculate(bioenergeticsInput(seed,i),r0);
+            BioenergeticsInput in = bioenergeticsInput(seed,i);
+            in.tabulatedVisualRange = true;
+            fcn.calculate(in,r1);
+            cmp.add(values(r0),values(r1));
+        }
+        return cmp;
+    }
+
+    static Comparison bioenergeticsTabulatedCapture(int n, long seed) {
+        Comparison cmp = new Comparison("bioen.tabulatedCapture",BIOEN_OUTPUTS,1.0E-12,0.02,true);
+        ReferenceBioenergetics ref = new ReferenceBioenergetics();
+        IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+        BioenergeticsResult r0 = new BioenergeticsResult();
+        BioenergeticsResult r1 = new BioenergeticsResult();
+        for (int i=0; i<n; i++) {
+            ref.calculate(bioenergeticsInput(seed,i),r0);
+            BioenergeticsInput in = bioenergeticsInput(seed,i);
+            in.tabulatedCapture = true;
+            fcn.calculate(in,r1);
+            cmp.add(values(r0),values(r1));
+        }
+        return cmp;
+    }
+
+    static Comparison mortality(int n, long seed, boolean tabulatedVisualRange) {
+        Comparison cmp = tabulatedVisualRange ?
+                new Comparison("mortality.tabulatedVisualRange",MORTALITY_OUTPUTS,1.0E-12,1.0E-4,false) :
+                new Comparison("mortality",MORTALITY_OUTPUTS,0,0,false);
+        for (int i=0; i<n; i++) {
+            Random r = new Random(seed+31L*i);
+            double[] lt = BenchmarkInputs.light(r,100*r.nextDouble(),(i&1)==1);
+            if (i%DARK_EVERY==DARK_EVERY-1) lt[0] = 0.0;
+            double sl = BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble();
+            double dwmax = BenchmarkInputs.dryWeight(sl);
+            double dw = dwmax*(0.6+0.4*r.nextDouble());
+            double sf = r.nextDouble();
+            cmp.add(ReferenceBioenergetics.TotalMortality(sl,lt[0],lt[1],dw,sf,dwmax),
+                    IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(sl,lt[0],lt[1],dw,sf,dwmax,tabulatedVisualRange));
+        }
+        return cmp;
+    }
+
+    static Comparison light(int n, long seed, boolean shared) {
+        //the shared light field interpolates across the day/night boundary, where surface light has a kink
+        Comparison cmp = shared ?
+                new Comparison("light.sharedField",LIGHT_OUTPUTS,0.5,1.0E-3,false) :
+                new Comparison("light",LIGHT_OUTPUTS,0,0,false);
+        double[] v0 = new double[3];
+        double[] v1 = new double[3];
+        Random r = new Random(seed);
+        double time = BenchmarkInputs.time(r,false);
+        for (int i=0; i<n; i++) {
+            //a new model time every 1000 samples, as in successive time steps
+            if (i%1000==0) time = BenchmarkInputs.time(r,(i/1000)%2==1);
+            double lat = BenchmarkInputs.latitude(r);
+            double chla = 5*r.nextDouble();
+            double depth = 100*r.nextDouble();
+            double bathym = 20+2000*r.nextDouble();
+            double maxLight = ReferenceBioenergetics.calcLightQSW(lat,time)[0]/0.217;
+            double[] k0 = ReferenceBioenergetics.calcLight(chla,depth,bathym);
+            v0[0] = ReferenceBioenergetics.calcLightSurlig(lat,time,maxLight)[1];
+            v0[1] = k0[0];
+            v0[2] = k0[1];
+            double[] k1 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chla,depth,bathym);
+            v1[0] = shared ? LightField.surfaceLight(lat,time) : LightField.surfaceLightExact(lat,time);
+            v1[1] = k1[0];
+            v1[2] = k1[1];
+            cmp.add(v0,v1);
+        }
+        return cmp;
+    }
+
+    /**
+     * Compares the shared solar ephemeris with SolarEphemeris.zenithExact(...) over
+     * a grid of longitudes, latitudes, days and times of day (every ZENITH_STEP
+     * minutes), plus times at ZENITH_OFFSETS from each crossing of HORIZON_ZENITH
+     * between grid times (found by bisection). If dayNight is false, the geometric
+     * zenith angle from the shared terms alone (zenithApprox) is compared; its
+     * error must be at most HORIZON_BAND for the classification to be unchanged.
+     * If dayNight is true, the day/night classification by zenith(...), as used
+     * by the stages, must match exactly.
+     */
+    static Comparison zenith(boolean dayNight) {
+        //zenith(...) only keeps the classification if the shared terms are within HORIZON_BAND of the framework
+        Comparison cmp = dayNight ?
+                new Comparison("zenith.dayNight",DAY_NIGHT_OUTPUTS,0,0,false) :
+                new Comparison("zenith.shared",ZENITH_OUTPUTS,SolarEphemeris.HORIZON_BAND,0,false);
+        double[] v0 = new double[1];
+        double[] v1 = new double[1];
+        double step = ZENITH_STEP/1440.0;
+        for (double lat=-60; lat<=70; lat+=10) {
+            for (double lon=-180; lon<180; lon+=15) {
+                for (int day=1; day<=365; day+=14) {
+                    double t0 = day;
+                    double z0 = SolarEphemeris.zenithExact(lon,lat,t0);
+                    for (double t1=day+step; t1<day+1; t1+=step) {
+                        double z1 = SolarEphemeris.zenithExact(lon,lat,t1);
+                        addZenith(cmp,dayNight,lon,lat,t1,v0,v1);
+                        if ((z0>SolarEphemeris.HORIZON_ZENITH)!=(z1>SolarEphemeris.HORIZON_ZENITH)) {
+                            double tc = crossing(lon,lat,t0,t1,z0);
+                            for (double dm: ZENITH_OFFSETS) addZenith(cmp,dayNight,lon,lat,tc+dm/1440.0,v0,v1);
+                        }
+                        t0 = t1;
+                        z0 = z1;
+                    }
+                }
+            }
+        }
+        return cmp;
+    }
+
+    private static void addZenith(Comparison cmp, boolean dayNight, double lon, double lat, double time, double[] v0, double[] v1) {
+        double z0 = SolarEphemeris.zenithExact(lon,lat,time);
+        if (dayNight) {
+            v0[0] = (z0>SolarEphemeris.HORIZON_ZENITH) ? 1 : 0;
+            v1[0] = (SolarEphemeris.zenith(lon,lat,time)>SolarEphemeris.HORIZON_ZENITH) ? 1 : 0;
+        } else {
+            v0[0] = z0;
+            v1[0] = SolarEphemeris.zenithApprox(lon,lat,time);
+        }
+        cmp.add(v0,v1);
+    }
+
+    /**
+     * Returns the time between t0 and t1 at which the framework's zenith angle
+     * crosses HORIZON_ZENITH, by bisection.
+     */
+    private static double crossing(double lon, double lat, double t0, double t1, double z0) {
+        boolean night0 = z0>SolarEphemeris.HORIZON_ZENITH;
+        for (int i=0; i<30; i++) {
+            double t = 0.5*(t0+t1);
+            if ((SolarEphemeris.zenithExact(lon,lat,t)>SolarEphemeris.HORIZON_ZENITH)==night0) t0 = t; else t1 = t;
+        }
+        return 0.5*(t0+t1);
+    }
+
+    private static double[] values(BioenergeticsResult r) {
+        return new double[]{r.gr_mg,r.meta,r.ing,r.assi,r.stomachFullness,r.avgRank,r.avgSize,r.eps,r.metamax,r.gr_mg_max};
+    }
+
+    /**
+     * Errors of one variant against the reference, by output.
+     */
+    public static final class Comparison {
+        /** variant name */
+        public final String name;
+        /** output names */
+        public final String[] outputs;
+        /** absolute tolerance */
+        public final double absTol;
+        /** relative tolerance */
+        public final double relTol;
+        /** flag to compare corpus means instead of individual samples */
+        public final boolean compareMeans;
+
+        private final double[] maxAbs;
+        private final double[] maxRel;
+        private final long[] failures;
+        private final double[] sumRef;
+        private final double[] sumTest;
+        private long n = 0;
+
+        public Comparison(String name, String[] outputs, double absTol, double relTol, boolean compareMeans) {
+            this.name = name;
+            this.outputs = outputs;
+            this.absTol = Double.parseDouble(System.getProperty("equivalence."+name+".abs",Double.toString(absTol)));
+            this.relTol = Double.parseDouble(System.getProperty("equivalence."+name+".rel",Double.toString(relTol)));
+            this.compareMeans = compareMeans;
+            maxAbs   = new double[outputs.length];
+            maxRel   = new double[outputs.length];
+            failures = new long[outputs.length];
+            sumRef   = new double[outputs.length];
+            sumTest  = new double[outputs.length];
+        }
+
+        /**
+         * Adds one sample.
+         *
+         * @param ref  - reference outputs
+         * @param test - outputs of the variant
+         */
+        public void add(double[] ref, double[] test) {
+            for (int k=0; k<outputs.length; k++) {
+                sumRef[k]  += ref[k];
+                sumTest[k] += test[k];
+                double a = absError(ref[k],test[k]);
+                double rel = relError(ref[k],test[k]);
+                if (a>maxAbs[k])   maxAbs[k] = a;
+                if (rel>maxRel[k]) maxRel[k] = rel;
+                if (!compareMeans && !within(a,rel)) failures[k]++;
+            }
+            n++;
+        }
+
+        /**
+         * Returns true if all outputs are within tolerance.
+         */
+        public boolean passed() {
+            for (int k=0; k<outputs.length; k++) {
+                if (compareMeans) {
+                    double mr = sumRef[k]/n;
+                    double mt = sumTest[k]/n;
+                    if (!within(absError(mr,mt),relError(mr,mt))) return false;
+                } else if (failures[k]>0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Prints the errors by output.
+         */
+        public void report(PrintStream ps) {
+            ps.println(name+" (abs tol "+absTol+", rel tol "+relTol+(compareMeans ? ", corpus means" : "")+"): "+(passed() ? "ok" : "FAILED"));
+            for (int k=0; k<outputs.length; k++) {
+                String s = String.format("    %-22s max abs %12.5e  max rel %12.5e",outputs[k],maxAbs[k],maxRel[k]);
+                if (compareMeans) {
+                    double mr = sumRef[k]/n;
+                    double mt = sumTest[k]/n;
+                    s += String.format("  mean ref %12.5e  mean %12.5e  rel %12.5e",mr,mt,relError(mr,mt));
+                } else {
+                    s += "  failures "+failures[k]+"/"+n;
+                }
+                ps.println(s);
+            }
+        }
+
+        private boolean within(double a, double rel) {
+            return (a<=absTol)||(rel<=relTol);
+        }
+
+        private static double absError(double ref, double test) {
+            if (Double.compare(ref,test)==0) return 0;//also NaN == NaN
+            double a = Math.abs(test-ref);
+            return Double.isNaN(a) ? Double.POSITIVE_INFINITY : a;
+        }
+
+        private static double relError(double ref, double test) {
+            double a = absError(ref,test);
+            if (a==0) return 0;
+            return (ref==0) ? Double.POSITIVE_INFINITY : a/Math.abs(ref);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * LightBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.LightField;
+
+/**
+ * Benchmarks for the light calculations done by each non-egg stage every time step.
+ *
+ * All inputs in the corpus share one model time, as the individuals in a time
+ * step do, so the shared light field is measured in its steady state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightBenchmark {
+
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    @Param({"day", "night"})
+    public String light;
+
+    private double time;
+    private double[] lat;
+    private double[] maxLight;
+    private double[] chla;
+    private double[] depth;
+    private double[] bathym;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        time     = BenchmarkInputs.time(r,"night".equals(light));
+        lat      = new double[CORPUS_SIZE];
+        maxLight = new double[CORPUS_SIZE];
+        chla     = new double[CORPUS_SIZE];
+        depth    = new double[CORPUS_SIZE];
+        bathym   = new double[CORPUS_SIZE];
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            lat[i]      = BenchmarkInputs.latitude(r);
+            maxLight[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat[i],time)[0]/0.217;
+            chla[i]     = 5*r.nextDouble();
+            depth[i]    = 100*r.nextDouble();
+            bathym[i]   = 20+2000*r.nextDouble();
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public double[] calcLightQSW() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat[next],time);
+    }
+
+    @Benchmark
+    public double[] calcLightSurlig() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightSurlig(lat[next],time,maxLight[next]);
+    }
+
+    @Benchmark
+    public double[] calcLight() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chla[next],depth[next],bathym[next]);
+    }
+
+    /** surface light as calculated by the stages without the shared light field */
+    @Benchmark
+    public double surfaceLightExact() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return LightField.surfaceLightExact(lat[next],time);
+    }
+
+    /** surface light from the shared light field */
+    @Benchmark
+    public double surfaceLightField() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return LightField.surfaceLight(lat[next],time);
+    }
+}
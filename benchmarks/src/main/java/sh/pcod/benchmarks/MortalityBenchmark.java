@@ -0,0 +1,82 @@
+/**
+ * MortalityBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+
+/**
+ * Benchmarks for IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(...),
+ * with light around noon (day), around midnight (night) or none at depth (dark).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MortalityBenchmark {
+
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    @Param({"day", "night", "dark"})
+    public String light;
+
+    @Param({"4", "8", "15", "30"})
+    public double stdLen;
+
+    @Param({"false", "true"})
+    public boolean tabulatedVisualRange;
+
+    private double[] sl;
+    private double[] eb;
+    private double[] k;
+    private double[] dw;
+    private double[] sf;
+    private double[] dwmax;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        boolean night = "night".equals(light);
+        sl    = new double[CORPUS_SIZE];
+        eb    = new double[CORPUS_SIZE];
+        k     = new double[CORPUS_SIZE];
+        dw    = new double[CORPUS_SIZE];
+        sf    = new double[CORPUS_SIZE];
+        dwmax = new double[CORPUS_SIZE];
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            double[] lt = BenchmarkInputs.light(r,100*r.nextDouble(),night);
+            sl[i]    = stdLen*(0.9+0.2*r.nextDouble());
+            eb[i]    = "dark".equals(light) ? 0.0 : lt[0];
+            k[i]     = lt[1];
+            dwmax[i] = BenchmarkInputs.dryWeight(sl[i]);
+            dw[i]    = dwmax[i]*(0.6+0.4*r.nextDouble());
+            sf[i]    = r.nextDouble();
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public double[] totalMortality() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        int i = next;
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(sl[i],eb[i],k[i],dw[i],sf[i],dwmax[i],tabulatedVisualRange);
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * ParallelStepperCheck.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import sh.pcod.BioenergeticsBatch;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.IndividualRandomStream;
+import sh.pcod.ParallelStepper;
+import sh.pcod.SpatialOrder;
+import sh.pcod.StepContext;
+import sh.pcod.StepCost;
+import wts.models.DisMELS.framework.LifeStageInterface;
+
+/**
+ * Determinism check of ParallelStepper: a population is stepped over several time
+ * steps one individual at a time on one thread, and with batched BIOEN calculations
+ * and several threads (and different chunkings and batch sizes), and the results
+ * must be identical.
+ *
+ * The individuals are synthetic (see Individual): each step draws from the
+ * individual's random number stream, as the stages do, with a cost that varies
+ * by orders of magnitude between individuals and over time. One in BIOEN_EVERY
+ * individuals also runs the BIOEN calculation on inputs derived from its state,
+ * with its random number stream, between beginStep(...) and endStep(...) (see
+ * BioenergeticsBatch.Batchable), and adds the result to its state. Some die and
+ * some metamorphose into new individuals, which are added to the population after
+ * each time step, as the model does. For each configuration the check records
+ * the order of the dead and metamorphosed individuals in each time step and the
+ * final state of every individual, and compares them with the single-threaded
+ * run without batching.
+ *
+ * The same comparison, with the ids and states sorted, is made for runs in which
+ * the population is reordered before every step: the results of each individual
+ * must not depend on the order of the list. The Morton keys of SpatialOrder are
+ * checked to stay below NO_KEY up to the largest grid indices.
+ *
+ * It also checks ParallelStepper.partition(...) on cost distributions like those
+ * of a model run (see StepCost): the chunks must cover [0,n) contiguously, have at
+ * most the maximum number of elements, and none may cost more than total/nChunks
+ * plus the cost of its last element.
+ *
+ * Usage:
+ *   java -cp benchmarks.jar:framework.jar sh.pcod.benchmarks.ParallelStepperCheck [n [steps [threads]]]
+ *
+ * The exit status is 1 if any configuration differs from the single-threaded run
+ * or any partition check fails.
+ */
+public class ParallelStepperCheck {
+
+    /** default number of individuals at the start */
+    public static final int DEFAULT_N = 20000;
+    /** default number of time steps */
+    public static final int DEFAULT_STEPS = 10;
+    /** time step (s) */
+    public static final double DT = 3600;
+    /** one in BIOEN_EVERY individuals runs the BIOEN calculation */
+    public static final int BIOEN_EVERY = 8;
+    /** relative step costs of the stages (see StepCost) */
+    private static final double[] STAGE_COSTS = {StepCost.EGG,StepCost.BASE,StepCost.BIOEN_DARK,
+                                                 StepCost.BIOEN_LARGE,StepCost.BIOEN_SMALL};
+
+    private ParallelStepperCheck(){}
+
+    public static void main(String[] args) {
+        int n       = (args.length>0) ? Integer.parseInt(args[0]) : DEFAULT_N;
+        int steps   = (args.length>1) ? Integer.parseInt(args[1]) : DEFAULT_STEPS;
+        int threads = (args.length>2) ? Integer.parseInt(args[2]) : Math.max(4,Runtime.getRuntime().availableProcessors());
+        System.out.println("parallel stepper check: n = "+n+", steps = "+steps+", threads = "+threads);
+        ParallelStepper single = new ParallelStepper(1,ParallelStepper.DEFAULT_THRESHOLD,
+                                                     ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,0,false);
+        List<String> ref = run(single,n,steps,null);
+        boolean passed = true;
+        //threads, threshold (and batch size), chunks per thread, batching
+        int[][] configs = {{1,ParallelStepper.DEFAULT_THRESHOLD,1,1},
+                           {1,7,1,1},
+                           {threads,ParallelStepper.DEFAULT_THRESHOLD,1,0},
+                           {threads,ParallelStepper.DEFAULT_THRESHOLD,1,1},
+                           {threads,ParallelStepper.DEFAULT_THRESHOLD,ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,1},
+                           {threads,16,ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,1},
+                           {2,1,1,1}};
+        for (int[] c: configs) {
+            ParallelStepper stepper = new ParallelStepper(c[0],c[1],c[2],0,c[3]==1);
+            List<String> res;
+            try {
+                res = run(stepper,n,steps,null);
+            } finally {
+                stepper.shutdown();
+            }
+            String diff = firstDifference(ref,res);
+            boolean ok = (diff==null);
+            System.out.println(String.format("    threads %2d  threshold %4d  chunks/thread %d  %-9s  %s",c[0],c[1],c[2],
+                                             (c[3]==1) ? "batched" : "unbatched",ok ? "ok" : "FAILED: "+diff));
+            passed &= ok;
+        }
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        for (int t: new int[]{1,threads}) {
+            ParallelStepper stepper = new ParallelStepper(t,ParallelStepper.DEFAULT_THRESHOLD,
+                                                          ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,1);
+            List<String> res;
+            try {
+                res = run(stepper,n,steps,r);
+            } finally {
+                stepper.shutdown();
+            }
+            String diff = firstDifference(byIndividual(ref),byIndividual(res));
+            boolean ok = (diff==null);
+            System.out.println(String.format("    threads %2d  reordered every step                      %s",t,
+                                             ok ? "ok" : "FAILED: "+diff));
+            passed &= ok;
+        }
+        for (double x: new double[]{-1,Double.NaN,1000,(1<<SpatialOrder.BITS)-2,(1<<SpatialOrder.BITS)-1,1E12,Double.POSITIVE_INFINITY}) {
+            long key = SpatialOrder.key(new double[]{x,x,x});
+            boolean ok = (key>=0)&&(key<SpatialOrder.NO_KEY);
+            System.out.println(String.format("    key of cell (%s,%s,%s) = %x  %s",x,x,x,key,ok ? "ok" : "FAILED: not below NO_KEY"));
+            passed &= ok;
+        }
+        for (String name: new String[]{"uniform","stages","one expensive","zero","few"}) {
+            int nc = (name.equals("few")) ? 5 : n;
+            double[] costs = new double[nc];
+            for (int i=0; i<nc; i++) {
+                switch (name) {
+                    case "uniform": costs[i] = 1; break;
+                    case "stages":  costs[i] = STAGE_COSTS[r.nextInt(STAGE_COSTS.length)]; break;
+                    case "one expensive": costs[i] = (i==nc/3) ? 1E6 : 1; break;
+                    case "few":     costs[i] = 1+r.nextDouble(); break;
+                    default:        costs[i] = 0;
+                }
+            }
+            for (int[] c: new int[][]{{threads*ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,nc},//cost only
+                                      {threads*ParallelStepper.DEFAULT_CHUNKS_PER_THREAD,ParallelStepper.DEFAULT_THRESHOLD},
+                                      {threads,16}}) {
+                String err = checkPartition(costs,ParallelStepper.partition(costs,c[0],c[1]),c[0],c[1]);
+                boolean ok = (err==null);
+                System.out.println(String.format("    partition %-14s chunks %3d  max length %5d  %s",name,c[0],c[1],
+                                                 ok ? "ok" : "FAILED: "+err));
+                passed &= ok;
+            }
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) System.exit(1);
+    }
+
+    /**
+     * Steps a new population with the given stepper and returns the record of the run:
+     * one line per time step with the dead and metamorphosed individuals, in order,
+     * followed by one line per individual with its final state. If shuffle is given,
+     * the population is shuffled before each step, as a reordering would: the
+     * synthetic individuals have no grid position, so SpatialOrder leaves them in place.
+     */
+    static List<String> run(ParallelStepper stepper, int n, int steps, Random shuffle) {
+        List<LifeStageInterface> pop = new ArrayList<>(n);
+        List<Individual> all = new ArrayList<>(n);
+        for (int i=0; i<n; i++) pop.add(Individual.create(i,all));
+        List<String> record = new ArrayList<>();
+        for (int t=0; t<steps; t++) {
+            List<LifeStageInterface> metamorphosed = new ArrayList<>();
+            List<LifeStageInterface> dead = new ArrayList<>();
+            StepContext ctx = StepContext.create((long) (t*DT),100+t*DT/86400,DT);
+            if (shuffle!=null) Collections.shuffle(pop,shuffle);
+            stepper.step(pop,ctx,metamorphosed,dead);
+            StringBuilder b = new StringBuilder("step "+t+" dead");
+            for (LifeStageInterface lhs: dead) b.append(' ').append(lhs.getID());
+            b.append(" metamorphosed");
+            for (LifeStageInterface lhs: metamorphosed) b.append(' ').append(lhs.getID());
+            record.add(b.toString());
+            pop.addAll(metamorphosed);
+        }
+        for (Individual ind: all) record.add(ind.toString());
+        return record;
+    }
+
+    /**
+     * Checks chunk boundaries returned by ParallelStepper.partition(...), returning
+     * a description of the first problem found, or null.
+     */
+    static String checkPartition(double[] costs, int[] bounds, int nChunks, int maxLength) {
+        int n = costs.length;
+        if ((bounds.length<2)||(bounds[0]!=0)||(bounds[bounds.length-1]!=n)) {
+            return "chunks do not cover [0,"+n+"): "+Arrays.toString(bounds);
+        }
+        double total = 0;
+        for (double c: costs) total += c;
+        double target = total/nChunks;
+        for (int k=0; k+1<bounds.length; k++) {
+            int from = bounds[k];
+            int to   = bounds[k+1];
+            if (to<=from) return "chunk "+k+" is empty: ["+from+","+to+")";
+            if ((total>0)&&(to-from>maxLength)) return "chunk "+k+" has "+(to-from)+" elements";
+            double cost = 0;
+            for (int i=from; i<to; i++) cost += costs[i];
+            if ((total>0)&&(cost>(target+costs[to-1])*(1+1E-9))) {
+                return "chunk "+k+" costs "+cost+", target "+target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the record of a run independent of the order of the individuals: the
+     * ids in each list of dead and metamorphosed individuals and the final states
+     * are sorted.
+     */
+    static List<String> byIndividual(List<String> record) {
+        List<String> res = new ArrayList<>(record.size());
+        List<String> states = new ArrayList<>();
+        for (String line: record) {
+            if (!line.startsWith("step ")) {
+                states.add(line);
+                continue;
+            }
+            int m = line.indexOf(" metamorphosed");
+            int d = line.indexOf(" dead")+" dead".length();
+            res.add(line.substring(0,d)+sortedIds(line.substring(d,m))+" metamorphosed"
+                    +sortedIds(line.substring(m+" metamorphosed".length())));
+        }
+        Collections.sort(states);
+        res.addAll(states);
+        return res;
+    }
+
+    private static String sortedIds(String ids) {
+        String s = ids.trim();
+        if (s.isEmpty()) return "";
+        String[] v = s.split(" ");
+        long[] l = new long[v.length];
+        for (int i=0; i<v.length; i++) l[i] = Long.parseLong(v[i]);
+        Arrays.sort(l);
+        StringBuilder b = new StringBuilder();
+        for (long id: l) b.append(' ').append(id);
+        return b.toString();
+    }
+
+    private static String firstDifference(List<String> ref, List<String> res) {
+        for (int i=0; i<Math.min(ref.size(),res.size()); i++) {
+            if (!ref.get(i).equals(res.get(i))) return "expected ["+ref.get(i)+"] but was ["+res.get(i)+"]";
+        }
+        if (ref.size()!=res.size()) return "expected "+ref.size()+" records but was "+res.size();
+        return null;
+    }
+
+    /**
+     * State of a synthetic individual, behind a proxy implementing LifeStageInterface,
+     * StepCost.Estimable and BioenergeticsBatch.Batchable.
+     */
+    static final class Individual implements InvocationHandler {
+        /** BIOEN growth function for the unbatched steps (it has no parameters) */
+        private static final IBMFunction_NonEggStageBIOENGrowthRateDW BIOEN = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+        /** individuals created so far, in order of creation */
+        private final List<Individual> all;
+        private final long id;
+        /** number of transitions before this stage */
+        private final int stage;
+        private final IndividualRandomStream rnd;
+        private final List<LifeStageInterface> output = new ArrayList<>();
+        private LifeStageInterface self;
+        private boolean alive = true;
+        private boolean active = true;
+        private boolean metamorphose = false;
+        /** number of draws per step (the cost of the step) */
+        private int work;
+        /** accumulated state */
+        private double x = 0;
+        private int stepped = 0;
+        /** BIOEN input and result (null if the individual does not run the BIOEN calculation) */
+        private final BioenergeticsInput bioenIn;
+        private final BioenergeticsResult bioenOut;
+
+        private Individual(long id, int stage, long draws, List<Individual> all) {
+            this.id    = id;
+            this.stage = stage;
+            this.all   = all;
+            rnd  = new IndividualRandomStream(id,draws);
+            work = 1+(int) (1000*Math.pow(rnd.nextDouble(),4));//costs differ by orders of magnitude
+            bioenIn  = (id%BIOEN_EVERY==0) ? new BioenergeticsInput() : null;
+            bioenOut = (id%BIOEN_EVERY==0) ? new BioenergeticsResult() : null;
+        }
+
+        static LifeStageInterface create(long id, List<Individual> all) {
+            return create(id,0,0,all);
+        }
+
+        static LifeStageInterface create(long id, int stage, long draws, List<Individual> all) {
+            Individual ind = new Individual(id,stage,draws,all);
+            ind.self = (LifeStageInterface) Proxy.newProxyInstance(Individual.class.getClassLoader(),
+                    new Class<?>[]{LifeStageInterface.class,StepCost.Estimable.class,BioenergeticsBatch.Batchable.class},ind);
+            all.add(ind);
+            return ind.self;
+        }
+
+        private void step(StepContext ctx) {
+            BioenergeticsInput in = beginStep(ctx);
+            if (in!=null) BIOEN.calculate(in,bioenOut);
+            endStep((in!=null) ? bioenOut : null);
+        }
+
+        private BioenergeticsInput beginStep(StepContext ctx) {
+            double s = 0;
+            for (int i=0; i<work; i++) s += rnd.nextDouble();
+            x += s/work+ctx.yearDay*1E-3;
+            stepped++;
+            if (bioenIn==null) return null;
+            //inputs from the individual's state, alternately in light and in the dark
+            Random r = new Random(31*id+stepped);
+            double sl = BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble();
+            BenchmarkInputs.randomize(r,bioenIn,sl,(stepped&1)==1);
+            bioenIn.random = rnd;
+            return bioenIn;
+        }
+
+        private void endStep(BioenergeticsResult out) {
+            if (out!=null) x += out.gr_mg+out.meta+out.ing+out.stomachFullness+out.avgRank+out.eps;
+            if (rnd.nextDouble()<0.02) {
+                alive  = false;
+                active = false;
+            } else if (rnd.nextDouble()<0.02) {
+                metamorphose = true;
+            }
+            work = Math.max(1,(int) (work*(0.5+rnd.nextDouble())));
+        }
+
+        private List<LifeStageInterface> getMetamorphosedIndividuals() {
+            output.clear();
+            if (metamorphose) {
+                //the next stage keeps the id and continues the random number stream, as in the stages
+                output.add(create(id,stage+1,rnd.getCounter(),all));
+                alive  = false;
+                active = false;
+            }
+            return output;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "step":
+                    step((args[0] instanceof StepContext) ? (StepContext) args[0] : StepContext.get((Double) args[0]));
+                    return null;
+                case "beginStep": return beginStep((StepContext) args[0]);
+                case "endStep":
+                    endStep((BioenergeticsResult) args[0]);
+                    return null;
+                case "getMetamorphosedIndividuals": return getMetamorphosedIndividuals();
+                case "estimateStepCost": return (double) work;
+                case "isAlive":   return alive;
+                case "isActive":  return active;
+                case "getID":     return id;
+                case "getLagrangianParticle": return null;
+                case "hashCode":  return System.identityHashCode(proxy);
+                case "equals":    return proxy==args[0];
+                case "toString":  return toString();
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "id "+id+" stage "+stage+" alive "+alive+" steps "+stepped+" draws "+rnd.getCounter()+" x "+Double.doubleToLongBits(x);
+        }
+    }
+}
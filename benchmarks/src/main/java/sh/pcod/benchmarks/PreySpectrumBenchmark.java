@@ -0,0 +1,91 @@
+/**
+ * PreySpectrumBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.PreySizeSpectrum;
+
+/**
+ * Benchmarks for the prey size spectrum: IBMFunction_NonEggStageBIOENGrowthRateDW.zooplankton(...)
+ * for all four prey taxa against the equivalent lookups in PreySizeSpectrum, and
+ * the preference order for a standard length.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreySpectrumBenchmark {
+
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    // spectrum parameters per prey taxon (as in PreySizeSpectrum)
+    private static final double[] par_a = {1.38E-8, 2.75E-12, 1E-10, 2.4E-8};
+    private static final double[] par_b = {2.92, 4.03, 3.56, 2.85};
+    private static final double[] min_len = {3000, 400, 200, 200};
+    private static final double[] dlen = {3000, 200, 200, 200};
+    private static final int[] nsizes = {10, 14, 7, 7};
+
+    private double[][] preyUg;
+    private double[] stdLen;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        preyUg = new double[CORPUS_SIZE][PreySizeSpectrum.NUM_TAXA];
+        stdLen = new double[CORPUS_SIZE];
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            for (int pit=0; pit<PreySizeSpectrum.NUM_TAXA; pit++) {
+                preyUg[i][pit] = PreySizeSpectrum.carbonToUg(20*r.nextDouble());
+            }
+            stdLen[i] = BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble();
+        }
+        next = 0;
+    }
+
+    /** spectra for all four taxa, recalculated */
+    @Benchmark
+    public void zooplankton(Blackhole bh) {
+        next = (next+1)&(CORPUS_SIZE-1);
+        for (int pit=0; pit<PreySizeSpectrum.NUM_TAXA; pit++) {
+            bh.consume(IBMFunction_NonEggStageBIOENGrowthRateDW.zooplankton(preyUg[next][pit],par_a[pit],par_b[pit],min_len[pit],dlen[pit],nsizes[pit]));
+        }
+    }
+
+    /** abundances for all four taxa and length bins from the precalculated tables */
+    @Benchmark
+    public double abundanceTables() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        double s = 0;
+        for (int pit=0; pit<PreySizeSpectrum.NUM_TAXA; pit++) {
+            for (int k=0; k<PreySizeSpectrum.NUM_SIZES; k++) {
+                s += PreySizeSpectrum.abundance(pit,k,preyUg[next][pit]);
+            }
+        }
+        return s;
+    }
+
+    @Benchmark
+    public int[] preferenceOrder() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return PreySizeSpectrum.preferenceOrder(stdLen[next]);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * StageFunctionBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.pcod.EggStage.IBMFunction_HatchSuccess;
+import sh.pcod.EpijuvStage.IBMFunction_Epijuv_VerticalSwimmingSpeed;
+import sh.pcod.FDLStage.IBMFunction_FDL_VerticalSwimmingSpeed;
+import sh.pcod.FDLpfStage.IBMFunction_FDLpf_VerticalSwimmingSpeed;
+import sh.pcod.YSLStage.IBMFunction_YSL_PNR;
+import sh.pcod.YSLStage.IBMFunction_YSL_YSA;
+
+/**
+ * Benchmarks for the small temperature-dependent stage functions, called through
+ * their (boxed) IBMFunctionInterface.calculate(Object) as the stages do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageFunctionBenchmark {
+
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    private final IBMFunction_HatchSuccess hatchSuccess = new IBMFunction_HatchSuccess();
+    private final IBMFunction_YSL_PNR yslPNR = new IBMFunction_YSL_PNR();
+    private final IBMFunction_YSL_YSA yslYSA = new IBMFunction_YSL_YSA();
+    private final IBMFunction_FDL_VerticalSwimmingSpeed fdlSwim = new IBMFunction_FDL_VerticalSwimmingSpeed();
+    private final IBMFunction_FDLpf_VerticalSwimmingSpeed fdlpfSwim = new IBMFunction_FDLpf_VerticalSwimmingSpeed();
+    private final IBMFunction_Epijuv_VerticalSwimmingSpeed epijuvSwim = new IBMFunction_Epijuv_VerticalSwimmingSpeed();
+
+    private Double[] temp;
+    private Double[][] tempLen;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        temp = new Double[CORPUS_SIZE];
+        tempLen = new Double[CORPUS_SIZE][];
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            double t = 0.01+12*r.nextDouble();
+            double tl = 1.1*(BenchmarkInputs.MIN_SL+(BenchmarkInputs.MAX_SL-BenchmarkInputs.MIN_SL)*r.nextDouble());
+            temp[i] = t;
+            tempLen[i] = new Double[]{t,tl};
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public Object hatchSuccess() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return hatchSuccess.calculate(temp[next]);
+    }
+
+    @Benchmark
+    public Object yslPNR() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return yslPNR.calculate(temp[next]);
+    }
+
+    @Benchmark
+    public Object yslYSA() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return yslYSA.calculate(temp[next]);
+    }
+
+    @Benchmark
+    public Object fdlVerticalSwimmingSpeed() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return fdlSwim.calculate(tempLen[next]);
+    }
+
+    @Benchmark
+    public Object fdlpfVerticalSwimmingSpeed() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return fdlpfSwim.calculate(tempLen[next]);
+    }
+
+    @Benchmark
+    public Object epijuvVerticalSwimmingSpeed() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        return epijuvSwim.calculate(tempLen[next]);
+    }
+}
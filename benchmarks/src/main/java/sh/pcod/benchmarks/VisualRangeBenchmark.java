@@ -0,0 +1,91 @@
+/**
+ * VisualRangeBenchmark.java
+ */
+
+package sh.pcod.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
+import sh.pcod.PreySizeSpectrum;
+import sh.pcod.VisualRangeTable;
+
+/**
+ * Benchmarks for the visual range solvers: the iterative getr(...) in
+ * IBMFunction_NonEggStageBIOENGrowthRateDW and VisualRangeTable.getr(...).
+ *
+ * Inputs are the prey images, contrast and eye sensitivity used by the foraging
+ * loop for larvae of standard length stdLen, with light from BenchmarkInputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisualRangeBenchmark {
+
+    /** number of inputs in the corpus */
+    public static final int CORPUS_SIZE = 1024;
+
+    @Param({"day", "night"})
+    public String light;
+
+    @Param({"4", "8", "15", "30"})
+    public double stdLen;
+
+    private double[] c;
+    private double[] ap;
+    private double[] vc;
+    private double[] eb;
+    private double[] r0;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchmarkInputs.DEFAULT_SEED);
+        boolean night = "night".equals(light);
+        c  = new double[CORPUS_SIZE];
+        ap = new double[CORPUS_SIZE];
+        vc = new double[CORPUS_SIZE];
+        eb = new double[CORPUS_SIZE];
+        r0 = new double[CORPUS_SIZE];
+        double contrast = 0.3;
+        for (int i=0; i<CORPUS_SIZE; i++) {
+            double[] lt = BenchmarkInputs.light(r,100*r.nextDouble(),night);
+            double sl = stdLen*(0.9+0.2*r.nextDouble());
+            double area = PreySizeSpectrum.area(PreySizeSpectrum.COP,r.nextInt(7));
+            c[i]  = lt[1]*3;//beam attenuation coefficient
+            ap[i] = area*1E-06;
+            vc[i] = Math.pow(sl,2)/(contrast*0.1*0.2*0.75);
+            eb[i] = lt[0];
+            r0[i] = Math.sqrt(vc[i]*contrast*area*(eb[i]/(1+eb[i])));
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public double[] iterative() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        int i = next;
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.getr(r0[i],c[i],0.3,ap[i],vc[i],1,eb[i],0);
+    }
+
+    @Benchmark
+    public double tabulated() {
+        next = (next+1)&(CORPUS_SIZE-1);
+        int i = next;
+        return VisualRangeTable.getr(c[i],0.3,ap[i],vc[i],1,eb[i]);
+    }
+}
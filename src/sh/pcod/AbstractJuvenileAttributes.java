@@ -4,6 +4,10 @@
  * Updated:
  * 20210206: 1. Created new abstract class for juvenile life stages.
  * 20210208: 1. Added TL, WW, grTL, and grWW  attributes.
+ * 20261016: 1. Values of the attributes defined by this class are stored in
+ *                the slot array "dblValues" (see SLOT_ constants).
+ * 20261016: 1. Static attribute schema built once in the nested class Schema
+ *                (unmodifiable, safely published) instead of by the first instance.
  */
 
 package sh.pcod;
@@ -33,16 +37,85 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     //public static final String PROP_stmsta      = "stomach state (units)";
     //public static final String PROP_psurvival   = "survival probability";
     
-    /** these fields HIDE static fields from superclass and should incorporate ALL information from superclasses */
+    /** slot for the habitat suitability attribute */
+    public static final int SLOT_hsi  = AbstractLarvalAttributes.numDoubleSlots;
+    /** slot for the total length attribute */
+    public static final int SLOT_TL   = AbstractLarvalAttributes.numDoubleSlots+1;
+    /** slot for the wet weight attribute */
+    public static final int SLOT_WW   = AbstractLarvalAttributes.numDoubleSlots+2;
+    /** slot for the total length growth rate attribute */
+    public static final int SLOT_grTL = AbstractLarvalAttributes.numDoubleSlots+3;
+    /** slot for the wet weight growth rate attribute */
+    public static final int SLOT_grWW = AbstractLarvalAttributes.numDoubleSlots+4;
+    
+    /** total number of attributes (including typeName and superclass attributes) */
     protected static final int numAttributes = AbstractLarvalAttributes.numAttributes+numNewAttributes;
-    protected static final Set<String> keys = new LinkedHashSet<>(2*numAttributes);
-    protected static final Map<String,IBMAttribute> mapAttributes = new HashMap<>(2*numAttributes);
-    protected static final String[] aKeys      = new String[numAttributes-1];//does not include typeName
-    protected static final Class[]  classes    = new Class[numAttributes];
-    protected static final String[] shortNames = new String[numAttributes];
+    /** number of double-valued attributes stored by slot (including superclass) */
+    public static final int numDoubleSlots = AbstractLarvalAttributes.numDoubleSlots+numNewAttributes;
+    /** map from keys of the double-valued attributes to slots (including superclass); HIDES the superclass map */
+    protected static final Map<String,Integer> mapDoubleSlots;
+    static {
+        Map<String,Integer> dblSlots = new HashMap<>(2*numDoubleSlots);
+        dblSlots.putAll(AbstractLarvalAttributes.mapDoubleSlots);//add from superclass
+        dblSlots.put(PROP_hsi,  SLOT_hsi);
+        dblSlots.put(PROP_TL,   SLOT_TL);
+        dblSlots.put(PROP_WW,   SLOT_WW);
+        dblSlots.put(PROP_grTL, SLOT_grTL);
+        dblSlots.put(PROP_grWW, SLOT_grWW);
+        mapDoubleSlots = Collections.unmodifiableMap(dblSlots);
+    }
    
     private static final Logger logger = Logger.getLogger(AbstractJuvenileAttributes.class.getName());
     
+    /**
+     * Static schema (keys and attributes, including those defined by the 
+     * superclasses) for the attributes. This HIDES the superclass schema.
+     * 
+     * As for the superclass schema, it is built once, in the static initializer,
+     * when it is first used, and is safely published and unmodifiable.
+     */
+    protected static final class Schema {
+        /** keys for all attributes (including typeName), in order */
+        public static final Set<String> keys;
+        /** map from keys to attributes */
+        public static final Map<String,IBMAttribute> mapAttributes;
+        /** keys for all attributes, not including typeName */
+        public static final String[] aKeys;
+        /** classes of the attribute values (including typeName) */
+        public static final Class[]  classes;
+        /** short names of the attributes (including typeName) */
+        public static final String[] shortNames;
+        
+        static {
+            Set<String> keySet = new LinkedHashSet<>(2*numAttributes);
+            Map<String,IBMAttribute> attMap = new HashMap<>(2*numAttributes);
+            keySet.addAll(AbstractLarvalAttributes.Schema.keys);//add from superclass
+            attMap.putAll(AbstractLarvalAttributes.Schema.mapAttributes);//add from superclass
+            String key;
+            key = PROP_hsi;  keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"hsi"));
+            key = PROP_TL;   keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"TL"));
+            key = PROP_WW;   keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"WW"));
+            key = PROP_grTL; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grTL"));
+            key = PROP_grWW; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grWW"));
+            //key = PROP_stmsta;     keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"stmsta"));
+            //key = PROP_psurvival;  keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"psurvival"));
+            keys          = Collections.unmodifiableSet(keySet);
+            mapAttributes = Collections.unmodifiableMap(attMap);
+            aKeys      = new String[numAttributes-1];//does not include typeName
+            classes    = new Class[numAttributes];
+            shortNames = new String[numAttributes];
+            int j = 0;
+            for (String k: keys){
+                classes[j]    = mapAttributes.get(k).getValueClass();
+                shortNames[j] = mapAttributes.get(k).shortName;
+                if (j>0) aKeys[j-1] = k;
+                j++;
+            }
+        }
+        
+        private Schema(){}
+    }
+    
     /**
      * This constructor is provided only to facilitate the ServiceProvider functionality.
      * DO NOT USE IT!!
@@ -61,43 +134,34 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     }
     
     /**
-     * This method adds default values for the new attributes to the superclass field "mapValues".
-     * 
-     * When the first instance of this class is created, this method also fills in 
-     * the static fields "keys" and "mapAttributes" with keys and attributes from the 
-     * superclass and from this class.
+     * This method extends the superclass slot array "dblValues" with default 
+     * values for the new attributes.
      */
     private void finishInstantiation(){
-        if (keys.isEmpty()){
-            //set static field information
-            keys.addAll(AbstractLarvalAttributes.keys);//add from superclass
-            mapAttributes.putAll(AbstractLarvalAttributes.mapAttributes);//add from superclass
-            String key;
-            key = PROP_hsi;   keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"hsi"));
-            key = PROP_TL;    keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"TL"));
-            key = PROP_WW;    keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"WW"));
-            key = PROP_grTL;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"grTL"));
-            key = PROP_grWW;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"grWW"));
-            //key = PROP_stmsta;     keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"stmsta"));
-            //key = PROP_psurvival;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"psurvival"));
-            
-            Iterator<String> it = keys.iterator();
-            int j = 0; it.next();//skip typeName
-            while (it.hasNext()) aKeys[j++] = it.next();
-        }
         //set instance information
-        Map<String,Object> tmpMapValues = new HashMap<>(2*numAttributes);
-        tmpMapValues.putAll(mapValues);//copy from super
-        tmpMapValues.put(PROP_hsi,  new Double(-1));//add to superclass values
-        tmpMapValues.put(PROP_TL,   new Double(0));
-        tmpMapValues.put(PROP_WW,   new Double(0));
-        tmpMapValues.put(PROP_grTL, new Double(0));
-        tmpMapValues.put(PROP_grWW, new Double(0));
-        //tmpMapValues.put(PROP_stmsta,     new Double(0));
-        //tmpMapValues.put(PROP_psurvival,  new Double(1));
-        mapValues = tmpMapValues;//assign to super
+        dblValues = Arrays.copyOf(dblValues,numDoubleSlots);//extend superclass values
+        dblValues[SLOT_hsi]  = -1;
+        dblValues[SLOT_TL]   = 0;
+        dblValues[SLOT_WW]   = 0;
+        dblValues[SLOT_grTL] = 0;
+        dblValues[SLOT_grWW] = 0;
+        //dblValues[SLOT_stmsta]    = 0;
+        //dblValues[SLOT_psurvival] = 1;
     }
 
+    /**
+     * Returns the slot for the double-valued attribute with the given key 
+     * (including superclass attributes), or -1 if the attribute is not stored by slot.
+     * 
+     * @param key - attribute key
+     * @return - the slot, or -1
+     */
+    @Override
+    protected int getDoubleSlot(String key){
+        Integer slot = mapDoubleSlots.get(key);
+        return (slot==null) ? -1 : slot;
+    }
+    
     /**
      * Returns the attribute values as an ArrayList (including typeName).
      * 
@@ -105,9 +169,9 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public ArrayList getArrayList() {
-        ArrayList a = new ArrayList(keys.size());
+        ArrayList a = new ArrayList(Schema.keys.size());
         a.add(typeName);
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) a.add(getValue(it.next()));
         return a;
@@ -122,7 +186,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     public Object[] getAttributes() {
         Object[] atts = new Object[numAttributes-1];
         int j = 0;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) atts[j++] = getValue(it.next()); 
         return atts;
@@ -136,7 +200,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     @Override
     public String getCSV() {
         String str = typeName;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip typeName
         while (it.hasNext()) {
             String key = it.next();
@@ -154,7 +218,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public String getCSVHeader() {
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         String str = it.next();//typeName
         while (it.hasNext()) str = str+cc+it.next();
         return str;
@@ -168,9 +232,9 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public String getCSVHeaderShortNames() {
-        Iterator<String> it = keys.iterator();
-        String str = mapAttributes.get(it.next()).shortName;//this is "typeName"
-        while (it.hasNext())  str = str+cc+mapAttributes.get(it.next()).shortName;
+        Iterator<String> it = Schema.keys.iterator();
+        String str = Schema.mapAttributes.get(it.next()).shortName;//this is "typeName"
+        while (it.hasNext())  str = str+cc+Schema.mapAttributes.get(it.next()).shortName;
         return str;
     }
     
@@ -182,13 +246,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public Class[] getClasses() {
-        if (classes[0]==null){
-            int j = 0;
-            for (String key: keys){
-                classes[j++] = mapAttributes.get(key).getValueClass();
-            }
-        }
-        return classes;
+        return Schema.classes;
     }
 
     /**
@@ -199,7 +257,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public String[] getKeys() {        
-        return aKeys;
+        return Schema.aKeys;
     }
 
     /**
@@ -210,13 +268,7 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
      */
     @Override
     public String[] getShortNames() {
-        if (shortNames[0]==null){
-            int j = 0;
-            for (String key: keys){
-                shortNames[j++] = mapAttributes.get(key).shortName;
-            }
-        }
-        return shortNames;
+        return Schema.shortNames;
     }
     
     /**
@@ -227,13 +279,13 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     public void setValues(final String[] strv) {
         int j = 1;
         try {
-            Iterator<String> it = keys.iterator();
+            Iterator<String> it = Schema.keys.iterator();
             it.next();//skip typeName
             while (it.hasNext()) setValueFromString(it.next(),strv[j++]);
         } catch (java.lang.IndexOutOfBoundsException ex) {
             //@TODO: should throw an exception here that identifies the problem
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
                 String str = "Missing attribute value for "+aKeys[j]+".\n"+
                              "Prior values are ";
                 for (int i=0;i<(j);i++) str = str+strv[i]+" ";
@@ -244,8 +296,8 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
                         javax.swing.JOptionPane.ERROR_MESSAGE);
                 throw ex;
         } catch (java.lang.NumberFormatException ex) {
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
             String str = "Bad attribute value for "+aKeys[j-2]+".\n"+
                          "Value was '"+strv[j-1]+"'.\n"+
                          "Entry was '";
@@ -277,18 +329,23 @@ public abstract class AbstractJuvenileAttributes extends AbstractLarvalAttribute
     @Override
     public String getValueAsString(String key){
         Object val = getValue(key);
-        IBMAttribute att = mapAttributes.get(key);
-        att.setValue(val);
-        String str = att.getValueAsString();
-        return str;
+        IBMAttribute att = Schema.mapAttributes.get(key);
+        synchronized(att) {//the schema attributes are shared by all instances
+            att.setValue(val);
+            return att.getValueAsString();
+        }
     }
     
     @Override
     public void setValueFromString(String key, String value) throws NumberFormatException {
         if (!key.equals(PROP_typeName)){
-            IBMAttribute att = mapAttributes.get(key);
-            att.parseValue(value);
-            setValue(key,att.getValue());
+            IBMAttribute att = Schema.mapAttributes.get(key);
+            Object val;
+            synchronized(att) {//the schema attributes are shared by all instances
+                att.parseValue(value);
+                val = att.getValue();
+            }
+            setValue(key,val);
         }
     }
 }
@@ -10,6 +10,13 @@
  * 20210206: 1. Renamed class to AbstractLarvalAttributes from AbstractNonEggStageAttributes
  *                in conjunction with creation of AbstractJuvenileAttributes.
  * 20210206: 1. Added growth rates in SL and DW as attributes. 
+ * 20261016: 1. Added "random draws" attribute to continue the individual's
+ *                random number stream across stage transitions.
+ * 20261016: 1. Values of the attributes defined by this class are stored in
+ *                primitive arrays indexed by slot (see SLOT_ constants) instead
+ *                of as boxed values in "mapValues".
+ * 20261016: 1. Static attribute schema built once in the nested class Schema
+ *                (unmodifiable, safely published) instead of by the first instance.
  */
 
 package sh.pcod;
@@ -27,7 +34,7 @@ import wts.models.DisMELS.framework.IBMAttributes.IBMAttributeDouble;
 public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     
     /** Number of new attributes defined by this class */
-    public static final int numNewAttributes = 28;
+    public static final int numNewAttributes = 29;
     public static final String PROP_attached    = "attached";
     public static final String PROP_SL          = "standard length (mm)";
     public static final String PROP_DW          = "dry weight (mg)";
@@ -56,17 +63,168 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     public static final String PROP_eps  = "Eps for calculation";
     public static final String PROP_eb  = "Light for calculation";
     public static final String PROP_ebtwozero  = "Light two for calculation";
+    public static final String PROP_rngDraws  = "random draws";
 
-    /** these fields HIDE static fields from superclass and should incorporate ALL information from superclasses */
+    /** number of double-valued attributes defined by this class (stored by slot) */
+    public static final int numDoubleSlots = 28;
+    /** number of boolean-valued attributes defined by this class (stored by slot) */
+    public static final int numBooleanSlots = 1;
+    /** boolean slot for PROP_attached */
+    public static final int SLOT_attached = 0;
+    /* double slots */
+    public static final int SLOT_SL              = 0;
+    public static final int SLOT_DW              = 1;
+    public static final int SLOT_ageFromYSL      = 2;
+    public static final int SLOT_stmsta          = 3;
+    public static final int SLOT_psurvival       = 4;
+    public static final int SLOT_mortfish        = 5;
+    public static final int SLOT_mortinv         = 6;
+    public static final int SLOT_mortstarv       = 7;
+    public static final int SLOT_dwmax           = 8;
+    public static final int SLOT_avgRank         = 9;
+    public static final int SLOT_avgSize         = 10;
+    public static final int SLOT_stomachFullness = 11;
+    public static final int SLOT_pCO2val         = 12;
+    public static final int SLOT_grSL            = 13;
+    public static final int SLOT_grDW            = 14;
+    public static final int SLOT_temperature     = 15;
+    public static final int SLOT_salinity        = 16;
+    public static final int SLOT_rho             = 17;
+    public static final int SLOT_copepod         = 18;
+    public static final int SLOT_neocalanus      = 19;
+    public static final int SLOT_euphausiidShelf = 20;
+    public static final int SLOT_euphausiid      = 21;
+    public static final int SLOT_neocalanusShelf = 22;
+    public static final int SLOT_microzoo        = 23;
+    public static final int SLOT_eps             = 24;
+    public static final int SLOT_eb              = 25;
+    public static final int SLOT_ebtwozero       = 26;
+    public static final int SLOT_rngDraws        = 27;
+
+    /** total number of attributes (including typeName and superclass attributes) */
     protected static final int numAttributes = AbstractLHSAttributes.numAttributes+numNewAttributes;
-    protected static final Set<String> keys = new LinkedHashSet<>(2*numAttributes);
-    protected static final Map<String,IBMAttribute> mapAttributes = new HashMap<>(2*numAttributes);
-    protected static final String[] aKeys      = new String[numAttributes-1];//does not include typeName
-    protected static final Class[]  classes    = new Class[numAttributes];
-    protected static final String[] shortNames = new String[numAttributes];
+    /** map from keys of the double-valued attributes defined by this class to slots */
+    protected static final Map<String,Integer> mapDoubleSlots;
+    /** map from keys of the boolean-valued attributes defined by this class to slots */
+    protected static final Map<String,Integer> mapBooleanSlots;
+    static {
+        Map<String,Integer> dblSlots = new HashMap<>(2*numDoubleSlots);
+        Map<String,Integer> blnSlots = new HashMap<>(2*numBooleanSlots);
+        blnSlots.put(PROP_attached,       SLOT_attached);
+        dblSlots.put(PROP_SL,             SLOT_SL);
+        dblSlots.put(PROP_DW,             SLOT_DW);
+        dblSlots.put(PROP_ageFromYSL,     SLOT_ageFromYSL);
+        dblSlots.put(PROP_stmsta,         SLOT_stmsta);
+        dblSlots.put(PROP_psurvival,      SLOT_psurvival);
+        dblSlots.put(PROP_mortfish,       SLOT_mortfish);
+        dblSlots.put(PROP_mortinv,        SLOT_mortinv);
+        dblSlots.put(PROP_mortstarv,      SLOT_mortstarv);
+        dblSlots.put(PROP_dwmax,          SLOT_dwmax);
+        dblSlots.put(PROP_avgRank,        SLOT_avgRank);
+        dblSlots.put(PROP_avgSize,        SLOT_avgSize);
+        dblSlots.put(PROP_stomachFullness,SLOT_stomachFullness);
+        dblSlots.put(PROP_pCO2val,        SLOT_pCO2val);
+        dblSlots.put(PROP_grSL,           SLOT_grSL);
+        dblSlots.put(PROP_grDW,           SLOT_grDW);
+        dblSlots.put(PROP_temperature,    SLOT_temperature);
+        dblSlots.put(PROP_salinity,       SLOT_salinity);
+        dblSlots.put(PROP_rho,            SLOT_rho);
+        dblSlots.put(PROP_copepod,        SLOT_copepod);
+        dblSlots.put(PROP_euphausiid,     SLOT_euphausiid);
+        dblSlots.put(PROP_euphausiidShelf,SLOT_euphausiidShelf);
+        dblSlots.put(PROP_neocalanus,     SLOT_neocalanus);
+        dblSlots.put(PROP_neocalanusShelf,SLOT_neocalanusShelf);
+        dblSlots.put(PROP_microzoo,       SLOT_microzoo);
+        dblSlots.put(PROP_eps,            SLOT_eps);
+        dblSlots.put(PROP_eb,             SLOT_eb);
+        dblSlots.put(PROP_ebtwozero,      SLOT_ebtwozero);
+        dblSlots.put(PROP_rngDraws,       SLOT_rngDraws);
+        mapDoubleSlots  = Collections.unmodifiableMap(dblSlots);
+        mapBooleanSlots = Collections.unmodifiableMap(blnSlots);
+    }
    
     private static final Logger logger = Logger.getLogger(AbstractLarvalAttributes.class.getName());
     
+    /** values of the double-valued attributes defined by this class, by slot */
+    protected double[] dblValues;
+    /** values of the boolean-valued attributes defined by this class, by slot */
+    protected boolean[] blnValues;
+    
+    /**
+     * Static schema (keys and attributes, including those defined by the 
+     * superclass) for the attributes.
+     * 
+     * The schema is built once, in the static initializer, when it is first used
+     * (i.e., after the superclass constructor of the first instance has filled in
+     * the framework's schema in AbstractLHSAttributes). Class initialization
+     * publishes the schema safely to all threads and the collections are
+     * unmodifiable, so lookups need no locking and instances can be created
+     * concurrently.
+     */
+    protected static final class Schema {
+        /** keys for all attributes (including typeName), in order */
+        public static final Set<String> keys;
+        /** map from keys to attributes */
+        public static final Map<String,IBMAttribute> mapAttributes;
+        /** keys for all attributes, not including typeName */
+        public static final String[] aKeys;
+        /** classes of the attribute values (including typeName) */
+        public static final Class[]  classes;
+        /** short names of the attributes (including typeName) */
+        public static final String[] shortNames;
+        
+        static {
+            Set<String> keySet = new LinkedHashSet<>(2*numAttributes);
+            Map<String,IBMAttribute> attMap = new HashMap<>(2*numAttributes);
+            keySet.addAll(AbstractLHSAttributes.keys);//add from superclass
+            attMap.putAll(AbstractLHSAttributes.mapAttributes);//add from superclass
+            String key;
+            key = PROP_attached;        keySet.add(key); attMap.put(key,new IBMAttributeBoolean(key,"attached"));
+            key = PROP_SL;              keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"SL"));
+            key = PROP_DW;              keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"DW"));
+            key = PROP_ageFromYSL;      keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"ageFromYSL"));
+            key = PROP_stmsta;          keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"stmsta"));
+            key = PROP_psurvival;       keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"psurvival"));
+            key = PROP_mortfish;        keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"mortfish"));
+            key = PROP_mortinv;         keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"mortinv"));
+            key = PROP_mortstarv;       keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"mortstarv"));
+            key = PROP_dwmax;           keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"dwmax"));
+            key = PROP_avgRank;         keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"avgRank"));
+            key = PROP_avgSize;         keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"avgSize"));
+            key = PROP_stomachFullness; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"stomachFullness"));
+            key = PROP_pCO2val;         keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"pCO2val"));
+            key = PROP_grSL;            keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grSL"));
+            key = PROP_grDW;            keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grDW"));
+            key = PROP_temperature;     keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"temp"));
+            key = PROP_salinity;        keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"sal"));
+            key = PROP_rho;             keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"rho"));
+            key = PROP_copepod;         keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"copepod"));
+            key = PROP_euphausiid;      keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"euphausiid"));
+            key = PROP_euphausiidShelf; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"euphausiidShelf"));
+            key = PROP_neocalanus;      keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"neocalanus"));
+            key = PROP_neocalanusShelf; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"neocalanusShelf"));
+            key = PROP_microzoo;        keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"microzoo"));
+            key = PROP_eps;             keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"eps"));
+            key = PROP_eb;              keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"eb"));
+            key = PROP_ebtwozero;       keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"ebtwozero"));
+            key = PROP_rngDraws;        keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"rngDraws"));
+            keys          = Collections.unmodifiableSet(keySet);
+            mapAttributes = Collections.unmodifiableMap(attMap);
+            aKeys      = new String[numAttributes-1];//does not include typeName
+            classes    = new Class[numAttributes];
+            shortNames = new String[numAttributes];
+            int j = 0;
+            for (String k: keys){
+                classes[j]    = mapAttributes.get(k).getValueClass();
+                shortNames[j] = mapAttributes.get(k).shortName;
+                if (j>0) aKeys[j-1] = k;
+                j++;
+            }
+        }
+        
+        private Schema(){}
+    }
+    
     /**
      * This constructor is provided only to facilitate the ServiceProvider functionality.
      * DO NOT USE IT!!
@@ -85,83 +243,166 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     }
     
     /**
-     * This method adds default values for the new attributes to the superclass field "mapValues".
-     * 
-     * When the first instance of this class is created, this method also fills in 
-     * the static fields "keys" and "mapAttributes" with keys and attributes from the 
-     * superclass and from this class.
+     * This method sets default values for the new attributes in the slot arrays 
+     * "dblValues" and "blnValues".
      */
     private void finishInstantiation(){
-        if (keys.isEmpty()){
-            //set static field information
-            keys.addAll(AbstractLHSAttributes.keys);//add from superclass
-            mapAttributes.putAll(AbstractLHSAttributes.mapAttributes);//add from superclass
-            String key;
-            key = PROP_attached;   keys.add(key); mapAttributes.put(key,new IBMAttributeBoolean(key,"attached"));
-            key = PROP_SL;         keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"SL"));
-            key = PROP_DW;         keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"DW"));
-            key = PROP_ageFromYSL; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"ageFromYSL"));
-            key = PROP_stmsta;     keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"stmsta"));
-            key = PROP_psurvival;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"psurvival"));
-            key = PROP_mortfish;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"mortfish"));
-            key = PROP_mortinv;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"mortinv"));
-            key = PROP_mortstarv;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"mortstarv"));
-            key = PROP_dwmax;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"dwmax"));
-            key = PROP_avgRank;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"avgRank"));
-            key = PROP_avgSize;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"avgSize")); 
-            key = PROP_stomachFullness;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"stomachFullness"));                   
-            key = PROP_pCO2val;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"pCO2val"));
-            key = PROP_grSL;       keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"grSL"));
-            key = PROP_grDW;       keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"grDW"));
-            key = PROP_temperature;keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"temp"));
-            key = PROP_salinity;   keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"sal"));
-            key = PROP_rho;        keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"rho"));
-            key = PROP_copepod;    keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"copepod"));
-            key = PROP_euphausiid; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"euphausiid"));
-            key = PROP_euphausiidShelf; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"euphausiidShelf"));
-            key = PROP_neocalanus; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"neocalanus"));
-            key = PROP_neocalanusShelf; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"neocalanusShelf"));
-            key = PROP_microzoo; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"microzoo"));
-            key = PROP_eps; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"eps"));
-            key = PROP_eb; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"eb"));
-            key = PROP_ebtwozero; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"ebtwozero"));
-
-            Iterator<String> it = keys.iterator();
-            int j = 0; it.next();//skip typeName
-            while (it.hasNext()) aKeys[j++] = it.next();
-        }
         //set instance information
-        Map<String,Object> tmpMapValues = new HashMap<>(2*numAttributes);
-        tmpMapValues.putAll(mapValues);//copy from super
-        tmpMapValues.put(PROP_attached,   false);
-        tmpMapValues.put(PROP_SL,         new Double(0));
-        tmpMapValues.put(PROP_DW,         new Double(0));
-        tmpMapValues.put(PROP_ageFromYSL, new Double(0));
-        tmpMapValues.put(PROP_stmsta,     new Double(0));
-        tmpMapValues.put(PROP_psurvival,  new Double(1));
-        tmpMapValues.put(PROP_mortfish,  new Double(1));
-        tmpMapValues.put(PROP_mortinv,  new Double(1));
-        tmpMapValues.put(PROP_mortstarv,  new Double(1));
-        tmpMapValues.put(PROP_dwmax,  new Double(0));
-        tmpMapValues.put(PROP_avgRank,  new Double(1));
-        tmpMapValues.put(PROP_avgSize,  new Double(1));
-        tmpMapValues.put(PROP_stomachFullness,  new Double(1));
-        tmpMapValues.put(PROP_pCO2val,    new Double(0));
-        tmpMapValues.put(PROP_grSL,       new Double(0));
-        tmpMapValues.put(PROP_grDW,       new Double(0));
-        tmpMapValues.put(PROP_temperature,new Double(-1));
-        tmpMapValues.put(PROP_salinity,   new Double(-1));
-        tmpMapValues.put(PROP_rho,        new Double(-1));
-        tmpMapValues.put(PROP_copepod,    new Double(-1));
-        tmpMapValues.put(PROP_euphausiid, new Double(-1));
-        tmpMapValues.put(PROP_euphausiidShelf, new Double(-1));
-        tmpMapValues.put(PROP_neocalanus, new Double(-1));
-        tmpMapValues.put(PROP_neocalanusShelf, new Double(-1));
-        tmpMapValues.put(PROP_microzoo, new Double(-1));
-        tmpMapValues.put(PROP_eps, new Double(0));
-        tmpMapValues.put(PROP_eb, new Double(0));
-        tmpMapValues.put(PROP_ebtwozero, new Double(0));
-        mapValues = tmpMapValues;//assign to super
+        dblValues = new double[numDoubleSlots];
+        blnValues = new boolean[numBooleanSlots];
+        blnValues[SLOT_attached] = false;
+        dblValues[SLOT_SL]         = 0;
+        dblValues[SLOT_DW]         = 0;
+        dblValues[SLOT_ageFromYSL] = 0;
+        dblValues[SLOT_stmsta]     = 0;
+        dblValues[SLOT_psurvival]  = 1;
+        dblValues[SLOT_mortfish]  = 1;
+        dblValues[SLOT_mortinv]  = 1;
+        dblValues[SLOT_mortstarv]  = 1;
+        dblValues[SLOT_dwmax]  = 0;
+        dblValues[SLOT_avgRank]  = 1;
+        dblValues[SLOT_avgSize]  = 1;
+        dblValues[SLOT_stomachFullness]  = 1;
+        dblValues[SLOT_pCO2val]    = 0;
+        dblValues[SLOT_grSL]       = 0;
+        dblValues[SLOT_grDW]       = 0;
+        dblValues[SLOT_temperature] = -1;
+        dblValues[SLOT_salinity]   = -1;
+        dblValues[SLOT_rho]        = -1;
+        dblValues[SLOT_copepod]    = -1;
+        dblValues[SLOT_euphausiid] = -1;
+        dblValues[SLOT_euphausiidShelf] = -1;
+        dblValues[SLOT_neocalanus] = -1;
+        dblValues[SLOT_neocalanusShelf] = -1;
+        dblValues[SLOT_microzoo] = -1;
+        dblValues[SLOT_eps] = 0;
+        dblValues[SLOT_eb] = 0;
+        dblValues[SLOT_ebtwozero] = 0;
+        dblValues[SLOT_rngDraws] = 0;
+    }
+
+    /**
+     * Returns the slot for the double-valued attribute with the given key, or -1
+     * if the attribute is not stored by slot.
+     * 
+     * @param key - attribute key
+     * @return - the slot, or -1
+     */
+    protected int getDoubleSlot(String key){
+        Integer slot = mapDoubleSlots.get(key);
+        return (slot==null) ? -1 : slot;
+    }
+    
+    /**
+     * Returns the slot for the boolean-valued attribute with the given key, or -1
+     * if the attribute is not stored by slot.
+     * 
+     * @param key - attribute key
+     * @return - the slot, or -1
+     */
+    protected int getBooleanSlot(String key){
+        Integer slot = mapBooleanSlots.get(key);
+        return (slot==null) ? -1 : slot;
+    }
+    
+    /**
+     * Returns the value of the double-valued attribute in the given slot.
+     * 
+     * @param slot - one of the SLOT_ constants for a double-valued attribute
+     * @return - the value
+     */
+    public final double getDouble(int slot){
+        return dblValues[slot];
+    }
+    
+    /**
+     * Sets the value of the double-valued attribute in the given slot.
+     * 
+     * @param slot  - one of the SLOT_ constants for a double-valued attribute
+     * @param value - the new value
+     */
+    public final void setDouble(int slot, double value){
+        dblValues[slot] = value;
+    }
+    
+    /**
+     * Returns the value of the boolean-valued attribute in the given slot.
+     * 
+     * @param slot - one of the SLOT_ constants for a boolean-valued attribute
+     * @return - the value
+     */
+    public final boolean getBoolean(int slot){
+        return blnValues[slot];
+    }
+    
+    /**
+     * Sets the value of the boolean-valued attribute in the given slot.
+     * 
+     * @param slot  - one of the SLOT_ constants for a boolean-valued attribute
+     * @param value - the new value
+     */
+    public final void setBoolean(int slot, boolean value){
+        blnValues[slot] = value;
+    }
+    
+    @Override
+    public Object getValue(String key){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) return dblValues[slot];
+        slot = getBooleanSlot(key);
+        if (slot>=0) return blnValues[slot];
+        return super.getValue(key);
+    }
+    
+    @Override
+    public void setValue(String key, Object value){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) {dblValues[slot] = ((Number) value).doubleValue(); return;}
+        slot = getBooleanSlot(key);
+        if (slot>=0) {blnValues[slot] = (Boolean) value; return;}
+        super.setValue(key,value);
+    }
+    
+    @Override
+    public double getValue(String key, double defVal){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) return dblValues[slot];
+        return super.getValue(key,defVal);
+    }
+    
+    @Override
+    public Double getValue(String key, Double defVal){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) return dblValues[slot];
+        return super.getValue(key,defVal);
+    }
+    
+    @Override
+    public boolean getValue(String key, boolean defVal){
+        int slot = getBooleanSlot(key);
+        if (slot>=0) return blnValues[slot];
+        return super.getValue(key,defVal);
+    }
+    
+    @Override
+    public void setValue(String key, double value){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) {dblValues[slot] = value; return;}
+        super.setValue(key,value);
+    }
+    
+    @Override
+    public void setValue(String key, Double value){
+        int slot = getDoubleSlot(key);
+        if (slot>=0) {dblValues[slot] = value; return;}
+        super.setValue(key,value);
+    }
+    
+    @Override
+    public void setValue(String key, boolean value){
+        int slot = getBooleanSlot(key);
+        if (slot>=0) {blnValues[slot] = value; return;}
+        super.setValue(key,value);
     }
 
     /**
@@ -171,9 +412,9 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public ArrayList getArrayList() {
-        ArrayList a = new ArrayList(keys.size());
+        ArrayList a = new ArrayList(Schema.keys.size());
         a.add(typeName);
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) a.add(getValue(it.next()));
         return a;
@@ -188,7 +429,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     public Object[] getAttributes() {
         Object[] atts = new Object[numAttributes-1];
         int j = 0;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) atts[j++] = getValue(it.next()); 
         return atts;
@@ -202,7 +443,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     @Override
     public String getCSV() {
         String str = typeName;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip typeName
         while (it.hasNext()) {
             String key = it.next();
@@ -220,7 +461,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public String getCSVHeader() {
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         String str = it.next();//typeName
         while (it.hasNext()) str = str+cc+it.next();
         return str;
@@ -234,9 +475,9 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public String getCSVHeaderShortNames() {
-        Iterator<String> it = keys.iterator();
-        String str = mapAttributes.get(it.next()).shortName;//this is "typeName"
-        while (it.hasNext())  str = str+cc+mapAttributes.get(it.next()).shortName;
+        Iterator<String> it = Schema.keys.iterator();
+        String str = Schema.mapAttributes.get(it.next()).shortName;//this is "typeName"
+        while (it.hasNext())  str = str+cc+Schema.mapAttributes.get(it.next()).shortName;
         return str;
     }
     
@@ -248,13 +489,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public Class[] getClasses() {
-        if (classes[0]==null){
-            int j = 0;
-            for (String key: keys){
-                classes[j++] = mapAttributes.get(key).getValueClass();
-            }
-        }
-        return classes;
+        return Schema.classes;
     }
 
     /**
@@ -265,7 +500,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public String[] getKeys() {        
-        return aKeys;
+        return Schema.aKeys;
     }
 
     /**
@@ -276,13 +511,7 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
      */
     @Override
     public String[] getShortNames() {
-        if (shortNames[0]==null){
-            int j = 0;
-            for (String key: keys){
-                shortNames[j++] = mapAttributes.get(key).shortName;
-            }
-        }
-        return shortNames;
+        return Schema.shortNames;
     }
     
     /**
@@ -293,13 +522,13 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     public void setValues(final String[] strv) {
         int j = 1;
         try {
-            Iterator<String> it = keys.iterator();
+            Iterator<String> it = Schema.keys.iterator();
             it.next();//skip typeName
             while (it.hasNext()) setValueFromString(it.next(),strv[j++]);
         } catch (java.lang.IndexOutOfBoundsException ex) {
             //@TODO: should throw an exception here that identifies the problem
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
                 String str = "Missing attribute value for "+aKeys[j]+".\n"+
                              "Prior values are ";
                 for (int i=0;i<(j);i++) str = str+strv[i]+" ";
@@ -310,8 +539,8 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
                         javax.swing.JOptionPane.ERROR_MESSAGE);
                 throw ex;
         } catch (java.lang.NumberFormatException ex) {
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
             String str = "Bad attribute value for "+aKeys[j-2]+".\n"+
                          "Value was '"+strv[j-1]+"'.\n"+
                          "Entry was '";
@@ -343,18 +572,23 @@ public abstract class AbstractLarvalAttributes extends AbstractLHSAttributes {
     @Override
     public String getValueAsString(String key){
         Object val = getValue(key);
-        IBMAttribute att = mapAttributes.get(key);
-        att.setValue(val);
-        String str = att.getValueAsString();
-        return str;
+        IBMAttribute att = Schema.mapAttributes.get(key);
+        synchronized(att) {//the schema attributes are shared by all instances
+            att.setValue(val);
+            return att.getValueAsString();
+        }
     }
     
     @Override
     public void setValueFromString(String key, String value) throws NumberFormatException {
         if (!key.equals(PROP_typeName)){
-            IBMAttribute att = mapAttributes.get(key);
-            att.parseValue(value);
-            setValue(key,att.getValue());
+            IBMAttribute att = Schema.mapAttributes.get(key);
+            Object val;
+            synchronized(att) {//the schema attributes are shared by all instances
+                att.parseValue(value);
+                val = att.getValue();
+            }
+            setValue(key,val);
         }
     }
 }
@@ -31,10 +31,16 @@ import sh.pcod.EpijuvStage.EpijuvStageAttributes;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateSL;
+import sh.pcod.EnvSample;
+import sh.pcod.EnvSampler;
+import sh.pcod.EventLog;
+import sh.pcod.StepContext;
+import sh.pcod.StepCost;
+import sh.pcod.Tracks;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.IBMFunctions.HSMs.HSMFunction_Constant;
 import wts.models.DisMELS.IBMFunctions.HSMs.HSMFunction_NetCDF;
 import wts.models.DisMELS.IBMFunctions.HSMs.HSMFunction_NetCDF_InMemory;
-import wts.models.utilities.CalendarIF;
 import wts.roms.model.Interpolator3D;
 
 /**
@@ -45,12 +51,12 @@ import wts.roms.model.Interpolator3D;
  * 
  */
 @ServiceProvider(service=LifeStageInterface.class)
-public class BenthicJuvStage extends AbstractLHS {
+public class BenthicJuvStage extends AbstractLHS implements StepCost.Estimable, StepContext.Steppable {
     
         //Static fields    
             //  Static fields new to this class
     /* flag to do debug operations */
-    public static boolean debug = false;
+    public static volatile boolean debug = false;
     /* Class for attributes SH_NEW */
     public static final String attributesClass = 
             sh.pcod.BenthicJuvStage.BenthicJuvStageAttributes.class.getName();
@@ -106,6 +112,9 @@ public class BenthicJuvStage extends AbstractLHS {
     protected double  maxStageDuration;
     protected double  stageTransRate;
     protected boolean useRandomTransitions;
+    protected boolean useLightField;
+    protected boolean useCarryOver;
+    protected boolean writeTrackSegments;
     
         //fields that reflect (new) attribute values
     protected boolean attached = false;
@@ -184,6 +193,18 @@ public class BenthicJuvStage extends AbstractLHS {
     private IBMFunctionInterface fcnGrWW = null; 
     /** IBM function selected for HSM */
     private IBMFunctionInterface fcnHSI = null; 
+    /** flag indicating the attributes are out of date with the instance fields (see getAttributes()) */
+    private boolean attsDirty = false;
+    /** reusable sample of the environment at the individual's position */
+    private EnvSample env = new EnvSample();
+    /** time information for the current time step */
+    private StepContext ctx = null;
+    /** reusable buffer for the light calculations (K parameter and second part of Eb equation) */
+    private double[] eb2 = new double[2];
+    /** reusable argument array for two-argument IBMFunctions (see TypedFunctions.value(...)) */
+    private Double[] args2 = new Double[2];
+    /** reusable {lon,lat} argument array for fcnHSI */
+    private double[] posLL = new double[2];
     
     private int typeMort = 0;//integer indicating mortality function
     private int typeGrSL = 0;//integer indicating SL growth function
@@ -306,6 +327,7 @@ public class BenthicJuvStage extends AbstractLHS {
      */
     @Override
     public BenthicJuvStageAttributes getAttributes() {
+        if (attsDirty) updateAttributes();//attributes are only updated when needed
         return atts;
     }
 
@@ -532,6 +554,12 @@ public class BenthicJuvStage extends AbstractLHS {
                 params.getValue(BenthicJuvStageParameters.PARAM_maxStageDuration,maxStageDuration);
         useRandomTransitions = 
                 params.getValue(BenthicJuvStageParameters.PARAM_useRandomTransitions,true);
+        useLightField = 
+                params.getValue(BenthicJuvStageParameters.PARAM_useLightField,false);
+        useCarryOver = 
+                params.getValue(BenthicJuvStageParameters.PARAM_useCarryOver,false);
+        writeTrackSegments = 
+                params.getValue(BenthicJuvStageParameters.PARAM_writeTrackSegments,false);
     }
     
     /**
@@ -544,12 +572,16 @@ public class BenthicJuvStage extends AbstractLHS {
         BenthicJuvStage clone = null;
         try {
             clone = (BenthicJuvStage) super.clone();
-            clone.setAttributes(atts);  //this clones atts
+            clone.setAttributes(getAttributes());  //this clones atts
             clone.updateVariables();    //this sets the variables in the clone to the attribute values
             clone.setParameters(params);//this clones params
             clone.lp      = (LagrangianParticle) lp.clone();
             clone.track   = (ArrayList<Coordinate>) track.clone();
             clone.trackLL = (ArrayList<Coordinate>) trackLL.clone();
+            clone.env     = new EnvSample();
+            clone.eb2     = new double[2];
+            clone.args2   = new Double[2];
+            clone.posLL   = new double[2];
         } catch (CloneNotSupportedException ex) {
             ex.printStackTrace();
         }
@@ -561,6 +593,8 @@ public class BenthicJuvStage extends AbstractLHS {
      * No "next" life stage for BenthicJuv individuals, 
      * so no metamorphosed individuals.
      * 
+     * Thread safety: see ParallelStepper.
+     * 
      * @param dt - time step in seconds
      * @return 
      */
@@ -620,6 +654,11 @@ public class BenthicJuvStage extends AbstractLHS {
     public String getReport() {
         updateAttributes();//make sure attributes are up to date
         atts.setValue(atts.PROP_track, getTrackAsString(COORDINATE_TYPE_GEOGRAPHIC));//
+        if (writeTrackSegments) {
+            //the next report starts from the last reported position
+            Tracks.keepLast(track);
+            Tracks.keepLast(trackLL);
+        }
         return atts.getCSV();
     }
 
@@ -648,7 +687,6 @@ public class BenthicJuvStage extends AbstractLHS {
         zPos       = atts.getValue(BenthicJuvStageAttributes.PROP_vertPos,zPos);
         time       = startTime;
         numTrans   = 0.0; //set numTrans to zero
-        if (debug) logger.info(hType+cc+vType+cc+startTime+cc+xPos+cc+yPos+cc+zPos);
         if (i3d!=null) {
             double[] IJ = new double[] {xPos,yPos};
             if (hType==Types.HORIZ_XY) {
@@ -658,7 +696,8 @@ public class BenthicJuvStage extends AbstractLHS {
                 IJ = i3d.getGrid().computeIJfromLL(yPos,xPos);
             }
             double z = i3d.interpolateBathymetricDepth(IJ);
-            if (debug) logger.info("Bathymetric depth = "+z);
+            if (EventLog.isEnabled(EventLog.EVENT_INITIALIZE))
+                EventLog.record(EventLog.EVENT_INITIALIZE,id,startTime,hType,vType,xPos,yPos,zPos,z);
             double ssh = i3d.interpolateSSH(IJ);
 
             double K = 0;  //set K = 0 (at bottom) as default
@@ -695,34 +734,69 @@ public class BenthicJuvStage extends AbstractLHS {
             updateAttributes(); 
         }
     }
-    
+
+    /**
+     * Estimates the relative cost of the next step (see StepCost) from the DW growth
+     * function and SL. The light level is not kept between steps, so the estimate
+     * assumes light (ParallelStepper corrects it with the measured step time).
+     * 
+     * @return relative cost
+     */
+    @Override
+    public double estimateStepCost() {
+        if (typeGrDW!=BenthicJuvStageParameters.FCN_GrDW_NonEggStageBIOENGrowthRate) return StepCost.BASE;
+        return StepCost.bioen(false,std_len);
+    }
+
+    /**
+     * Steps the individual forward by dt, with the time information for the
+     * current model time (see StepContext.get(dt)).
+     * 
+     * @param dt - time step in seconds
+     * @throws ArrayIndexOutOfBoundsException
+     */
     @Override
     public void step(double dt) throws ArrayIndexOutOfBoundsException {
+        step(StepContext.get(dt));
+    }
+
+    /**
+     * Steps the individual forward by the time step of ctx.
+     * 
+     * Thread safety: see ParallelStepper.
+     * 
+     * @param ctx - time information for this time step
+     * @throws ArrayIndexOutOfBoundsException
+     */
+    @Override
+    public void step(StepContext ctx) throws ArrayIndexOutOfBoundsException {
+        this.ctx = ctx;
+        double dt = ctx.dt;//time step in seconds
         //WTS_NEW 2012-07-26:{
         double[] pos = lp.getIJK();
-        double[] pos2d = new double[2];
-        pos2d[0] = pos[0];
-        pos2d[1] = pos[1];
         //SH_NEW
-        double T = i3d.interpolateTemperature(pos);
+        boolean carried = useCarryOver && EnvSampler.isCarriedOver(i3d,pos,env);//env holds the end-of-step sample at pos
+        double T = carried ? env.temperature : i3d.interpolateTemperature(pos);
         if(T<=0.0) T=0.01; 
         
         //SH-Prey Stuff  
-        copepod    = i3d.interpolateValue(pos,FIELD_Cop,Interpolator3D.INTERP_VAL);
-        euphausiid = i3d.interpolateValue(pos,FIELD_Eup,Interpolator3D.INTERP_VAL);
-        neocalanus = i3d.interpolateValue(pos,FIELD_NCa,Interpolator3D.INTERP_VAL);
-        neocalanusShelf  = i3d.interpolateValue(pos,NCaS,Interpolator3D.INTERP_VAL);
-        double euphausiids_shelf  = i3d.interpolateValue(pos,EupS,Interpolator3D.INTERP_VAL);
-        double microzoo_large  = i3d.interpolateValue(pos,Mzl,Interpolator3D.INTERP_VAL);
-        double phytoL = i3d.interpolateValue(pos,PhL,Interpolator3D.INTERP_VAL);
-        double phytoS = i3d.interpolateValue(pos,PhS,Interpolator3D.INTERP_VAL);
-        double tauX = i3d.interpolateValue(pos2d,Su,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
-        double tauY = i3d.interpolateValue(pos2d,Sv,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
+        EnvSampler.samplePrey(i3d,pos,env,carried);
+        EnvSampler.sampleMicrozooplankton(i3d,pos,env);
+        copepod    = env.copepod;
+        euphausiid = env.euphausiid;
+        neocalanus = env.neocalanus;
+        neocalanusShelf  = env.neocalanusShelf;
+        double euphausiids_shelf  = env.euphausiidShelf;
+        double microzoo_large  = env.microzooL;
+        double phytoL = env.phytoL;
+        double phytoS = env.phytoS;
+        double tauX = env.tauX;
+        double tauY = env.tauY;
         double chlorophyll = (phytoL/25) + (phytoS/65); // calculate chlorophyll (mg/m^-3) 
         // values 25 and 65 based on Kearney et al 2018 Table A4
-        double microzoo_small  = i3d.interpolateValue(pos,Mzs,Interpolator3D.INTERP_VAL);
+        double microzoo_small  = env.microzooS;
         microzoo = microzoo_small + microzoo_large; // total microzooplankton
-        pCO2val  = i3d.interpolateValue(pos,pCO2,Interpolator3D.INTERP_VAL);
+        pCO2val  = env.pCO2;
         //calculate pco2 factor:
         double facCO2 = 0;
         if(pCO2val > 600) { // only for values larger than 600
@@ -740,31 +814,25 @@ public class BenthicJuvStage extends AbstractLHS {
         double old_std_len = std_len;
         // Light (begin):
         // create object for light calculation:
-        double[] eb2 = new double[2]; // K parameter + second part of Eb equation
         double eb = 0; // create Eb object
-        CalendarIF cal2 = null;
-        double[] ltemp = new double[3];
-        double[] ltemp2 = new double[2];
-        cal2 = GlobalInfo.getInstance().getCalendar(); // to calculate julian day
-        ltemp = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat,cal2.getYearDay()); // see line 713 in ibm.py
-        double maxLight = ltemp[0]/0.217; // see line 714 in ibm.py
-        ltemp2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightSurlig(lat,cal2.getYearDay(), maxLight); // see line 715 in ibm.py
-        eb2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll, depth, bathym); // K parameter and second part of Eb equation
-        eb = 0.42*ltemp2[1]*eb2[1]; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14
+        double slig = useLightField ? ctx.surfaceLight(lat) // see lines 713-715 in ibm.py
+                                    : ctx.surfaceLightExact(lat);
+        IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll,depth,bathym,eb2); // K parameter and second part of Eb equation
+        eb = 0.42*slig*eb2[1]; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14
         // Light (end):
 
         //calculate growth in length, weight
         if(T<=0.0) T=0.01; 
         if (typeGrSL==BenthicJuvStageParameters.FCN_GrSL_NonEggStageSTDGrowthRate) {
-            grSL = (Double) fcnGrSL.calculate(new Double[]{T,std_len});
+            grSL = TypedFunctions.value(fcnGrSL,T,std_len,args2);
             std_len += grSL*dtday;
         }
         if (typeGrDW==BenthicJuvStageParameters.FCN_GrDW_NonEggStageSTDGrowthRate) {
-            grDW = (Double) fcnGrDW.calculate(new Double[]{T,dry_wgt});
+            grDW = TypedFunctions.value(fcnGrDW,T,dry_wgt,args2);
             dry_wgt *= Math.exp(grDW * dtday);
         }
         if (typeGrTL==BenthicJuvStageParameters.FCN_GrTL_BenthicJuv_GrowthRate) {
-            grTL = (Double) fcnGrTL.calculate(T);
+            grTL = TypedFunctions.value(fcnGrTL,T);
             tot_len += grTL*dtday;
         }
 
@@ -803,7 +871,7 @@ public class BenthicJuvStage extends AbstractLHS {
         }
 
         if (typeGrWW==BenthicJuvStageParameters.FCN_GrWW_BenthicJuv_GrowthRate)
-            grWW = (Double) fcnGrWW.calculate(T);
+            grWW = TypedFunctions.value(fcnGrWW,T);
         wet_wgt *= Math.exp(grWW * dtday);
         
         // Survival rate (begin):
@@ -829,7 +897,7 @@ public class BenthicJuvStage extends AbstractLHS {
         if (debug) {
             logger.info(toString());
         }
-        updateAttributes(); //update the attributes object w/ nmodified values
+        attsDirty = true; //attributes are updated from the modified values when needed (see getAttributes())
     }
 
     /**
@@ -906,21 +974,15 @@ public class BenthicJuvStage extends AbstractLHS {
      * @param pos - double[] giving position in ROMS {xi, eta, K} grid coordinates
      */
     private void updateEnvVars(double[] pos) {
-        temperature = i3d.interpolateTemperature(pos);
-        salinity    = i3d.interpolateSalinity(pos);
-        
-        if (i3d.getPhysicalEnvironment().getField("rho")!=null) 
-            rho  = i3d.interpolateValue(pos,"rho");
-        else rho = 0.0;
+        EnvSampler.samplePhysics(i3d,pos,env);
+        temperature = env.temperature;
+        salinity    = env.salinity;
+        rho         = env.rho;
         
-        if (i3d.getPhysicalEnvironment().getField(FIELD_Cop)!=null) 
-            copepod    = i3d.interpolateValue(pos,FIELD_Cop,Interpolator3D.INTERP_VAL);
-        
-        if (i3d.getPhysicalEnvironment().getField(FIELD_Eup)!=null) 
-            euphausiid = i3d.interpolateValue(pos,FIELD_Eup,Interpolator3D.INTERP_VAL);
-        
-        if (i3d.getPhysicalEnvironment().getField(FIELD_NCa)!=null) 
-            neocalanus = i3d.interpolateValue(pos,FIELD_NCa,Interpolator3D.INTERP_VAL);
+        EnvSampler.sampleAvailablePrey(i3d,pos,env);
+        if (env.hasCopepod)    copepod    = env.copepod;
+        if (env.hasEuphausiid) euphausiid = env.euphausiid;
+        if (env.hasNeocalanus) neocalanus = env.neocalanus;
         
         switch (typeHSI) {
             case BenthicJuvStageParameters.FCN_HSM_Constant:
@@ -928,13 +990,15 @@ public class BenthicJuvStage extends AbstractLHS {
                 break;
             case BenthicJuvStageParameters.FCN_HSM_NetCDF:
                 {
-                    double[] posLL = new double[]{lon,lat};
+                    posLL[0] = lon;
+                    posLL[1] = lat;
                     hsi = (Double)fcnHSI.calculate(posLL);
                     break;
                 }
             case BenthicJuvStageParameters.FCN_HSM_NetCDF_InMemory:
                 {
-                    double[] posLL = new double[]{lon,lat};
+                    posLL[0] = lon;
+                    posLL[1] = lat;
                     hsi = (Double)fcnHSI.calculate(posLL);
                     break;
                 }
@@ -1019,35 +1083,36 @@ public class BenthicJuvStage extends AbstractLHS {
      */
     @Override
     protected void updateAttributes() {
+        attsDirty = false;
         super.updateAttributes();
-        atts.setValue(BenthicJuvStageAttributes.PROP_attached,   attached);
-        atts.setValue(BenthicJuvStageAttributes.PROP_SL,         std_len);
-        atts.setValue(BenthicJuvStageAttributes.PROP_DW,         dry_wgt);
-        atts.setValue(BenthicJuvStageAttributes.PROP_stmsta,     stmsta);
-        atts.setValue(BenthicJuvStageAttributes.PROP_psurvival,  psurvival);
-        atts.setValue(BenthicJuvStageAttributes.PROP_mortfish,mortfish);
-        atts.setValue(BenthicJuvStageAttributes.PROP_mortinv,mortinv);
-        atts.setValue(BenthicJuvStageAttributes.PROP_mortstarv,mortstarv);
-        atts.setValue(BenthicJuvStageAttributes.PROP_dwmax,dwmax);
-        atts.setValue(BenthicJuvStageAttributes.PROP_avgRank,avgRank);
-        atts.setValue(BenthicJuvStageAttributes.PROP_avgSize,avgSize);
-        atts.setValue(BenthicJuvStageAttributes.PROP_stomachFullness,stomachFullness);
-        atts.setValue(BenthicJuvStageAttributes.PROP_pCO2val,  pCO2val);
-        atts.setValue(BenthicJuvStageAttributes.PROP_grSL,       grSL);
-        atts.setValue(BenthicJuvStageAttributes.PROP_grDW,       grDW);
-        atts.setValue(BenthicJuvStageAttributes.PROP_temperature,temperature);    
-        atts.setValue(BenthicJuvStageAttributes.PROP_salinity,   salinity);
-        atts.setValue(BenthicJuvStageAttributes.PROP_rho,        rho);
-        atts.setValue(BenthicJuvStageAttributes.PROP_copepod,    copepod);
-        atts.setValue(BenthicJuvStageAttributes.PROP_neocalanus, neocalanus);
-        atts.setValue(BenthicJuvStageAttributes.PROP_euphausiid, euphausiid);
-        atts.setValue(BenthicJuvStageAttributes.PROP_neocalanusShelf, neocalanusShelf);
-        atts.setValue(BenthicJuvStageAttributes.PROP_microzoo, microzoo);
-        atts.setValue(BenthicJuvStageAttributes.PROP_TL,         tot_len);
-        atts.setValue(BenthicJuvStageAttributes.PROP_WW,         wet_wgt);
-        atts.setValue(BenthicJuvStageAttributes.PROP_grTL,       grTL);
-        atts.setValue(BenthicJuvStageAttributes.PROP_grWW,       grWW);
-        atts.setValue(BenthicJuvStageAttributes.PROP_hsi,        hsi);
+        atts.setBoolean(BenthicJuvStageAttributes.SLOT_attached,   attached);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_SL,         std_len);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_DW,         dry_wgt);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_stmsta,     stmsta);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_psurvival,  psurvival);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_mortfish,mortfish);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_mortinv,mortinv);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_mortstarv,mortstarv);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_dwmax,dwmax);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_avgRank,avgRank);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_avgSize,avgSize);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_stomachFullness,stomachFullness);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_pCO2val,  pCO2val);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_grSL,       grSL);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_grDW,       grDW);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_temperature,temperature);    
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_salinity,   salinity);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_rho,        rho);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_copepod,    copepod);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_neocalanus, neocalanus);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_euphausiid, euphausiid);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_neocalanusShelf, neocalanusShelf);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_microzoo, microzoo);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_TL,         tot_len);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_WW,         wet_wgt);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_grTL,       grTL);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_grWW,       grWW);
+        atts.setDouble(BenthicJuvStageAttributes.SLOT_hsi,        hsi);
 
     }
 
@@ -1057,33 +1122,34 @@ public class BenthicJuvStage extends AbstractLHS {
     @Override
     protected void updateVariables() {
         super.updateVariables();
-        attached    = atts.getValue(BenthicJuvStageAttributes.PROP_attached,    attached);
-        std_len     = atts.getValue(BenthicJuvStageAttributes.PROP_SL,          std_len);
-        dry_wgt     = atts.getValue(BenthicJuvStageAttributes.PROP_DW,          dry_wgt);
-        stmsta      = atts.getValue(BenthicJuvStageAttributes.PROP_stmsta,      stmsta);
-        psurvival    = atts.getValue(BenthicJuvStageAttributes.PROP_psurvival,  psurvival);
-        mortfish      = atts.getValue(BenthicJuvStageAttributes.PROP_mortfish,mortfish);
-        mortinv      = atts.getValue(BenthicJuvStageAttributes.PROP_mortinv,mortinv);
-        mortstarv    = atts.getValue(BenthicJuvStageAttributes.PROP_mortstarv,mortstarv); 
-        dwmax    = atts.getValue(BenthicJuvStageAttributes.PROP_dwmax,dwmax); 
-        avgRank      = atts.getValue(BenthicJuvStageAttributes.PROP_avgRank,avgRank);
-        avgSize      = atts.getValue(BenthicJuvStageAttributes.PROP_avgSize,avgSize);
-        stomachFullness    = atts.getValue(BenthicJuvStageAttributes.PROP_stomachFullness,stomachFullness);   
-        pCO2val    = atts.getValue(BenthicJuvStageAttributes.PROP_pCO2val,  pCO2val);
-        grSL        = atts.getValue(BenthicJuvStageAttributes.PROP_grSL,        grSL);
-        grDW        = atts.getValue(BenthicJuvStageAttributes.PROP_grDW,        grDW);
-        temperature = atts.getValue(BenthicJuvStageAttributes.PROP_temperature, temperature);
-        salinity    = atts.getValue(BenthicJuvStageAttributes.PROP_salinity,    salinity);
-        rho         = atts.getValue(BenthicJuvStageAttributes.PROP_rho,         rho);
-        copepod     = atts.getValue(BenthicJuvStageAttributes.PROP_copepod,     copepod);
-        neocalanus  = atts.getValue(BenthicJuvStageAttributes.PROP_neocalanus,  neocalanus);
-        euphausiid  = atts.getValue(BenthicJuvStageAttributes.PROP_euphausiid,  euphausiid);
-        neocalanusShelf  = atts.getValue(BenthicJuvStageAttributes.PROP_neocalanusShelf,  neocalanusShelf);
-        microzoo  = atts.getValue(BenthicJuvStageAttributes.PROP_microzoo,  microzoo);
-        tot_len     = atts.getValue(BenthicJuvStageAttributes.PROP_TL,          tot_len);
-        wet_wgt     = atts.getValue(BenthicJuvStageAttributes.PROP_WW,          wet_wgt);
-        grTL        = atts.getValue(BenthicJuvStageAttributes.PROP_grTL,        grTL);
-        grWW        = atts.getValue(BenthicJuvStageAttributes.PROP_grWW,        grWW);
-        hsi         = atts.getValue(BenthicJuvStageAttributes.PROP_hsi,         hsi);
+        attached    = atts.getBoolean(BenthicJuvStageAttributes.SLOT_attached);
+        std_len     = atts.getDouble(BenthicJuvStageAttributes.SLOT_SL);
+        dry_wgt     = atts.getDouble(BenthicJuvStageAttributes.SLOT_DW);
+        stmsta      = atts.getDouble(BenthicJuvStageAttributes.SLOT_stmsta);
+        psurvival    = atts.getDouble(BenthicJuvStageAttributes.SLOT_psurvival);
+        mortfish      = atts.getDouble(BenthicJuvStageAttributes.SLOT_mortfish);
+        mortinv      = atts.getDouble(BenthicJuvStageAttributes.SLOT_mortinv);
+        mortstarv    = atts.getDouble(BenthicJuvStageAttributes.SLOT_mortstarv); 
+        dwmax    = atts.getDouble(BenthicJuvStageAttributes.SLOT_dwmax); 
+        avgRank      = atts.getDouble(BenthicJuvStageAttributes.SLOT_avgRank);
+        avgSize      = atts.getDouble(BenthicJuvStageAttributes.SLOT_avgSize);
+        stomachFullness    = atts.getDouble(BenthicJuvStageAttributes.SLOT_stomachFullness);   
+        pCO2val    = atts.getDouble(BenthicJuvStageAttributes.SLOT_pCO2val);
+        grSL        = atts.getDouble(BenthicJuvStageAttributes.SLOT_grSL);
+        grDW        = atts.getDouble(BenthicJuvStageAttributes.SLOT_grDW);
+        temperature = atts.getDouble(BenthicJuvStageAttributes.SLOT_temperature);
+        salinity    = atts.getDouble(BenthicJuvStageAttributes.SLOT_salinity);
+        rho         = atts.getDouble(BenthicJuvStageAttributes.SLOT_rho);
+        copepod     = atts.getDouble(BenthicJuvStageAttributes.SLOT_copepod);
+        neocalanus  = atts.getDouble(BenthicJuvStageAttributes.SLOT_neocalanus);
+        euphausiid  = atts.getDouble(BenthicJuvStageAttributes.SLOT_euphausiid);
+        neocalanusShelf  = atts.getDouble(BenthicJuvStageAttributes.SLOT_neocalanusShelf);
+        microzoo  = atts.getDouble(BenthicJuvStageAttributes.SLOT_microzoo);
+        tot_len     = atts.getDouble(BenthicJuvStageAttributes.SLOT_TL);
+        wet_wgt     = atts.getDouble(BenthicJuvStageAttributes.SLOT_WW);
+        grTL        = atts.getDouble(BenthicJuvStageAttributes.SLOT_grTL);
+        grWW        = atts.getDouble(BenthicJuvStageAttributes.SLOT_grWW);
+        hsi         = atts.getDouble(BenthicJuvStageAttributes.SLOT_hsi);
      }
+
 }
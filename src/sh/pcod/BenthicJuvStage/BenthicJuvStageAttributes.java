@@ -103,7 +103,7 @@ public class BenthicJuvStageAttributes extends AbstractJuvenileAttributes {
     @Override
     public Object clone() {
         BenthicJuvStageAttributes clone = new BenthicJuvStageAttributes(typeName);
-        for (String key: BenthicJuvStageAttributes.keys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.keys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
@@ -7,6 +7,7 @@ package sh.pcod.BenthicJuvStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
@@ -25,7 +26,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_BenthicJuv_GrowthRateTL extends AbstractIBMFunction implements IBMGrowthFunctionInterface {
+public class IBMFunction_BenthicJuv_GrowthRateTL extends AbstractIBMFunction implements IBMGrowthFunctionInterface, TypedFunctions.Unary {
     public static final String DEFAULT_type = "Growth";
     /** user-friendly function name */
     public static final String DEFAULT_name = "Growth rate (mm/d) in total length for Pacific cod benthic juveniles";
@@ -85,8 +86,20 @@ public class IBMFunction_BenthicJuv_GrowthRateTL extends AbstractIBMFunction imp
     @Override
     public Object calculate(Object o) {
         double t = (Double) o;
+        return (Double) calculate(t);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * 
+     * @return growth rate (mm/d for total length)
+     */
+    @Override
+    public double calculate(double t) {
         double r = -0.081 + (0.079*t) - (0.003*t*t);
-        return (Double) r;
+        return r;
     }
     
 }
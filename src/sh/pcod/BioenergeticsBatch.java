@@ -0,0 +1,234 @@
+/**
+ * BioenergeticsBatch.java
+ */
+
+package sh.pcod;
+
+/**
+ * Struct-of-arrays form of BioenergeticsInput/BioenergeticsResult for running
+ * the BIOEN calculations of IBMFunction_NonEggStageBIOENGrowthRateDW for many
+ * individuals at once.
+ *
+ * The caller fills the first n elements of the input arrays (same meaning as
+ * the BioenergeticsInput fields), e.g. with setInput(...), and calls
+ * calculate(n). The metabolism, growth, assimilation and turbulence terms are
+ * calculated in simple loops over primitive arrays that the JIT compiler can
+ * unroll and (where it is able to) vectorize. The foraging part branches on the
+ * prey available to each individual and draws from its random number stream, so
+ * it is run individual by individual with the scalar kernel. Results are
+ * identical to calling calculate(BioenergeticsInput,BioenergeticsResult) for
+ * each individual in turn.
+ *
+ * ParallelStepper uses one batch per chunk of individuals: it runs the part of
+ * each Batchable individual's step before the BIOEN calculation, calculates the
+ * batch, and then runs the rest of each step with its result.
+ *
+ * Instances are not thread-safe; use one per thread.
+ */
+public class BioenergeticsBatch {
+
+    /** max number of individuals */
+    public final int capacity;
+
+    public final double[] t;
+    public final double[] m;
+    public final double[] dt;
+    public final double[] dtday;
+    public final double[] std_len;
+    public final double[] eb;
+    public final double[] windX;
+    public final double[] windY;
+    public final double[] depth;
+    public final double[] stm_sta;
+    public final double[] attCoeff;
+    public final double[] eup;
+    public final double[] ncas;
+    public final double[] ncao;
+    public final double[] cop;
+    public final double[] pCO2;
+    public final double[] ageFromYSL;
+    public final double[] dwmax;
+    /** flags to use VisualRangeTable, by individual */
+    public final boolean[] tabulatedVisualRange;
+    /** flags to use PreyCaptureTable, by individual */
+    public final boolean[] tabulatedCapture;
+    /** random number streams (elements may be null) */
+    public final IndividualRandomStream[] random;
+
+    public final double[] gr_mg;
+    public final double[] meta;
+    public final double[] ing;
+    public final double[] assi;
+    public final double[] stomachFullness;
+    public final double[] avgRank;
+    public final double[] avgSize;
+    public final double[] eps;
+    public final double[] metamax;
+    public final double[] gr_mg_max;
+    /** time taken by the calculations for each individual in the last call to calculate(n) (ns) */
+    public final long[] nanos;
+
+    /** BIOEN growth function (it has no parameters, so one instance serves all individuals) */
+    private final IBMFunction_NonEggStageBIOENGrowthRateDW fcn = new IBMFunction_NonEggStageBIOENGrowthRateDW();
+    /** pCO2 factor by individual */
+    private final double[] facCO2;
+    /** scalar input and result objects for the foraging part */
+    private final BioenergeticsInput in = new BioenergeticsInput();
+    private final BioenergeticsResult out = new BioenergeticsResult();
+
+    /**
+     * Creates a batch for up to capacity individuals.
+     */
+    public BioenergeticsBatch(int capacity) {
+        this.capacity = capacity;
+        t          = new double[capacity];
+        m          = new double[capacity];
+        dt         = new double[capacity];
+        dtday      = new double[capacity];
+        std_len    = new double[capacity];
+        eb         = new double[capacity];
+        windX      = new double[capacity];
+        windY      = new double[capacity];
+        depth      = new double[capacity];
+        stm_sta    = new double[capacity];
+        attCoeff   = new double[capacity];
+        eup        = new double[capacity];
+        ncas       = new double[capacity];
+        ncao       = new double[capacity];
+        cop        = new double[capacity];
+        pCO2       = new double[capacity];
+        ageFromYSL = new double[capacity];
+        dwmax      = new double[capacity];
+        tabulatedVisualRange = new boolean[capacity];
+        tabulatedCapture     = new boolean[capacity];
+        random     = new IndividualRandomStream[capacity];
+        gr_mg           = new double[capacity];
+        meta            = new double[capacity];
+        ing             = new double[capacity];
+        assi            = new double[capacity];
+        stomachFullness = new double[capacity];
+        avgRank         = new double[capacity];
+        avgSize         = new double[capacity];
+        eps             = new double[capacity];
+        metamax         = new double[capacity];
+        gr_mg_max       = new double[capacity];
+        nanos           = new long[capacity];
+        facCO2          = new double[capacity];
+    }
+
+    /**
+     * Copies the input values for individual i from a BioenergeticsInput.
+     */
+    public void setInput(int i, BioenergeticsInput v) {
+        t[i]          = v.t;
+        m[i]          = v.m;
+        dt[i]         = v.dt;
+        dtday[i]      = v.dtday;
+        std_len[i]    = v.std_len;
+        eb[i]         = v.eb;
+        windX[i]      = v.windX;
+        windY[i]      = v.windY;
+        depth[i]      = v.depth;
+        stm_sta[i]    = v.stm_sta;
+        attCoeff[i]   = v.attCoeff;
+        eup[i]        = v.eup;
+        ncas[i]       = v.ncas;
+        ncao[i]       = v.ncao;
+        cop[i]        = v.cop;
+        pCO2[i]       = v.pCO2;
+        ageFromYSL[i] = v.ageFromYSL;
+        dwmax[i]      = v.dwmax;
+        tabulatedVisualRange[i] = v.tabulatedVisualRange;
+        tabulatedCapture[i]     = v.tabulatedCapture;
+        random[i]     = v.random;
+    }
+
+    /**
+     * Copies the results for individual i to a BioenergeticsResult.
+     */
+    public void getResult(int i, BioenergeticsResult r) {
+        r.gr_mg           = gr_mg[i];
+        r.meta            = meta[i];
+        r.ing             = ing[i];
+        r.assi            = assi[i];
+        r.stomachFullness = stomachFullness[i];
+        r.avgRank         = avgRank[i];
+        r.avgSize         = avgSize[i];
+        r.eps             = eps[i];
+        r.metamax         = metamax[i];
+        r.gr_mg_max       = gr_mg_max[i];
+    }
+
+    /**
+     * Runs the BIOEN calculations for individuals 0 to n-1.
+     *
+     * @param n - number of individuals
+     */
+    public void calculate(int n) {
+        if (n>capacity) throw new IllegalArgumentException("n ("+n+") exceeds batch capacity ("+capacity+")");
+        long t0 = System.nanoTime();
+        for (int i=0; i<n; i++) facCO2[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcCO2(pCO2[i]);
+        for (int i=0; i<n; i++) eps[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcTurbulence(windX[i], windY[i], depth[i]);
+        for (int i=0; i<n; i++) meta[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcMetabolism(t[i], m[i], dtday[i], facCO2[i], eb[i], std_len[i]);
+        for (int i=0; i<n; i++) metamax[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcMetabolism(t[i], dwmax[i], dtday[i], facCO2[i], eb[i], std_len[i]);
+        for (int i=0; i<n; i++) assi[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcAssimilation(m[i]);
+        for (int i=0; i<n; i++) gr_mg[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcGrowth(t[i], m[i], dtday[i], ageFromYSL[i], facCO2[i]);
+        for (int i=0; i<n; i++) gr_mg_max[i] = IBMFunction_NonEggStageBIOENGrowthRateDW.calcGrowth(t[i], dwmax[i], dtday[i], ageFromYSL[i], facCO2[i]);
+        long shared = (n>0) ? (System.nanoTime()-t0)/n : 0;//time of the loops above, per individual
+
+        for (int i=0; i<n; i++) {
+            long t1 = System.nanoTime();
+            in.m        = m[i];
+            in.dt       = dt[i];
+            in.std_len  = std_len[i];
+            in.eb       = eb[i];
+            in.stm_sta  = stm_sta[i];
+            in.attCoeff = attCoeff[i];
+            in.eup      = eup[i];
+            in.ncas     = ncas[i];
+            in.ncao     = ncao[i];
+            in.cop      = cop[i];
+            in.tabulatedVisualRange = tabulatedVisualRange[i];
+            in.tabulatedCapture     = tabulatedCapture[i];
+            in.random   = random[i];
+            fcn.forage(in, facCO2[i], eps[i], out);
+            ing[i]             = out.ing;
+            stomachFullness[i] = out.stomachFullness;
+            avgRank[i]         = out.avgRank;
+            avgSize[i]         = out.avgSize;
+            nanos[i] = shared+System.nanoTime()-t1;
+        }
+        in.random = null;
+    }
+
+    /**
+     * Interface for individuals whose step can be split around the BIOEN
+     * calculation, so a driver can calculate it for many individuals at once.
+     * step(ctx) must be equivalent to
+     *
+     *   BioenergeticsInput in = beginStep(ctx);
+     *   [calculate the BIOEN result for in, if not null]
+     *   endStep(result);
+     *
+     * Between the two calls, the individual must not be stepped or modified
+     * otherwise, and the input must not be modified.
+     */
+    public interface Batchable extends StepContext.Steppable {
+        /**
+         * Runs the part of step(ctx) before the BIOEN calculation.
+         *
+         * @param ctx - time information for this time step
+         * @return the input for the BIOEN calculation, or null if the individual
+         *         does not use it in this step
+         */
+        BioenergeticsInput beginStep(StepContext ctx);
+
+        /**
+         * Runs the rest of step(ctx).
+         *
+         * @param out - the BIOEN result for the input returned by beginStep(ctx)
+         *              (null if it returned null)
+         */
+        void endStep(BioenergeticsResult out);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * BioenergeticsInput.java
+ */
+
+package sh.pcod;
+
+/**
+ * Reusable input record for the typed entry point
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(BioenergeticsInput,BioenergeticsResult).
+ * 
+ * Field order follows the elements of the Double[] accepted by
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(Object).
+ */
+public class BioenergeticsInput {
+    /** [0] in situ temperature (deg C) */
+    public double t;
+    /** [1] dry weight (mg) */
+    public double m;
+    /** [2] time step (s) */
+    public double dt;
+    /** [3] time step (d) */
+    public double dtday;
+    /** [4] standard length (mm) */
+    public double std_len;
+    /** [5] light at depth (Eb) */
+    public double eb;
+    /** [6] wind velocity, x-direction (m/s) */
+    public double windX;
+    /** [7] wind velocity, y-direction (m/s) */
+    public double windY;
+    /** [8] depth (m) */
+    public double depth;
+    /** [9] stomach state */
+    public double stm_sta;
+    /** [10] light attenuation coefficient (K parameter in Fiksen et al 2002) */
+    public double attCoeff;
+    /** [11] euphausiids (offshore + shelf) */
+    public double eup;
+    /** [12] Neocalanus, shelf */
+    public double ncas;
+    /** [13] Neocalanus, offshore */
+    public double ncao;
+    /** [14] small copepods */
+    public double cop;
+    /** [15] pCO2 */
+    public double pCO2;
+    /** [16] age since yolk-sac larva (d) */
+    public double ageFromYSL;
+    /** [17] maximum dry weight (mg) */
+    public double dwmax;
+    /** flag to use VisualRangeTable instead of the iterative visual range solver (not part of the Double[] input) */
+    public boolean tabulatedVisualRange = false;
+    /** flag to use PreyCaptureTable instead of simulating capture success (not part of the Double[] input) */
+    public boolean tabulatedCapture = false;
+    /** random number stream of the individual (not part of the Double[] input; Math.random() is used if null) */
+    public IndividualRandomStream random = null;
+
+    /** scratch buffer for the prey densities (ug/m^3) used by the foraging calculations */
+    final double[] preyUg = new double[PreySizeSpectrum.NUM_TAXA];
+    /** scratch buffer for the visual range solver */
+    final double[] getrOut = new double[2];
+
+    /**
+     * Sets the fields from a Double[] as accepted by 
+     * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(Object).
+     * 
+     * @param vals - Double[18]
+     */
+    public void setValues(Double[] vals){
+        t          = vals[0];
+        m          = vals[1];
+        dt         = vals[2];
+        dtday      = vals[3];
+        std_len    = vals[4];
+        eb         = vals[5];
+        windX      = vals[6];
+        windY      = vals[7];
+        depth      = vals[8];
+        stm_sta    = vals[9];
+        attCoeff   = vals[10];
+        eup        = vals[11];
+        ncas       = vals[12];
+        ncao       = vals[13];
+        cop        = vals[14];
+        pCO2       = vals[15];
+        ageFromYSL = vals[16];
+        dwmax      = vals[17];
+    }
+}
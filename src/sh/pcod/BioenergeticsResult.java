@@ -0,0 +1,45 @@
+/**
+ * BioenergeticsResult.java
+ */
+
+package sh.pcod;
+
+/**
+ * Reusable output record for the typed entry point
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(BioenergeticsInput,BioenergeticsResult).
+ * 
+ * Field order follows the elements of the Double[] returned by
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(Object).
+ */
+public class BioenergeticsResult {
+    /** [0] potential growth (mg) */
+    public double gr_mg;
+    /** [1] metabolism (mg) */
+    public double meta;
+    /** [2] ingestion (mg) */
+    public double ing;
+    /** [3] assimilation efficiency */
+    public double assi;
+    /** [4] stomach fullness */
+    public double stomachFullness;
+    /** [5] mean prey rank in diet */
+    public double avgRank;
+    /** [6] mean prey size in diet (mm) */
+    public double avgSize;
+    /** [7] turbulent dissipation rate */
+    public double eps;
+    /** [8] metabolism at maximum dry weight (mg) */
+    public double metamax;
+    /** [9] potential growth at maximum dry weight (mg) */
+    public double gr_mg_max;
+
+    /**
+     * Returns the values as a Double[] in the order returned by 
+     * IBMFunction_NonEggStageBIOENGrowthRateDW.calculate(Object).
+     * 
+     * @return Double[10]
+     */
+    public Double[] getValues(){
+        return new Double[]{gr_mg,meta,ing,assi,stomachFullness,avgRank,avgSize,eps,metamax,gr_mg_max};
+    }
+}
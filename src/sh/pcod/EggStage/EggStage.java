@@ -20,6 +20,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 import org.openide.util.lookup.ServiceProvider;
+import sh.pcod.EnvSample;
+import sh.pcod.EnvSampler;
+import sh.pcod.EventLog;
+import sh.pcod.StepCost;
+import sh.pcod.Tracks;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.IBMFunctions.Mortality.ConstantMortalityRate;
 import wts.models.DisMELS.IBMFunctions.Mortality.InversePowerLawMortalityRate;
 import wts.models.DisMELS.framework.*;
@@ -32,12 +38,12 @@ import wts.roms.model.LagrangianParticle;
  * @author Sarah Hinckley
  */
 @ServiceProvider(service=LifeStageInterface.class)
-public class EggStage extends AbstractLHS {
+public class EggStage extends AbstractLHS implements StepCost.Estimable {
     
         //Static fields    
             //  Static fields new to this class
     /* flag to do debug operations */
-    public static boolean debug = false;
+    public static volatile boolean debug = false;
     /* Class for attributes SH_NEW*/
     public static final String attributesClass = 
             sh.pcod.EggStage.EggStageAttributes.class.getName();
@@ -70,6 +76,7 @@ public class EggStage extends AbstractLHS {
     protected double  minStageSize;
     protected double  stageTransRate;
     protected boolean useRandomTransitions;
+    protected boolean writeTrackSegments;
     
         //fields that reflect (new) attribute values
     /** flag indicating individual is attached to bottom */
@@ -108,6 +115,12 @@ public class EggStage extends AbstractLHS {
     private IBMFunctionInterface fcnGrDW = null; 
     /** IBM function selected for stage duration */
     private IBMFunctionInterface fcnStageDur = null; 
+    /** flag indicating the attributes are out of date with the instance fields (see getAttributes()) */
+    private boolean attsDirty = false;
+    /** reusable sample of the environment at the individual's position */
+    private EnvSample env = new EnvSample();
+    /** reusable argument array for two-argument IBMFunctions (see TypedFunctions.value(...)) */
+    private Double[] args2 = new Double[2];
     
     private int typeMort = 0;//integer indicating mortality function
     private int typeGrSL = 0;//integer indicating SL growth function
@@ -219,6 +232,7 @@ public class EggStage extends AbstractLHS {
      */
     @Override
     public EggStageAttributes getAttributes() {
+        if (attsDirty) updateAttributes();//attributes are only updated when needed
         return atts;
     }
 
@@ -416,6 +430,8 @@ public class EggStage extends AbstractLHS {
                 params.getValue(EggStageParameters.PARAM_maxStageDuration,maxStageDuration);
         useRandomTransitions = 
                 params.getValue(EggStageParameters.PARAM_useRandomTransitions,true);
+        writeTrackSegments = 
+                params.getValue(EggStageParameters.PARAM_writeTrackSegments,false);
     }
     
     /**
@@ -428,11 +444,13 @@ public class EggStage extends AbstractLHS {
         EggStage clone = null;
         try {
             clone = (EggStage) super.clone();
-            clone.setAttributes(atts);//this clones atts
+            clone.setAttributes(getAttributes());//this clones atts
             clone.setParameters(params);//this clones params
             clone.lp      = (LagrangianParticle) lp.clone();
             clone.track   = (ArrayList<Coordinate>) track.clone();
             clone.trackLL = (ArrayList<Coordinate>) trackLL.clone();
+            clone.env     = new EnvSample();
+            clone.args2   = new Double[2];
         } catch (CloneNotSupportedException ex) {
             ex.printStackTrace();
         }
@@ -441,9 +459,12 @@ public class EggStage extends AbstractLHS {
     }
 
     /**
+     * Returns the individuals this one metamorphoses into during this time step.
+     * 
+     * Thread safety: see ParallelStepper.
      *
      * @param dt - time step in seconds
-     * @return
+     * @return list of metamorphosed individuals (may be empty)
      */
     @Override
     public List<LifeStageInterface> getMetamorphosedIndividuals(double dt) {
@@ -504,6 +525,11 @@ public class EggStage extends AbstractLHS {
     public String getReport() {
         updateAttributes();//make sure attributes are up to date
         atts.setValue(atts.PROP_track, getTrackAsString(COORDINATE_TYPE_GEOGRAPHIC));//
+        if (writeTrackSegments) {
+            //the next report starts from the last reported position
+            Tracks.keepLast(track);
+            Tracks.keepLast(trackLL);
+        }
         return atts.getCSV();
     }
 
@@ -532,7 +558,6 @@ public class EggStage extends AbstractLHS {
         zPos       = atts.getValue(EggStageAttributes.PROP_vertPos,zPos);
         time       = startTime;
         numTrans   = 0.0; //set numTrans to zero
-        if (debug) logger.info(hType+cc+vType+cc+startTime+cc+xPos+cc+yPos+cc+zPos);
         if (i3d!=null) {
             double[] IJ = new double[] {xPos,yPos};
             try {
@@ -551,7 +576,8 @@ public class EggStage extends AbstractLHS {
                 throw(ex);
             }
             double z = i3d.interpolateBathymetricDepth(IJ);
-            if (debug) logger.info("Bathymetric depth = "+z);
+            if (EventLog.isEnabled(EventLog.EVENT_INITIALIZE))
+                EventLog.record(EventLog.EVENT_INITIALIZE,id,startTime,hType,vType,xPos,yPos,zPos,z);
             double ssh = i3d.interpolateSSH(IJ);
 
             double K = 0;  //set K = 0 (at bottom) as default
@@ -588,8 +614,21 @@ public class EggStage extends AbstractLHS {
     }
     
     /**
-     *
-     * @param dt
+     * Estimates the relative cost of the next step (see StepCost).
+     * 
+     * @return relative cost
+     */
+    @Override
+    public double estimateStepCost() {
+        return StepCost.EGG;
+    }
+
+    /**
+     * Steps the individual forward by dt.
+     * 
+     * Thread safety: see ParallelStepper.
+     * 
+     * @param dt - time step in seconds
      * @throws ArrayIndexOutOfBoundsException
      */
     @Override
@@ -606,20 +645,20 @@ public class EggStage extends AbstractLHS {
         
         //growth rate (mm/d) and integration for embryo SL
         if (typeGrSL==EggStageParameters.FCN_GrSL_EggStage_GrowthRate) //T-dep rate for SL
-            grSL = (Double)fcnGrSL.calculate(T); else 
+            grSL = TypedFunctions.value(fcnGrSL,T); else 
         if (typeGrSL==EggStageParameters.FCN_GrSL_EggStageSTDGrowthRate) //STDG rate for SL (T only)
-            grSL = (Double)fcnGrSL.calculate(T); 
+            grSL = TypedFunctions.value(fcnGrSL,T); 
         std_len += (grSL * dtday);
         
         //growth rate (g/g/d) and integration for embryo SL
         if (typeGrDW==EggStageParameters.FCN_GrDW_EggStage_GrowthRate) //T-dep rate for DW
-            grDW = (Double)fcnGrDW.calculate(T); else 
+            grDW = TypedFunctions.value(fcnGrDW,T); else 
         if (typeGrSL==EggStageParameters.FCN_GrSL_EggStageSTDGrowthRate) //STDG rate for DW
-            grDW = (Double)fcnGrDW.calculate((new Double[]{T,dry_wgt})); 
+            grDW = TypedFunctions.value(fcnGrDW,T,dry_wgt,args2); 
         dry_wgt *= Math.exp(grDW * dtday);//mg
         
         //stage duration (only one possible function currently)
-        double stgD = (Double) fcnStageDur.calculate(T);
+        double stgD = TypedFunctions.value(fcnStageDur,T);
         stgProg += dtday/stgD;
         
         updateAge(dt);
@@ -634,7 +673,7 @@ public class EggStage extends AbstractLHS {
         if (debug) {
             logger.info(toString());
         }
-        updateAttributes(); //update the attributes object w/ nmodified values
+        attsDirty = true; //attributes are updated from the modified values when needed (see getAttributes())
     }
     
     /**
@@ -658,7 +697,7 @@ public class EggStage extends AbstractLHS {
         if (typeMort==EggStageParameters.FCN_Mortality_HatchSuccess){ 
             //fcnMortality instanceof IBMFunction_HatchSuccess
             if ((stgProg>=1.0)||(maxStageDuration<=ageInStage)){
-                double h = (Double)fcnMortality.calculate(temperature);//hatch success
+                double h = TypedFunctions.value(fcnMortality,temperature);//hatch success
                 number *= h;
             }
         } else {
@@ -693,12 +732,10 @@ public class EggStage extends AbstractLHS {
     }
     
     private void interpolateEnvVars(double[] pos) {
-        temperature = i3d.interpolateTemperature(pos);
-        salinity    = i3d.interpolateSalinity(pos);
-        //interpolate in situ density field
-        if (i3d.getPhysicalEnvironment().getField("rho")!=null) 
-            rho  = i3d.interpolateValue(pos,"rho");
-        else rho = 0.0;
+        EnvSampler.samplePhysics(i3d,pos,env);
+        temperature = env.temperature;
+        salinity    = env.salinity;
+        rho         = env.rho;
     }
 
     @Override
@@ -777,6 +814,7 @@ public class EggStage extends AbstractLHS {
      */
     @Override
     protected void updateAttributes() {
+        attsDirty = false;
         super.updateAttributes();
         atts.setValue(EggStageAttributes.PROP_attached,attached);
         atts.setValue(EggStageAttributes.PROP_stgProg,stgProg);
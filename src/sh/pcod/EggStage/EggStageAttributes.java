@@ -7,6 +7,8 @@
  *             2. Changed "diameter" to "SL" and "egg diameter" to "embryo SL".
  * 2021-02-08: 1. Added attributes embryo dry weight and growth rates for SL and DW.
  * 2021-02-11: 1. Added egg stage progression attribute.
+ * 20261016: 1. Static attribute schema built once in the nested class Schema
+ *               (unmodifiable, safely published) instead of by the first instance.
  *
  */
 
@@ -43,15 +45,67 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     public static final String PROP_salinity    = "salinity";
     public static final String PROP_rho         = "in situ density";
     
-    protected static final Set<String> newKeys = new LinkedHashSet<>((int)(2*numNewAttributes));
-    protected static final Set<String> allKeys = new LinkedHashSet<>((int)(2*(numAttributes+numNewAttributes)));
-    protected static final Map<String,IBMAttribute> mapAllAttributes = new HashMap<>((int)(2*(numAttributes+numNewAttributes)));
-    protected static final String[] aKeys      = new String[numAttributes+numNewAttributes-1];//does not include typeName
-    protected static final Class[]  classes    = new Class[numAttributes+numNewAttributes];
-    protected static final String[] shortNames = new String[numAttributes+numNewAttributes];
-   
     private static final Logger logger = Logger.getLogger(EggStageAttributes.class.getName());
     
+    /**
+     * Static schema (keys and attributes, including those defined by the 
+     * superclass) for the attributes.
+     * 
+     * The schema is built once, in the static initializer, when it is first used 
+     * (i.e., after the superclass schema has been set up by the first instance),
+     * so it is safely published to all threads. The collections are unmodifiable.
+     */
+    protected static final class Schema {
+        /** keys for the attributes defined by this class, in order */
+        public static final Set<String> newKeys;
+        /** keys for all attributes (including typeName), in order */
+        public static final Set<String> allKeys;
+        /** map from keys to attributes */
+        public static final Map<String,IBMAttribute> mapAllAttributes;
+        /** keys for all attributes, not including typeName */
+        public static final String[] aKeys;
+        /** classes of the attribute values (including typeName) */
+        public static final Class[]  classes;
+        /** short names of the attributes (including typeName) */
+        public static final String[] shortNames;
+        
+        static {
+            Set<String> newKeySet = new LinkedHashSet<>(2*numNewAttributes);
+            Set<String> keySet = new LinkedHashSet<>(2*(numAttributes+numNewAttributes));
+            Map<String,IBMAttribute> attMap = new HashMap<>(2*(numAttributes+numNewAttributes));
+            attMap.putAll(AbstractLHSAttributes.mapAttributes);//add from superclass
+            String key;
+            key = PROP_attached;   newKeySet.add(key); attMap.put(key,new IBMAttributeBoolean(key,"attached"));
+            key = PROP_stgProg;    newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"stgProg"));
+            key = PROP_SL;         newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"SL"));
+            key = PROP_DW;         newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"DW"));
+            //key = PROP_stmsta;     newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"stmsta"));
+            key = PROP_grSL;       newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grSL"));
+            key = PROP_grDW;       newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"grDW"));
+            key = PROP_density;    newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"density"));
+            key = PROP_temperature;newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"temp"));
+            key = PROP_salinity;   newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"sal"));
+            key = PROP_rho;        newKeySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"rho"));
+            keySet.addAll(AbstractLHSAttributes.keys);//add from superclass
+            keySet.addAll(newKeySet);//add from this class
+            newKeys          = Collections.unmodifiableSet(newKeySet);
+            allKeys          = Collections.unmodifiableSet(keySet);
+            mapAllAttributes = Collections.unmodifiableMap(attMap);
+            aKeys      = new String[numAttributes+numNewAttributes-1];//does not include typeName
+            classes    = new Class[numAttributes+numNewAttributes];
+            shortNames = new String[numAttributes+numNewAttributes];
+            int j = 0;
+            for (String k: allKeys){
+                classes[j]    = mapAllAttributes.get(k).getValueClass();
+                shortNames[j] = mapAllAttributes.get(k).shortName;
+                if (j>0) aKeys[j-1] = k;
+                j++;
+            }
+        }
+        
+        private Schema(){}
+    }
+    
     /**
      * This constructor is provided only to facilitate the ServiceProvider functionality.
      * DO NOT USE IT!!
@@ -77,7 +131,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public Object clone() {
         EggStageAttributes clone = new EggStageAttributes(typeName);
-        for (String key: allKeys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.allKeys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
@@ -95,28 +149,10 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
         return atts;
     }
     
+    /**
+     * This method adds default values for the new attributes to the superclass field "mapValues".
+     */
     private void finishInstantiation(){
-        if (newKeys.isEmpty()){
-            //set static field information
-            mapAllAttributes.putAll(AbstractLHSAttributes.mapAttributes);//add from superclass
-            String key;
-            key = PROP_attached;   newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeBoolean(key,"attached"));
-            key = PROP_stgProg;    newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"stgProg"));
-            key = PROP_SL;         newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"SL"));
-            key = PROP_DW;         newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"DW"));
-            //key = PROP_stmsta;     newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"stmsta"));
-            key = PROP_grSL;       newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"grSL"));
-            key = PROP_grDW;       newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"grDW"));
-            key = PROP_density;    newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"density"));
-            key = PROP_temperature;newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"temp"));
-            key = PROP_salinity;   newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"sal"));
-            key = PROP_rho;        newKeys.add(key); mapAllAttributes.put(key,new IBMAttributeDouble(key,"rho"));
-            allKeys.addAll(AbstractLHSAttributes.keys);//add from superclass
-            allKeys.addAll(newKeys);//add from this class
-            Iterator<String> it = allKeys.iterator();
-            int j = 0; it.next();//skip typeName
-            while (it.hasNext()) aKeys[j++] = it.next();
-        }
         //set instance information
         Map<String,Object> tmpMapValues = new HashMap<>((int)(2*(numNewAttributes+numAttributes)));
         tmpMapValues.putAll(mapValues);//copy from super
@@ -142,7 +178,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public ArrayList getArrayList() {
         ArrayList a = super.getArrayList();
-        for (String key: newKeys) a.add(getValue(key));
+        for (String key: Schema.newKeys) a.add(getValue(key));
         return a;
     }
 
@@ -155,7 +191,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     public Object[] getAttributes() {
         Object[] atts = new Object[numNewAttributes+AbstractLHSAttributes.numAttributes-1];
         int j = 0;
-        Iterator<String> it = allKeys.iterator();
+        Iterator<String> it = Schema.allKeys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) atts[j++] = getValue(it.next()); 
         return atts;
@@ -169,7 +205,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public String getCSV() {
         String str = super.getCSV();
-        Iterator<String> it = newKeys.iterator();
+        Iterator<String> it = Schema.newKeys.iterator();
         while (it.hasNext()) str = str+cc+getValueAsString(it.next());
         return str;
     }
@@ -184,7 +220,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public String getCSVHeader() {
         String str = super.getCSVHeader();
-        Iterator<String> it = newKeys.iterator();
+        Iterator<String> it = Schema.newKeys.iterator();
         while (it.hasNext()) str = str+cc+it.next();
         return str;
     }
@@ -199,8 +235,8 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public String getCSVHeaderShortNames() {
         String str = super.getCSVHeaderShortNames();
-        Iterator<String> it = newKeys.iterator();
-        while (it.hasNext()) str = str+cc+mapAllAttributes.get(it.next()).shortName;
+        Iterator<String> it = Schema.newKeys.iterator();
+        while (it.hasNext()) str = str+cc+Schema.mapAllAttributes.get(it.next()).shortName;
         return str;
     }
 
@@ -212,13 +248,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
      */
     @Override
     public Class[] getClasses() {
-        if (classes[0]==null){
-            int j = 0;
-            for (String key: allKeys){
-                classes[j++] = mapAllAttributes.get(key).getValueClass();
-            }
-        }
-        return classes;
+        return Schema.classes;
     }
 
     /**
@@ -229,7 +259,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
      */
     @Override
     public String[] getKeys() {        
-        return aKeys;
+        return Schema.aKeys;
     }
 
     /**
@@ -240,13 +270,7 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
      */
     @Override
     public String[] getShortNames() {
-        if (shortNames[0]==null){
-            int j = 0;
-            for (String key: allKeys){
-                shortNames[j++] = mapAllAttributes.get(key).shortName;
-            }
-        }
-        return shortNames;
+        return Schema.shortNames;
     }
     
     /**
@@ -259,11 +283,11 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
         //set the values of the new attributes
         int j = AbstractLHSAttributes.numAttributes;
         try {
-            for (String key: newKeys) setValueFromString(key,strv[j++]);
+            for (String key: Schema.newKeys) setValueFromString(key,strv[j++]);
         } catch (java.lang.IndexOutOfBoundsException ex) {
             //@TODO: should throw an exception here that identifies the problem
-            String[] aKeys = new String[EggStageAttributes.allKeys.size()];
-            aKeys = EggStageAttributes.allKeys.toArray(aKeys);
+            String[] aKeys = new String[Schema.allKeys.size()];
+            aKeys = Schema.allKeys.toArray(aKeys);
                 String str = "Missing attribute value for "+aKeys[j-1]+".\n"+
                              "Prior values are ";
                 for (int i=0;i<(j);i++) str = str+strv[i]+" ";
@@ -274,8 +298,8 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
                         javax.swing.JOptionPane.ERROR_MESSAGE);
                 throw ex;
         } catch (java.lang.NumberFormatException ex) {
-            String[] aKeys = new String[EggStageAttributes.allKeys.size()];
-            aKeys = EggStageAttributes.allKeys.toArray(aKeys);
+            String[] aKeys = new String[Schema.allKeys.size()];
+            aKeys = Schema.allKeys.toArray(aKeys);
             String str = "Bad attribute value for "+aKeys[j-2]+".\n"+
                          "Value was '"+strv[j-1]+"'.\n"+
                          "Entry was '";
@@ -307,18 +331,23 @@ public class EggStageAttributes extends AbstractLHSAttributes   {
     @Override
     public String getValueAsString(String key){
         Object val = getValue(key);
-        IBMAttribute att = mapAllAttributes.get(key);
-        att.setValue(val);
-        String str = att.getValueAsString();
-        return str;
+        IBMAttribute att = Schema.mapAllAttributes.get(key);
+        synchronized(att) {//the schema attributes are shared by all instances
+            att.setValue(val);
+            return att.getValueAsString();
+        }
     }
     
     @Override
     public void setValueFromString(String key, String value) throws NumberFormatException {
         if (!key.equals(PROP_typeName)){
-            IBMAttribute att = mapAllAttributes.get(key);
-            att.parseValue(value);
-            setValue(key,att.getValue());
+            IBMAttribute att = Schema.mapAllAttributes.get(key);
+            Object val;
+            synchronized(att) {//the schema attributes are shared by all instances
+                att.parseValue(value);
+                val = att.getValue();
+            }
+            setValue(key,val);
         }
     }
 }
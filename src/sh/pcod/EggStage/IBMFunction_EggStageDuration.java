@@ -7,6 +7,7 @@ package sh.pcod.EggStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
@@ -25,7 +26,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_EggStageDuration extends AbstractIBMFunction implements IBMGrowthFunctionInterface {
+public class IBMFunction_EggStageDuration extends AbstractIBMFunction implements IBMGrowthFunctionInterface, TypedFunctions.Unary {
     public static final String DEFAULT_type = "Growth";
     /** user-friendly function name */
     public static final String DEFAULT_name = "Temperature-dependent stage duration for Pacific cod eggs-embryos";
@@ -85,8 +86,20 @@ public class IBMFunction_EggStageDuration extends AbstractIBMFunction implements
     @Override
     public Object calculate(Object o) {
         double t = (Double) o;
+        return (Double) calculate(t);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * 
+     * @return stage duration in days
+     */
+    @Override
+    public double calculate(double t) {
         double D = 46.597 - 4.079 * t;
-        return (Double) D;
+        return D;
     }
     
 }
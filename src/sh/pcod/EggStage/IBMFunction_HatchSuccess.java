@@ -5,6 +5,7 @@ package sh.pcod.EggStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMMortalityFunctionInterface;
@@ -18,7 +19,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMMortalityFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_HatchSuccess extends AbstractIBMFunction implements IBMMortalityFunctionInterface {
+public class IBMFunction_HatchSuccess extends AbstractIBMFunction implements IBMMortalityFunctionInterface, TypedFunctions.Unary {
     public static final String DEFAULT_type = "Mortality";
     /** user-friendly function name */
     public static final String DEFAULT_name = "Pacific cod egg hatch sucess rate";
@@ -80,9 +81,21 @@ public class IBMFunction_HatchSuccess extends AbstractIBMFunction implements IBM
     @Override
     public Object calculate(Object o) {
         double t = (Double) o;
+        return (Double) calculate(t);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * 
+     * @return fractional hatching (survival) of eggs
+     */
+    @Override
+    public double calculate(double t) {
         double h = 0.453/(1.0+(Math.pow((t-4.192)/2.125, 2.0)));
         if (t>11.0) h = 0.0;
-        return (Double) h;
+        return h;
     }
     
 }
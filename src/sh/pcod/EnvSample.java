@@ -0,0 +1,67 @@
+/**
+ * EnvSample.java
+ */
+
+package sh.pcod;
+
+/**
+ * Reusable record of the environmental values sampled at an individual's position
+ * by EnvSampler. Stages should keep one instance and reuse it every time step.
+ */
+public class EnvSample {
+    /** in situ temperature (deg C) */
+    public double temperature;
+    /** in situ salinity */
+    public double salinity;
+    /** in situ density (0 if the environment has no "rho" field) */
+    public double rho;
+
+    /** copepod density */
+    public double copepod;
+    /** euphausiid density (offshore) */
+    public double euphausiid;
+    /** euphausiid density (shelf) */
+    public double euphausiidShelf;
+    /** Neocalanus density (offshore) */
+    public double neocalanus;
+    /** Neocalanus density (shelf) */
+    public double neocalanusShelf;
+    /** large phytoplankton density */
+    public double phytoL;
+    /** small phytoplankton density */
+    public double phytoS;
+    /** large microzooplankton density */
+    public double microzooL;
+    /** small microzooplankton density */
+    public double microzooS;
+    /** surface stress, u component */
+    public double tauX;
+    /** surface stress, v component */
+    public double tauY;
+    /** pCO2 */
+    public double pCO2;
+
+    /** 
+     * flag indicating copepod was sampled by EnvSampler.sampleAvailablePrey(...) 
+     * (reset by EnvSampler.samplePhysics(...))
+     */
+    public boolean hasCopepod;
+    /** 
+     * flag indicating euphausiid was sampled by EnvSampler.sampleAvailablePrey(...) 
+     * (reset by EnvSampler.samplePhysics(...))
+     */
+    public boolean hasEuphausiid;
+    /** 
+     * flag indicating neocalanus was sampled by EnvSampler.sampleAvailablePrey(...) 
+     * (reset by EnvSampler.samplePhysics(...))
+     */
+    public boolean hasNeocalanus;
+
+    /** horizontal position buffer for the 2D fields */
+    final double[] pos2d = new double[2];
+
+    /** physical environment the physics values were last sampled from */
+    Object physics = null;
+    /** position the physics values were last sampled at */
+    final double[] physicsPos = new double[3];
+}
@@ -0,0 +1,243 @@
+/**
+ * EnvSampler.java
+ */
+
+package sh.pcod;
+
+import wts.roms.model.Interpolator3D;
+
+/**
+ * Samples the environmental fields used by the Pacific cod stages at an
+ * individual's position into a reusable EnvSample.
+ *
+ * Which optional fields ("rho", "Cop", "Eup", "NCa") the physical environment
+ * provides is looked up once per physical environment instance, rather than by
+ * every individual on every call. The 2D surface stress fields are sampled using
+ * a position buffer held by the EnvSample, so no arrays are allocated per call.
+ *
+ * Samples taken at the end of a time step can be carried over to the start of
+ * the next one (see isCarriedOver(...)): the individual has not moved in between,
+ * so the values are still valid as long as the interpolator uses the same
+ * physical environment (i.e., the forcing time slice has not changed).
+ *
+ * The individual fields are still interpolated one by one through
+ * Interpolator3D.interpolateValue(...): the interpolator does not expose its cell
+ * search or interpolation weights, so these cannot be shared between fields.
+ */
+public final class EnvSampler {
+
+    /** environmental field with copepod densities */
+    public static final String FIELD_Cop  = "Cop";
+    /** environmental field with euphausiid densities */
+    public static final String FIELD_Eup  = "Eup";
+    /** environmental field with euphausiid shelf densities */
+    public static final String FIELD_EupS = "EupS";
+    /** environmental field with neocalanus densities */
+    public static final String FIELD_NCa  = "NCa";
+    /** environmental field with neocalanus shelf densities */
+    public static final String FIELD_NCaS = "NCaS";
+    /** environmental field with large phytoplankton densities */
+    public static final String FIELD_PhL  = "PhL";
+    /** environmental field with small phytoplankton densities */
+    public static final String FIELD_PhS  = "PhS";
+    /** environmental field with large microzooplankton densities */
+    public static final String FIELD_Mzl  = "Mzl";
+    /** environmental field with small microzooplankton densities */
+    public static final String FIELD_Mzs  = "Mzs";
+    /** environmental field with u surface stress */
+    public static final String FIELD_Su   = "Su";
+    /** environmental field with v surface stress */
+    public static final String FIELD_Sv   = "Sv";
+    /** environmental field with pCO2 */
+    public static final String FIELD_pCO2 = "pCO2";
+    /** environmental field with density */
+    public static final String FIELD_rho  = "rho";
+
+    /** optional fields provided by the current physical environment */
+    private static volatile Fields fields = null;
+
+    private EnvSampler(){}
+
+    /**
+     * Samples temperature, salinity and density (0 if not provided by the
+     * physical environment).
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void samplePhysics(Interpolator3D i3d, double[] pos, EnvSample s) {
+        samplePhysics(i3d,pos,i3d.interpolateTemperature(pos),s);
+    }
+
+    /**
+     * Samples salinity and density (0 if not provided by the physical environment)
+     * when the temperature at pos is already known.
+     *
+     * @param i3d         - interpolator
+     * @param pos         - position in ROMS {xi, eta, K} grid coordinates
+     * @param temperature - temperature at pos
+     * @param s           - sample, updated
+     */
+    public static void samplePhysics(Interpolator3D i3d, double[] pos, double temperature, EnvSample s) {
+        s.temperature = temperature;
+        s.salinity    = i3d.interpolateSalinity(pos);
+        s.rho         = fields(i3d).rho ? i3d.interpolateValue(pos,FIELD_rho) : 0.0;
+        s.hasCopepod    = false;
+        s.hasEuphausiid = false;
+        s.hasNeocalanus = false;
+        s.physics = i3d.getPhysicalEnvironment();
+        System.arraycopy(pos,0,s.physicsPos,0,s.physicsPos.length);
+    }
+
+    /**
+     * Checks whether the values last sampled by samplePhysics(...) (and any 
+     * sampled by sampleAvailablePrey(...) after it) are still valid at pos: 
+     * i.e., they were sampled at pos and the interpolator's physical environment 
+     * has not changed since. If so, the temperature, salinity and density (and 
+     * the prey densities flagged as sampled) can be used in place of new 
+     * interpolations.
+     *
+     * This relies on the physical environment being replaced, not updated in 
+     * place, when the forcing advances to a new time slice.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample
+     * @return true if the values in s are valid at pos
+     */
+    public static boolean isCarriedOver(Interpolator3D i3d, double[] pos, EnvSample s) {
+        return (s.physics!=null)&&(s.physics==i3d.getPhysicalEnvironment())
+                &&(s.physicsPos[0]==pos[0])&&(s.physicsPos[1]==pos[1])&&(s.physicsPos[2]==pos[2]);
+    }
+
+    /**
+     * Samples the copepod, euphausiid and neocalanus densities that are provided
+     * by the physical environment, and sets the corresponding flags in the sample.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void sampleAvailablePrey(Interpolator3D i3d, double[] pos, EnvSample s) {
+        Fields f = fields(i3d);
+        s.hasCopepod    = f.cop;
+        s.hasEuphausiid = f.eup;
+        s.hasNeocalanus = f.nca;
+        if (f.cop) s.copepod    = i3d.interpolateValue(pos,FIELD_Cop,Interpolator3D.INTERP_VAL);
+        if (f.eup) s.euphausiid = i3d.interpolateValue(pos,FIELD_Eup,Interpolator3D.INTERP_VAL);
+        if (f.nca) s.neocalanus = i3d.interpolateValue(pos,FIELD_NCa,Interpolator3D.INTERP_VAL);
+    }
+
+    /**
+     * Samples the fields used by the BIOEN growth calculations: prey and
+     * phytoplankton densities and pCO2 at pos, and surface stress at the
+     * horizontal position of pos.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void samplePrey(Interpolator3D i3d, double[] pos, EnvSample s) {
+        samplePrey(i3d,pos,s,false);
+    }
+
+    /**
+     * Samples the fields used by the BIOEN growth calculations, as in 
+     * samplePrey(i3d,pos,s), but reuses the copepod, euphausiid and neocalanus
+     * densities carried over in s if carried is true.
+     *
+     * @param i3d     - interpolator
+     * @param pos     - position in ROMS {xi, eta, K} grid coordinates
+     * @param s       - sample, updated
+     * @param carried - result of isCarriedOver(i3d,pos,s)
+     */
+    public static void samplePrey(Interpolator3D i3d, double[] pos, EnvSample s, boolean carried) {
+        sampleZooplankton(i3d,pos,s,carried);
+        samplePhytoplankton(i3d,pos,s);
+    }
+
+    /**
+     * Samples the copepod, euphausiid and neocalanus densities at pos and
+     * surface stress at the horizontal position of pos. These are only used by
+     * the feeding (BIOEN) calculations.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void sampleZooplankton(Interpolator3D i3d, double[] pos, EnvSample s) {
+        sampleZooplankton(i3d,pos,s,false);
+    }
+
+    private static void sampleZooplankton(Interpolator3D i3d, double[] pos, EnvSample s, boolean carried) {
+        if (!(carried&&s.hasCopepod))    s.copepod    = i3d.interpolateValue(pos,FIELD_Cop,Interpolator3D.INTERP_VAL);
+        if (!(carried&&s.hasEuphausiid)) s.euphausiid = i3d.interpolateValue(pos,FIELD_Eup,Interpolator3D.INTERP_VAL);
+        s.euphausiidShelf = i3d.interpolateValue(pos,FIELD_EupS,Interpolator3D.INTERP_VAL);
+        if (!(carried&&s.hasNeocalanus)) s.neocalanus = i3d.interpolateValue(pos,FIELD_NCa,Interpolator3D.INTERP_VAL);
+        s.neocalanusShelf = i3d.interpolateValue(pos,FIELD_NCaS,Interpolator3D.INTERP_VAL);
+        s.pos2d[0] = pos[0];
+        s.pos2d[1] = pos[1];
+        s.tauX = i3d.interpolateValue(s.pos2d,FIELD_Su,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
+        s.tauY = i3d.interpolateValue(s.pos2d,FIELD_Sv,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
+    }
+
+    /**
+     * Samples the large and small phytoplankton densities (used for light
+     * attenuation) and pCO2 at pos.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void samplePhytoplankton(Interpolator3D i3d, double[] pos, EnvSample s) {
+        s.phytoL = i3d.interpolateValue(pos,FIELD_PhL,Interpolator3D.INTERP_VAL);
+        s.phytoS = i3d.interpolateValue(pos,FIELD_PhS,Interpolator3D.INTERP_VAL);
+        s.pCO2   = i3d.interpolateValue(pos,FIELD_pCO2,Interpolator3D.INTERP_VAL);
+    }
+
+    /**
+     * Samples the large and small microzooplankton densities.
+     *
+     * @param i3d - interpolator
+     * @param pos - position in ROMS {xi, eta, K} grid coordinates
+     * @param s   - sample, updated
+     */
+    public static void sampleMicrozooplankton(Interpolator3D i3d, double[] pos, EnvSample s) {
+        s.microzooL = i3d.interpolateValue(pos,FIELD_Mzl,Interpolator3D.INTERP_VAL);
+        s.microzooS = i3d.interpolateValue(pos,FIELD_Mzs,Interpolator3D.INTERP_VAL);
+    }
+
+    /**
+     * Returns the optional fields provided by the interpolator's current physical
+     * environment, looking them up if the environment has changed.
+     */
+    private static Fields fields(Interpolator3D i3d) {
+        Object pe = i3d.getPhysicalEnvironment();
+        Fields f = fields;
+        if ((f==null)||(f.env!=pe)) {
+            f = new Fields(i3d,pe);
+            fields = f;
+        }
+        return f;
+    }
+
+    /**
+     * Optional fields provided by one physical environment instance.
+     */
+    private static final class Fields {
+        final Object env;
+        final boolean rho;
+        final boolean cop;
+        final boolean eup;
+        final boolean nca;
+
+        Fields(Interpolator3D i3d, Object env) {
+            this.env = env;
+            rho = i3d.getPhysicalEnvironment().getField(FIELD_rho)!=null;
+            cop = i3d.getPhysicalEnvironment().getField(FIELD_Cop)!=null;
+            eup = i3d.getPhysicalEnvironment().getField(FIELD_Eup)!=null;
+            nca = i3d.getPhysicalEnvironment().getField(FIELD_NCa)!=null;
+        }
+    }
+}
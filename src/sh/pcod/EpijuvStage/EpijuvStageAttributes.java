@@ -61,7 +61,7 @@ public class EpijuvStageAttributes extends AbstractJuvenileAttributes {
     @Override
     public Object clone() {
         EpijuvStageAttributes clone = new EpijuvStageAttributes(typeName);
-        for (String key: EpijuvStageAttributes.keys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.keys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
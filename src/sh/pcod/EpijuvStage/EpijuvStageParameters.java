@@ -50,12 +50,18 @@ public class EpijuvStageParameters extends AbstractLHSParameters {
     public static final long serialVersionUID = 1L;
     
     /** the number of IBMParameter objects defined in the class */
-    public static final int numParams = 8;
+    public static final int numParams = 14;
     public static final String PARAM_isSuperIndividual      = "is a super-individual?";
     public static final String PARAM_horizRWP               = "horizontal random walk parameter [m^2]/[s]";
     public static final String PARAM_minStageDuration       = "min stage duration [d]";
     public static final String PARAM_maxStageDuration       = "max stage duration [d]";
     public static final String PARAM_useRandomTransitions   = "use random transitions";
+    public static final String PARAM_useTabulatedVisualRange = "use tabulated visual range";
+    public static final String PARAM_useTabulatedCapture     = "use tabulated capture probability";
+    public static final String PARAM_useLightField           = "use shared light field";
+    public static final String PARAM_useSolarEphemeris       = "use shared solar ephemeris";
+    public static final String PARAM_useCarryOver            = "reuse end-of-step environment";
+    public static final String PARAM_writeTrackSegments      = "write track segments only";
     public static final String PARAM_minSettlementDepth     = "min settlement depth (m)";
     public static final String PARAM_maxSettlementDepth     = "max settlement depth (m)";
     public static final String PARAM_minSettlementHSI       = "min settlement HSI (0-1)";
@@ -130,6 +136,12 @@ public class EpijuvStageParameters extends AbstractLHSParameters {
         key = PARAM_maxSettlementDepth;   mapParams.put(key,new IBMParameterDouble(key,key,new Double(365)));
         key = PARAM_minSettlementHSI;     mapParams.put(key,new IBMParameterDouble(key,key,new Double(0)));
         key = PARAM_useRandomTransitions; mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_useTabulatedVisualRange; mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_useTabulatedCapture;     mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_useLightField;           mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_useSolarEphemeris;       mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_useCarryOver;            mapParams.put(key,new IBMParameterBoolean(key,key,false));
+        key = PARAM_writeTrackSegments;      mapParams.put(key,new IBMParameterBoolean(key,key,false));
     }
 
     @Override
@@ -7,6 +7,7 @@ package sh.pcod.EpijuvStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 
@@ -21,7 +22,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_Epijuv_VerticalSwimmingSpeed extends AbstractIBMFunction {
+public class IBMFunction_Epijuv_VerticalSwimmingSpeed extends AbstractIBMFunction implements TypedFunctions.Binary {
     public static final String DEFAULT_type = "Vertical swimming speed";
     /** user-friendly function name */
     public static final String DEFAULT_name = "Vertical swimming speed (mm/s) for Pacific cod Epijuv as function of temperature and size";
@@ -84,10 +85,21 @@ public class IBMFunction_Epijuv_VerticalSwimmingSpeed extends AbstractIBMFunctio
     @Override
     public Object calculate(Object o) {
         Double[] vals = (Double[])o;
-        double t  = vals[0];//temperature
-        double tl = vals[1];//total length
+        return (Double) calculate(vals[0],vals[1]);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * @param tl - total length of fish (mm)
+     * 
+     * @return vertical swimming speed (mm/s)
+     */
+    @Override
+    public double calculate(double t, double tl) {
         double s = (0.081221 + 0.043168*Math.log10(t)) * Math.pow(tl,1.49652);
-        return (Double) s;
+        return s;
     }
     
 }
@@ -0,0 +1,270 @@
+/**
+ * EventLog.java
+ */
+
+package sh.pcod;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Structured log for frequent per-individual events in the Pacific cod stages
+ * (e.g., initialization of an individual, checks on first feeding), used instead
+ * of building log messages with java.util.logging.
+ *
+ * Each event type is enabled or disabled separately. A disabled event costs a
+ * single array lookup in isEnabled(...) and nothing is built for it. Enabled
+ * events are copied as primitive values into a pre-allocated ring buffer, which
+ * a background thread writes to a CSV file with columns
+ *   event,id,time,v1,...,v6
+ * where the meaning of the values v1-v6 depends on the event type (see the
+ * EVENT_ constants). If the buffer is full, new events are dropped (and counted)
+ * rather than blocking the model.
+ *
+ * Events are enabled through system properties:
+ *   sh.pcod.events      - comma-separated event names (see NAMES), or "all"
+ *   sh.pcod.events.file - output file (default "pcod_events.csv")
+ * All events are disabled by default.
+ */
+public final class EventLog {
+
+    /**
+     * initialization of an individual:
+     * v1 = horizontal position type, v2 = vertical position type,
+     * v3 = horizontal position 1, v4 = horizontal position 2,
+     * v5 = vertical position, v6 = bathymetric depth
+     */
+    public static final int EVENT_INITIALIZE = 0;
+    /**
+     * check on first feeding (YSL stage):
+     * v1 = random draw, v2 = cumulative probability of feeding
+     */
+    public static final int EVENT_FIRST_FEEDING = 1;
+    /** event names, by type */
+    public static final String[] NAMES = new String[]{"initialize","firstFeeding"};
+
+    /** number of values per event */
+    public static final int NUM_VALUES = 6;
+    /** capacity of the ring buffer (number of events, a power of 2) */
+    public static final int CAPACITY = 1<<16;
+    /** interval at which the background thread writes events (ms) */
+    public static final long FLUSH_INTERVAL = 500;
+
+    /** system property with the enabled events */
+    public static final String PROP_EVENTS = "sh.pcod.events";
+    /** system property with the output file */
+    public static final String PROP_FILE = "sh.pcod.events.file";
+
+    private static final Logger logger = Logger.getLogger(EventLog.class.getName());
+
+    /** flags indicating enabled event types */
+    private static final boolean[] enabled = new boolean[NAMES.length];
+
+    /* ring buffer, guarded by lock */
+    private static final Object lock = new Object();
+    private static final int[]    types  = new int[CAPACITY];
+    private static final long[]   ids    = new long[CAPACITY];
+    private static final double[] times  = new double[CAPACITY];
+    private static final double[] values = new double[CAPACITY*NUM_VALUES];
+    private static long head = 0;//number of events taken by the writer
+    private static long tail = 0;//number of events recorded
+    private static long dropped = 0;
+
+    static {
+        String str = System.getProperty(PROP_EVENTS,"").trim();
+        if (!str.isEmpty()) {
+            for (String name: str.split(",")) {
+                name = name.trim();
+                for (int t=0; t<NAMES.length; t++) {
+                    if (name.equals("all")||name.equals(NAMES[t])) enabled[t] = true;
+                }
+            }
+            String file = System.getProperty(PROP_FILE,"pcod_events.csv");
+            try {
+                Writer w = new Writer(new BufferedWriter(new FileWriter(file)));
+                w.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(new Closer(w)));
+            } catch (IOException ex) {
+                logger.log(Level.WARNING,"could not open event log file "+file+"; events disabled",ex);
+                for (int t=0; t<NAMES.length; t++) enabled[t] = false;
+            }
+        }
+    }
+
+    private EventLog(){}
+
+    /**
+     * Checks whether events of the given type are recorded.
+     *
+     * @param type - event type (one of the EVENT_ constants)
+     * @return true if the event type is enabled
+     */
+    public static boolean isEnabled(int type) {
+        return enabled[type];
+    }
+
+    /**
+     * Records an event with two values, if the event type is enabled.
+     *
+     * @param type - event type (one of the EVENT_ constants)
+     * @param id   - individual id
+     * @param time - model time
+     * @param v1   - first value
+     * @param v2   - second value
+     */
+    public static void record(int type, long id, double time, double v1, double v2) {
+        record(type,id,time,v1,v2,Double.NaN,Double.NaN,Double.NaN,Double.NaN);
+    }
+
+    /**
+     * Records an event with six values, if the event type is enabled.
+     *
+     * @param type - event type (one of the EVENT_ constants)
+     * @param id   - individual id
+     * @param time - model time
+     * @param v1   - first value
+     * @param v2   - second value
+     * @param v3   - third value
+     * @param v4   - fourth value
+     * @param v5   - fifth value
+     * @param v6   - sixth value
+     */
+    public static void record(int type, long id, double time,
+                              double v1, double v2, double v3, double v4, double v5, double v6) {
+        if (!enabled[type]) return;
+        synchronized(lock) {
+            if (tail-head>=CAPACITY) {
+                dropped++;
+                return;
+            }
+            int i = (int) (tail&(CAPACITY-1));
+            types[i] = type;
+            ids[i]   = id;
+            times[i] = time;
+            int j = i*NUM_VALUES;
+            values[j]   = v1;
+            values[j+1] = v2;
+            values[j+2] = v3;
+            values[j+3] = v4;
+            values[j+4] = v5;
+            values[j+5] = v6;
+            tail++;
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     *
+     * @return number of dropped events
+     */
+    public static long getDropped() {
+        synchronized(lock) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Background thread writing the buffered events.
+     */
+    private static final class Writer extends Thread {
+        private final BufferedWriter out;
+        /* copies of the events taken from the ring buffer */
+        private final int[]    bTypes  = new int[CAPACITY];
+        private final long[]   bIds    = new long[CAPACITY];
+        private final double[] bTimes  = new double[CAPACITY];
+        private final double[] bValues = new double[CAPACITY*NUM_VALUES];
+        private volatile boolean closing = false;
+
+        Writer(BufferedWriter out) throws IOException {
+            super("sh.pcod event log");
+            setDaemon(true);
+            this.out = out;
+            out.write("event,id,time,v1,v2,v3,v4,v5,v6");
+            out.newLine();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closing) {
+                    try {
+                        Thread.sleep(FLUSH_INTERVAL);
+                    } catch (InterruptedException ex) {
+                        //closing: write remaining events
+                    }
+                    write();
+                }
+                write();
+                out.close();
+                long n = getDropped();
+                if (n>0) logger.warning(n+" events were dropped because the event log buffer was full");
+            } catch (IOException ex) {
+                logger.log(Level.WARNING,"error writing event log; events disabled",ex);
+                for (int t=0; t<NAMES.length; t++) enabled[t] = false;
+            }
+        }
+
+        /**
+         * Takes the buffered events and writes them.
+         */
+        private void write() throws IOException {
+            int n;
+            synchronized(lock) {
+                n = (int) (tail-head);
+                for (int k=0; k<n; k++) {
+                    int i = (int) ((head+k)&(CAPACITY-1));
+                    bTypes[k] = types[i];
+                    bIds[k]   = ids[i];
+                    bTimes[k] = times[i];
+                    System.arraycopy(values,i*NUM_VALUES,bValues,k*NUM_VALUES,NUM_VALUES);
+                }
+                head = tail;
+            }
+            StringBuilder b = new StringBuilder(128);
+            for (int k=0; k<n; k++) {
+                b.setLength(0);
+                b.append(NAMES[bTypes[k]]).append(',').append(bIds[k]).append(',').append(bTimes[k]);
+                for (int v=0; v<NUM_VALUES; v++) {
+                    double x = bValues[k*NUM_VALUES+v];
+                    b.append(',');
+                    if (!Double.isNaN(x)) b.append(x);
+                }
+                out.write(b.toString());
+                out.newLine();
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes the remaining events and closes the file.
+         */
+        void close() {
+            closing = true;
+            interrupt();
+            try {
+                join(10*FLUSH_INTERVAL);
+            } catch (InterruptedException ex) {
+                //give up
+            }
+        }
+    }
+
+    /**
+     * Shutdown hook closing the writer.
+     */
+    private static final class Closer implements Runnable {
+        private final Writer writer;
+
+        Closer(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void run() {
+            writer.close();
+        }
+    }
+}
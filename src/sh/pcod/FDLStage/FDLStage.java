@@ -21,15 +21,24 @@ import org.openide.util.lookup.ServiceProvider;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateSL;
+import sh.pcod.BioenergeticsBatch;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.EnvSample;
+import sh.pcod.EnvSampler;
+import sh.pcod.EventLog;
+import sh.pcod.IndividualRandomStream;
+import sh.pcod.StepContext;
+import sh.pcod.StepCost;
+import sh.pcod.Tracks;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.IBMFunctions.Mortality.ConstantMortalityRate;
 import wts.models.DisMELS.IBMFunctions.Mortality.InversePowerLawMortalityRate;
 import wts.models.DisMELS.framework.*;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
-import wts.models.utilities.DateTimeFunctions;
 import wts.roms.model.LagrangianParticle;
 import sh.pcod.YSLStage.YSLStageAttributes;
 import wts.models.DisMELS.IBMFunctions.Movement.DielVerticalMigration_FixedDepthRanges;
-import wts.models.utilities.CalendarIF;
 import wts.roms.model.Interpolator3D;
 // import wts.roms.model.Interpolator2D;
 
@@ -38,12 +47,12 @@ import wts.roms.model.Interpolator3D;
  * @author William Stockhausen
  */
 @ServiceProvider(service=LifeStageInterface.class)
-public class FDLStage extends AbstractLHS {
+public class FDLStage extends AbstractLHS implements StepCost.Estimable, BioenergeticsBatch.Batchable {
     
         //Static fields    
             //  Static fields new to this class
     /* flag to do debug operations */
-    public static boolean debug = false;
+    public static volatile boolean debug = false;
     /* Class for attributes SH_NEW */
     public static final String attributesClass = 
             sh.pcod.FDLStage.FDLStageAttributes.class.getName();
@@ -100,6 +109,12 @@ public class FDLStage extends AbstractLHS {
     protected double  minStageSize;
     protected double  stageTransRate;
     protected boolean useRandomTransitions;
+    protected boolean useTabulatedVisualRange;
+    protected boolean useTabulatedCapture;
+    protected boolean useLightField;
+    protected boolean useSolarEphemeris;
+    protected boolean useCarryOver;
+    protected boolean writeTrackSegments;
     
         //fields that reflect (new) attribute values
     /** flag indicating individual is attached to bottom */
@@ -181,6 +196,38 @@ public class FDLStage extends AbstractLHS {
     private IBMFunctionInterface fcnGrSL = null; 
     /** IBM function selected for growth in DW */
     private IBMFunctionInterface fcnGrDW = null; 
+    /** BIOEN growth function (same object as fcnGrDW), if selected */
+    private IBMFunction_NonEggStageBIOENGrowthRateDW fcnBioen = null; 
+    /** reusable input for the BIOEN growth function */
+    private BioenergeticsInput bioenIn = new BioenergeticsInput();
+    /** reusable result from the BIOEN growth function */
+    private BioenergeticsResult bioenOut = new BioenergeticsResult();
+    /** flag indicating the attributes are out of date with the instance fields (see getAttributes()) */
+    private boolean attsDirty = false;
+    /** reusable sample of the environment at the individual's position */
+    private EnvSample env = new EnvSample();
+    /** reusable buffer for the light calculations (K parameter and second part of Eb equation) */
+    private double[] eb2 = new double[2];
+    /** reusable buffer for the mortality calculations */
+    private double[] mortOut = new double[5];
+    /** reusable argument array for two-argument IBMFunctions (see TypedFunctions.value(...)) */
+    private Double[] args2 = new Double[2];
+    /** reusable argument array for fcnVM (see argsVM(...)) */
+    private double[] vmArgs = new double[5];
+    /** reusable result array for calcUVW(...) */
+    private double[] uvw = new double[3];
+    /** random number stream for this individual */
+    private IndividualRandomStream rnd = null;
+    /** time information for the current time step */
+    private StepContext ctx = null;
+    /** position at the end of the current step (set by beginStep(...)) */
+    private double[] stepPos = null;
+    /** dry weight (mg) at the start of the current step (set by beginStep(...)) */
+    private double stepOldDryWgt = 0;
+    /** standard length (mm) at the start of the current step (set by beginStep(...)) */
+    private double stepOldStdLen = 0;
+    /** light at depth in the current step (set by beginStep(...)) */
+    private double stepEb = 0;
     /** IBM function selected for vertical movement */
     private IBMFunctionInterface fcnVM = null; 
     /** IBM function selected for vertical velocity */
@@ -300,6 +347,7 @@ public class FDLStage extends AbstractLHS {
      */
     @Override
     public FDLStageAttributes getAttributes() {
+        if (attsDirty) updateAttributes();//attributes are only updated when needed
         return atts;
     }
 
@@ -473,6 +521,7 @@ public class FDLStage extends AbstractLHS {
             fcnMortality = params.getSelectedIBMFunctionForCategory(FDLStageParameters.FCAT_Mortality);
             fcnGrSL = params.getSelectedIBMFunctionForCategory(FDLStageParameters.FCAT_GrowthSL);
             fcnGrDW = params.getSelectedIBMFunctionForCategory(FDLStageParameters.FCAT_GrowthDW);
+            fcnBioen = (fcnGrDW instanceof IBMFunction_NonEggStageBIOENGrowthRateDW) ? (IBMFunction_NonEggStageBIOENGrowthRateDW) fcnGrDW : null;
             fcnVM   = params.getSelectedIBMFunctionForCategory(FDLStageParameters.FCAT_VerticalMovement);
             fcnVV   = params.getSelectedIBMFunctionForCategory(FDLStageParameters.FCAT_VerticalVelocity);
             
@@ -518,6 +567,18 @@ public class FDLStage extends AbstractLHS {
                 params.getValue(FDLStageParameters.PARAM_maxStageDuration,maxStageDuration);
         useRandomTransitions = 
                 params.getValue(FDLStageParameters.PARAM_useRandomTransitions,true);
+        useTabulatedVisualRange = 
+                params.getValue(FDLStageParameters.PARAM_useTabulatedVisualRange,false);
+        useTabulatedCapture = 
+                params.getValue(FDLStageParameters.PARAM_useTabulatedCapture,false);
+        useLightField = 
+                params.getValue(FDLStageParameters.PARAM_useLightField,false);
+        useSolarEphemeris = 
+                params.getValue(FDLStageParameters.PARAM_useSolarEphemeris,false);
+        useCarryOver = 
+                params.getValue(FDLStageParameters.PARAM_useCarryOver,false);
+        writeTrackSegments = 
+                params.getValue(FDLStageParameters.PARAM_writeTrackSegments,false);
     }
     
     /**
@@ -530,12 +591,20 @@ public class FDLStage extends AbstractLHS {
         FDLStage clone = null;
         try {
             clone = (FDLStage) super.clone();
-            clone.setAttributes(atts);//this clones atts
+            clone.setAttributes(getAttributes());//this clones atts
             clone.updateVariables();  //this sets the variables in the clone to the attribute values
             clone.setParameters(params);//this clones params
             clone.lp      = (LagrangianParticle) lp.clone();
             clone.track   = (ArrayList<Coordinate>) track.clone();
             clone.trackLL = (ArrayList<Coordinate>) trackLL.clone();
+            clone.bioenIn  = new BioenergeticsInput();
+            clone.bioenOut = new BioenergeticsResult();
+            clone.env      = new EnvSample();
+            clone.eb2      = new double[2];
+            clone.mortOut  = new double[5];
+            clone.args2    = new Double[2];
+            clone.vmArgs   = new double[5];
+            clone.uvw      = new double[3];
         } catch (CloneNotSupportedException ex) {
             ex.printStackTrace();
         }
@@ -544,9 +613,12 @@ public class FDLStage extends AbstractLHS {
     }
 
     /**
+     * Returns the individuals this one metamorphoses into during this time step.
+     * 
+     * Thread safety: see ParallelStepper.
      *
      * @param dt - time step in seconds
-     * @return
+     * @return list of metamorphosed individuals (may be empty)
      */
     @Override
     public List<LifeStageInterface> getMetamorphosedIndividuals(double dt) {
@@ -607,6 +679,11 @@ public class FDLStage extends AbstractLHS {
     public String getReport() {
         updateAttributes();//make sure attributes are up to date
         atts.setValue(atts.PROP_track, getTrackAsString(COORDINATE_TYPE_GEOGRAPHIC));//
+        if (writeTrackSegments) {
+            //the next report starts from the last reported position
+            Tracks.keepLast(track);
+            Tracks.keepLast(trackLL);
+        }
         return atts.getCSV();
     }
 
@@ -636,7 +713,6 @@ public class FDLStage extends AbstractLHS {
         zPos       = atts.getValue(FDLStageAttributes.PROP_vertPos,zPos);
         time       = startTime;
         numTrans   = 0.0; //set numTrans to zero
-        logger.info(hType+cc+vType+cc+startTime+cc+xPos+cc+yPos+cc+zPos);
         if (i3d!=null) {
             double[] IJ = new double[] {xPos,yPos};
             if (hType==Types.HORIZ_XY) {
@@ -646,7 +722,8 @@ public class FDLStage extends AbstractLHS {
                 IJ = i3d.getGrid().computeIJfromLL(yPos,xPos);
             }
             double z = i3d.interpolateBathymetricDepth(IJ);
-            logger.info("Bathymetric depth = "+z);
+            if (EventLog.isEnabled(EventLog.EVENT_INITIALIZE))
+                EventLog.record(EventLog.EVENT_INITIALIZE,id,startTime,hType,vType,xPos,yPos,zPos,z);
             double ssh = i3d.interpolateSSH(IJ);
 
             double K = 0;  //set K = 0 (at bottom) as default
@@ -681,32 +758,80 @@ public class FDLStage extends AbstractLHS {
             updateAttributes(); 
         }
     }
-    
+
+    /**
+     * Estimates the relative cost of the next step (see StepCost) from the DW growth
+     * function and the light level and SL in the last step.
+     * 
+     * @return relative cost
+     */
+    @Override
+    public double estimateStepCost() {
+        if (typeGrDW!=FDLStageParameters.FCN_GrDW_NonEggStageBIOENGrowthRate) return StepCost.BASE;
+        return StepCost.bioen(eb*1E-15<IBMFunction_NonEggStageBIOENGrowthRateDW.EB_DARK,std_len);
+    }
+
+    /**
+     * Steps the individual forward by dt, with the time information for the
+     * current model time (see StepContext.get(dt)).
+     * 
+     * @param dt - time step in seconds
+     * @throws ArrayIndexOutOfBoundsException
+     */
     @Override
     public void step(double dt) throws ArrayIndexOutOfBoundsException {
+        step(StepContext.get(dt));
+    }
+
+    /**
+     * Steps the individual forward by the time step of ctx.
+     * 
+     * Thread safety: see ParallelStepper.
+     * 
+     * @param ctx - time information for this time step
+     * @throws ArrayIndexOutOfBoundsException
+     */
+    @Override
+    public void step(StepContext ctx) throws ArrayIndexOutOfBoundsException {
+        BioenergeticsInput in = beginStep(ctx);
+        if (in!=null) fcnBioen.calculate(in,bioenOut);
+        endStep((in!=null) ? bioenOut : null);
+    }
+
+    /**
+     * Runs the part of step(ctx) before the BIOEN calculation: movement, light
+     * and the growth functions other than BIOEN.
+     * 
+     * @param ctx - time information for this time step
+     * @return the input for the BIOEN calculation, or null if it is not selected
+     * @throws ArrayIndexOutOfBoundsException
+     */
+    @Override
+    public BioenergeticsInput beginStep(StepContext ctx) throws ArrayIndexOutOfBoundsException {
+        this.ctx = ctx;
+        double dt = ctx.dt;//time step in seconds
         //WTS_NEW 2012-07-26:{
         double[] pos = lp.getIJK();
-        double[] pos2d = new double[2];
-        pos2d[0] = pos[0];
-        pos2d[1] = pos[1];
         //System.out.print("uv: "+r+"; "+uv[0]+", "+uv[1]+"\n");
-        T = i3d.interpolateTemperature(pos);
+        boolean carried = useCarryOver && EnvSampler.isCarriedOver(i3d,pos,env);//env holds the end-of-step sample at pos
+        T = carried ? env.temperature : i3d.interpolateTemperature(pos);
         if(T<=0.0) T=0.01; 
              //SH-Prey Stuff  
-        copepod    = i3d.interpolateValue(pos,Cop,Interpolator3D.INTERP_VAL);
-        euphausiid = i3d.interpolateValue(pos,Eup,Interpolator3D.INTERP_VAL);
-        euphausiidsShelf = i3d.interpolateValue(pos,EupS,Interpolator3D.INTERP_VAL);
+        EnvSampler.samplePrey(i3d,pos,env,carried);
+        copepod    = env.copepod;
+        euphausiid = env.euphausiid;
+        euphausiidsShelf = env.euphausiidShelf;
         double euphausiids_tot = euphausiid + euphausiidsShelf;
-        neocalanus = i3d.interpolateValue(pos,NCa,Interpolator3D.INTERP_VAL);
-        neocalanusShelf  = i3d.interpolateValue(pos,NCaS,Interpolator3D.INTERP_VAL);
-        double phytoL = i3d.interpolateValue(pos,PhL,Interpolator3D.INTERP_VAL);
-        double phytoS = i3d.interpolateValue(pos,PhS,Interpolator3D.INTERP_VAL);
-        double tauX = i3d.interpolateValue(pos2d,Su,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
-        double tauY = i3d.interpolateValue(pos2d,Sv,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
+        neocalanus = env.neocalanus;
+        neocalanusShelf  = env.neocalanusShelf;
+        double phytoL = env.phytoL;
+        double phytoS = env.phytoS;
+        double tauX = env.tauX;
+        double tauY = env.tauY;
         double chlorophyll = (phytoL/25) + (phytoS/65); // calculate chlorophyll (mg/m^-3) 
         // values 25 and 65 based on Kearney et al 2018 Table A4
         microzoo = 0; // not important
-        pCO2val  = i3d.interpolateValue(pos,pCO2,Interpolator3D.INTERP_VAL);
+        pCO2val  = env.pCO2;
         // Delete negative (imposible) values:
         if(chlorophyll<0.0) chlorophyll=0; 
         if(copepod<0.0) copepod=0; 
@@ -754,30 +879,19 @@ public class FDLStage extends AbstractLHS {
         time += dt;
         double dtday = dt/86400; //time setp in days
 
-        // Create objects for output of BIOEN:
-        Double[] bioEN_output = null; // output object of BIOEN calculation
         double gr_mg_fac = 0; // factor to avoid dry_wgt in IF 
-        double meta = 0;
-        double metamax = 0;
-        double grDWmax = 0;
-        double activityCostmax = 0;
-        double sum_ing = 0;
-        double assi = 0;
         double old_dry_wgt = dry_wgt; // save previous dry_wgt
         double old_std_len = std_len;
+        stepOldDryWgt = old_dry_wgt;
+        stepOldStdLen = old_std_len;
         // Light (begin):
         // create object for light calculation:
-        double[] eb2 = new double[2]; // K parameter and second part of Eb equation
-        CalendarIF cal2 = null;
-        double[] ltemp = new double[3];
-        double[] ltemp2 = new double[2];
-        cal2 = GlobalInfo.getInstance().getCalendar(); // to calculate julian day
-        ltemp = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat,cal2.getYearDay()); // see line 713 in ibm.py
-        double maxLight = ltemp[0]/0.217; // see line 714 in ibm.py
-        ltemp2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightSurlig(lat,cal2.getYearDay(), maxLight); // see line 715 in ibm.py
-        eb2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll, depth, bathym); // second part of Eb equation
-        eb = 0.42*ltemp2[1]*eb2[1]*1E+15; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14. Values to plot
+        double slig = useLightField ? ctx.surfaceLight(lat) // see lines 713-715 in ibm.py
+                                    : ctx.surfaceLightExact(lat);
+        IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll,depth,bathym,eb2); // second part of Eb equation
+        eb = 0.42*slig*eb2[1]*1E+15; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14. Values to plot
         double ebs_org = eb*1E-15;
+        stepEb = ebs_org;
         ebtwozero = eb2[0];
         // Light (end):
 
@@ -786,22 +900,22 @@ public class FDLStage extends AbstractLHS {
 
         // Length:
         if (typeGrSL==FDLStageParameters.FCN_GrSL_NonEggStageSTDGrowthRate) {
-            grSL = (Double) fcnGrSL.calculate(new Double[]{T,std_len});
+            grSL = TypedFunctions.value(fcnGrSL,T,std_len,args2);
             std_len += grSL*dtday;
         }
         else if (typeGrSL==FDLStageParameters.FCN_GrSL_FDL_GrowthRate) {
-            grSL = (Double) fcnGrSL.calculate(T);
+            grSL = TypedFunctions.value(fcnGrSL,T);
             std_len += grSL*dtday;
         }
 
         // Weight:
         if (typeGrDW==FDLStageParameters.FCN_GrDW_NonEggStageSTDGrowthRate) {
-            grDW = (Double) fcnGrDW.calculate(new Double[]{T,dry_wgt});
+            grDW = TypedFunctions.value(fcnGrDW,T,dry_wgt,args2);
             gr_mg_fac = dry_wgt*(Math.exp(grDW*dtday) - 1);
             dry_wgt += gr_mg_fac;
         }
         if (typeGrDW==FDLStageParameters.FCN_GrDW_FDL_GrowthRate) {
-            grDW = (Double) fcnGrDW.calculate(T);
+            grDW = TypedFunctions.value(fcnGrDW,T);
             gr_mg_fac = dry_wgt*(Math.exp(grDW*dtday) - 1);
             dry_wgt += gr_mg_fac;
         }
@@ -813,21 +927,70 @@ public class FDLStage extends AbstractLHS {
             // Turbulence and wind (end)
 
             // Bioenergetic growth calculation:
-            bioEN_output = (Double[]) fcnGrDW.calculate(new Double[]{T,old_dry_wgt,dt,dtday,old_std_len,ebs_org,windX,windY,depth,stmsta,eb2[0],euphausiids_tot,neocalanusShelf,neocalanus,copepod,pCO2val,ageFromYSL,dwmax}); //should length be at t or t-1?
-            grDW = bioEN_output[0]; // grDW is gr_mg in TROND here
-            meta = bioEN_output[1];
-            sum_ing = bioEN_output[2];
-            assi = bioEN_output[3];
-            stomachFullness = bioEN_output[4];
-            avgRank = bioEN_output[5];
-            avgSize = bioEN_output[6];
-            eps = bioEN_output[7]*1E+10;
+            bioenIn.t = T;
+            bioenIn.m = old_dry_wgt;
+            bioenIn.dt = dt;
+            bioenIn.dtday = dtday;
+            bioenIn.std_len = old_std_len;
+            bioenIn.eb = ebs_org;
+            bioenIn.windX = windX;
+            bioenIn.windY = windY;
+            bioenIn.depth = depth;
+            bioenIn.stm_sta = stmsta;
+            bioenIn.attCoeff = eb2[0];
+            bioenIn.eup = euphausiids_tot;
+            bioenIn.ncas = neocalanusShelf;
+            bioenIn.ncao = neocalanus;
+            bioenIn.cop = copepod;
+            bioenIn.pCO2 = pCO2val;
+            bioenIn.ageFromYSL = ageFromYSL;
+            bioenIn.dwmax = dwmax;
+            bioenIn.tabulatedVisualRange = useTabulatedVisualRange;
+            bioenIn.tabulatedCapture = useTabulatedCapture;
+            bioenIn.random = rnd;
+            stepPos = pos;
+            return bioenIn; //should length be at t or t-1?
+        }
+        stepPos = pos;
+        return null;
+    }
+
+    /**
+     * Runs the rest of step(ctx): the BIOEN growth update, mortality and the
+     * update of the individual's position and attributes.
+     * 
+     * @param bioenOut - result of the BIOEN calculation (null if it is not selected)
+     */
+    @Override
+    public void endStep(BioenergeticsResult bioenOut) {
+        double dt = ctx.dt;//time step in seconds
+        double[] pos = stepPos;
+        stepPos = null;
+        double old_dry_wgt = stepOldDryWgt;
+        double old_std_len = stepOldStdLen;
+        double ebs_org = stepEb;
+        if (bioenOut!=null){
+            double gr_mg_fac = 0; // factor to avoid dry_wgt in IF 
+            double meta = 0;
+            double metamax = 0;
+            double grDWmax = 0;
+            double activityCostmax = 0;
+            double sum_ing = 0;
+            double assi = 0;
+            grDW = bioenOut.gr_mg; // grDW is gr_mg in TROND here
+            meta = bioenOut.meta;
+            sum_ing = bioenOut.ing;
+            assi = bioenOut.assi;
+            stomachFullness = bioenOut.stomachFullness;
+            avgRank = bioenOut.avgRank;
+            avgSize = bioenOut.avgSize;
+            eps = bioenOut.eps*1E+10;
             // if(eps < 0) {
             //     logger.info("windX: "+windX+". windY: "+windY+". depth: "+depth);
             // }
             // eps = Math.abs(tauX) + Math.abs(tauY);
-            metamax = bioEN_output[8]; 
-            grDWmax = bioEN_output[9]; 
+            metamax = bioenOut.metamax; 
+            grDWmax = bioenOut.gr_mg_max; 
             double costRateOfMetabolism = 0.5; // check this number
             double activityCost = 1*meta*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
             activityCostmax = 1*metamax*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
@@ -852,8 +1015,7 @@ public class FDLStage extends AbstractLHS {
         }
 
         // Survival rate (begin):
-        double[] mort_out = new double[5]; // for mortality output
-        mort_out = IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(old_std_len, ebs_org, eb2[0], dry_wgt, stomachFullness, dwmax); // mm2m = 0.001
+        double[] mort_out = IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(old_std_len, ebs_org, eb2[0], dry_wgt, stomachFullness, dwmax, useTabulatedVisualRange, mortOut); // mm2m = 0.001
         mortfish = mort_out[2];
         mortinv = mort_out[3];
         mortstarv = mort_out[4];
@@ -886,7 +1048,7 @@ public class FDLStage extends AbstractLHS {
         if (debug) {
             logger.info(toString());
         }
-        updateAttributes(); //update the attributes object w/ nmodified values
+        attsDirty = true; //attributes are updated from the modified values when needed (see getAttributes())
     }
     
     /**
@@ -904,7 +1066,7 @@ public class FDLStage extends AbstractLHS {
                 if(T<=0.0) T=0.01; 
                 if (typeVV==FDLStageParameters.FCN_VV_FDL_VerticalSwimmingSpeed){
                     double TL = (std_len + 0.5169)/0.9315; //transform SL to TL
-                    w = (Double) fcnVV.calculate(new Double[]{T,TL});//in mm/s
+                    w = TypedFunctions.value(fcnVV,T,TL,args2);//in mm/s
                     w = w/1000.0;//convert to m/s
                 }
             
@@ -923,16 +1085,8 @@ public class FDLStage extends AbstractLHS {
             * (if lat*declination>0, it's summer in the hemisphere, hence daytime). 
             * Alternatively, if the solar zenith angle > 90.833 deg, then it is night.
             */
-            CalendarIF cal = null;
-            double[] ss = null;
-            try {
-                cal = GlobalInfo.getInstance().getCalendar();
-                ss = DateTimeFunctions.computeSunriseSunset(lon,lat,cal.getYearDay());
-            } catch(java.lang.NullPointerException ex){
-                logger.info("NullPointerException for EggStage id: "+id);
-                logger.info("lon: "+lon+". lat: "+lat+". yearday: "+cal.getYearDay());
-                logger.info(ex.getMessage());
-            }
+            double zenith = useSolarEphemeris ? ctx.zenith(lon,lat)//solar zenith angle (deg)
+                                              : ctx.zenithExact(lon,lat);
             /**
             * @param vars - the inputs variables as a double[] array with elements
             *                  dt          - [0] - integration time step
@@ -946,25 +1100,30 @@ public class FDLStage extends AbstractLHS {
             */
 
             double td = i3d.interpolateBathymetricDepth(lp.getIJK());
-            double[] res = (double[]) fcnVM.calculate(new double[]{dt,depth,td,w,90.833-ss[4]});
+            double[] res = (double[]) fcnVM.calculate(argsVM(dt,depth,td,w,90.833-zenith));
             w = res[0];
             attached = res[1]<0;
             if (attached) pos[2] = 0;//set individual on bottom
         }
         
-        //calculate horizontal movement
-        double[] uv = {0.0,0.0};
+        //calculate horizontal movement (the returned array is reused between calls)
+        double[] uv = uvw;
+        uv[0] = 0.0;
+        uv[1] = 0.0;
         if (!attached){
             if ((horizRWP>0)&&(Math.abs(dt)>0)) {
                 double r = Math.sqrt(horizRWP/Math.abs(dt));
-                uv[0] += r*rng.computeNormalVariate(); //stochastic swimming rate
-                uv[1] += r*rng.computeNormalVariate(); //stochastic swimming rate
+                uv[0] += r*rnd.nextNormal(); //stochastic swimming rate
+                uv[1] += r*rnd.nextNormal(); //stochastic swimming rate
                 if (debug) System.out.print("uv: "+r+"; "+uv[0]+", "+uv[1]+"\n");
             }
         }
         
         //return the result
-        return new double[]{Math.signum(dt)*uv[0],Math.signum(dt)*uv[1],Math.signum(dt)*w};
+        uvw[0] = Math.signum(dt)*uv[0];
+        uvw[1] = Math.signum(dt)*uv[1];
+        uvw[2] = Math.signum(dt)*w;
+        return uvw;
     }
     //WTS_NEW 2012-07-26:{
 
@@ -1019,11 +1178,10 @@ public class FDLStage extends AbstractLHS {
     }
     
     private void interpolateEnvVars(double[] pos) {
-        temperature = i3d.interpolateTemperature(pos);
-        salinity    = i3d.interpolateSalinity(pos);
-        if (i3d.getPhysicalEnvironment().getField("rho")!=null) 
-            rho  = i3d.interpolateValue(pos,"rho");
-        else rho = 0.0;
+        EnvSampler.samplePhysics(i3d,pos,env);
+        temperature = env.temperature;
+        salinity    = env.salinity;
+        rho         = env.rho;
     }
 
     @Override
@@ -1102,35 +1260,37 @@ public class FDLStage extends AbstractLHS {
      */
     @Override
     protected void updateAttributes() {
+        attsDirty = false;
         super.updateAttributes();
-        atts.setValue(FDLStageAttributes.PROP_attached,attached);
-        atts.setValue(FDLStageAttributes.PROP_SL,std_len);
-        atts.setValue(FDLStageAttributes.PROP_DW,dry_wgt);
-        atts.setValue(FDLStageAttributes.PROP_ageFromYSL,ageFromYSL);
-        atts.setValue(FDLStageAttributes.PROP_stmsta,stmsta);
-        atts.setValue(FDLStageAttributes.PROP_psurvival,psurvival);
-        atts.setValue(FDLStageAttributes.PROP_mortfish,mortfish);
-        atts.setValue(FDLStageAttributes.PROP_mortinv,mortinv);
-        atts.setValue(YSLStageAttributes.PROP_mortstarv,mortstarv);
-        atts.setValue(YSLStageAttributes.PROP_dwmax,dwmax);
-        atts.setValue(FDLStageAttributes.PROP_avgRank,avgRank);
-        atts.setValue(FDLStageAttributes.PROP_avgSize,avgSize);
-        atts.setValue(FDLStageAttributes.PROP_stomachFullness,stomachFullness);
-        atts.setValue(FDLStageAttributes.PROP_pCO2val,pCO2val);
-        atts.setValue(FDLStageAttributes.PROP_grSL,grSL);
-        atts.setValue(FDLStageAttributes.PROP_grDW,grDW);
-        atts.setValue(FDLStageAttributes.PROP_temperature,temperature);    
-        atts.setValue(FDLStageAttributes.PROP_salinity,salinity);
-        atts.setValue(FDLStageAttributes.PROP_rho,rho);
-        atts.setValue(FDLStageAttributes.PROP_copepod,copepod);
-        atts.setValue(FDLStageAttributes.PROP_euphausiid,euphausiid);
-        atts.setValue(FDLStageAttributes.PROP_euphausiidShelf,euphausiidsShelf);
-        atts.setValue(FDLStageAttributes.PROP_neocalanus,neocalanus);
-        atts.setValue(FDLStageAttributes.PROP_neocalanusShelf,neocalanusShelf);
-        atts.setValue(FDLStageAttributes.PROP_microzoo,microzoo);
-        atts.setValue(FDLStageAttributes.PROP_eps,eps);
-        atts.setValue(FDLStageAttributes.PROP_eb,eb);
-        atts.setValue(FDLStageAttributes.PROP_ebtwozero,ebtwozero);
+        atts.setBoolean(FDLStageAttributes.SLOT_attached,attached);
+        atts.setDouble(FDLStageAttributes.SLOT_SL,std_len);
+        atts.setDouble(FDLStageAttributes.SLOT_DW,dry_wgt);
+        atts.setDouble(FDLStageAttributes.SLOT_ageFromYSL,ageFromYSL);
+        atts.setDouble(FDLStageAttributes.SLOT_stmsta,stmsta);
+        atts.setDouble(FDLStageAttributes.SLOT_psurvival,psurvival);
+        atts.setDouble(FDLStageAttributes.SLOT_mortfish,mortfish);
+        atts.setDouble(FDLStageAttributes.SLOT_mortinv,mortinv);
+        atts.setDouble(YSLStageAttributes.SLOT_mortstarv,mortstarv);
+        atts.setDouble(YSLStageAttributes.SLOT_dwmax,dwmax);
+        atts.setDouble(FDLStageAttributes.SLOT_avgRank,avgRank);
+        atts.setDouble(FDLStageAttributes.SLOT_avgSize,avgSize);
+        atts.setDouble(FDLStageAttributes.SLOT_stomachFullness,stomachFullness);
+        atts.setDouble(FDLStageAttributes.SLOT_pCO2val,pCO2val);
+        atts.setDouble(FDLStageAttributes.SLOT_grSL,grSL);
+        atts.setDouble(FDLStageAttributes.SLOT_grDW,grDW);
+        atts.setDouble(FDLStageAttributes.SLOT_temperature,temperature);    
+        atts.setDouble(FDLStageAttributes.SLOT_salinity,salinity);
+        atts.setDouble(FDLStageAttributes.SLOT_rho,rho);
+        atts.setDouble(FDLStageAttributes.SLOT_copepod,copepod);
+        atts.setDouble(FDLStageAttributes.SLOT_euphausiid,euphausiid);
+        atts.setDouble(FDLStageAttributes.SLOT_euphausiidShelf,euphausiidsShelf);
+        atts.setDouble(FDLStageAttributes.SLOT_neocalanus,neocalanus);
+        atts.setDouble(FDLStageAttributes.SLOT_neocalanusShelf,neocalanusShelf);
+        atts.setDouble(FDLStageAttributes.SLOT_microzoo,microzoo);
+        atts.setDouble(FDLStageAttributes.SLOT_eps,eps);
+        atts.setDouble(FDLStageAttributes.SLOT_eb,eb);
+        atts.setDouble(FDLStageAttributes.SLOT_ebtwozero,ebtwozero);
+        if (rnd!=null) atts.setDouble(FDLStageAttributes.SLOT_rngDraws,(double) rnd.getCounter());
     }
 
     /**
@@ -1139,34 +1299,47 @@ public class FDLStage extends AbstractLHS {
     @Override
     protected void updateVariables() {
         super.updateVariables();
-        attached     = atts.getValue(FDLStageAttributes.PROP_attached,attached);
-        std_len      = atts.getValue(FDLStageAttributes.PROP_SL,std_len);
-        dry_wgt      = atts.getValue(FDLStageAttributes.PROP_DW,dry_wgt);
-        ageFromYSL      = atts.getValue(FDLStageAttributes.PROP_ageFromYSL,ageFromYSL);
-        stmsta      = atts.getValue(FDLStageAttributes.PROP_stmsta,stmsta);
-        psurvival      = atts.getValue(FDLStageAttributes.PROP_psurvival,psurvival);
-        mortfish      = atts.getValue(FDLStageAttributes.PROP_mortfish,mortfish);
-        mortinv      = atts.getValue(FDLStageAttributes.PROP_mortinv,mortinv);
-        mortstarv    = atts.getValue(FDLStageAttributes.PROP_mortstarv,mortstarv); 
-        dwmax    = atts.getValue(FDLStageAttributes.PROP_dwmax,dwmax); 
-        avgRank      = atts.getValue(FDLStageAttributes.PROP_avgRank,avgRank);
-        avgSize      = atts.getValue(FDLStageAttributes.PROP_avgSize,avgSize);
-        stomachFullness    = atts.getValue(FDLStageAttributes.PROP_stomachFullness,stomachFullness);   
-        pCO2val     = atts.getValue(FDLStageAttributes.PROP_pCO2val,pCO2val);
-        grSL         = atts.getValue(FDLStageAttributes.PROP_grSL,grSL);
-        grDW         = atts.getValue(FDLStageAttributes.PROP_grDW,grDW);
-        temperature = atts.getValue(FDLStageAttributes.PROP_temperature,temperature);
-        salinity    = atts.getValue(FDLStageAttributes.PROP_salinity,salinity);
-        rho         = atts.getValue(FDLStageAttributes.PROP_rho,rho);
-        copepod     = atts.getValue(FDLStageAttributes.PROP_copepod,copepod);
-        euphausiid  = atts.getValue(FDLStageAttributes.PROP_euphausiid,euphausiid);
-        euphausiidsShelf  = atts.getValue(FDLStageAttributes.PROP_euphausiidShelf,euphausiidsShelf);
-        neocalanus  = atts.getValue(FDLStageAttributes.PROP_neocalanus,neocalanus);
-        neocalanusShelf  = atts.getValue(FDLStageAttributes.PROP_neocalanusShelf,neocalanusShelf);
-        microzoo  = atts.getValue(FDLStageAttributes.PROP_microzoo,microzoo);
-        eps  = atts.getValue(FDLStageAttributes.PROP_eps,eps);
-        eb  = atts.getValue(FDLStageAttributes.PROP_eb,eb);
-        ebtwozero  = atts.getValue(FDLStageAttributes.PROP_ebtwozero,ebtwozero);
+        attached     = atts.getBoolean(FDLStageAttributes.SLOT_attached);
+        std_len      = atts.getDouble(FDLStageAttributes.SLOT_SL);
+        dry_wgt      = atts.getDouble(FDLStageAttributes.SLOT_DW);
+        ageFromYSL      = atts.getDouble(FDLStageAttributes.SLOT_ageFromYSL);
+        stmsta      = atts.getDouble(FDLStageAttributes.SLOT_stmsta);
+        psurvival      = atts.getDouble(FDLStageAttributes.SLOT_psurvival);
+        mortfish      = atts.getDouble(FDLStageAttributes.SLOT_mortfish);
+        mortinv      = atts.getDouble(FDLStageAttributes.SLOT_mortinv);
+        mortstarv    = atts.getDouble(FDLStageAttributes.SLOT_mortstarv); 
+        dwmax    = atts.getDouble(FDLStageAttributes.SLOT_dwmax); 
+        avgRank      = atts.getDouble(FDLStageAttributes.SLOT_avgRank);
+        avgSize      = atts.getDouble(FDLStageAttributes.SLOT_avgSize);
+        stomachFullness    = atts.getDouble(FDLStageAttributes.SLOT_stomachFullness);   
+        pCO2val     = atts.getDouble(FDLStageAttributes.SLOT_pCO2val);
+        grSL         = atts.getDouble(FDLStageAttributes.SLOT_grSL);
+        grDW         = atts.getDouble(FDLStageAttributes.SLOT_grDW);
+        temperature = atts.getDouble(FDLStageAttributes.SLOT_temperature);
+        salinity    = atts.getDouble(FDLStageAttributes.SLOT_salinity);
+        rho         = atts.getDouble(FDLStageAttributes.SLOT_rho);
+        copepod     = atts.getDouble(FDLStageAttributes.SLOT_copepod);
+        euphausiid  = atts.getDouble(FDLStageAttributes.SLOT_euphausiid);
+        euphausiidsShelf  = atts.getDouble(FDLStageAttributes.SLOT_euphausiidShelf);
+        neocalanus  = atts.getDouble(FDLStageAttributes.SLOT_neocalanus);
+        neocalanusShelf  = atts.getDouble(FDLStageAttributes.SLOT_neocalanusShelf);
+        microzoo  = atts.getDouble(FDLStageAttributes.SLOT_microzoo);
+        eps  = atts.getDouble(FDLStageAttributes.SLOT_eps);
+        eb  = atts.getDouble(FDLStageAttributes.SLOT_eb);
+        ebtwozero  = atts.getDouble(FDLStageAttributes.SLOT_ebtwozero);
+        rnd = new IndividualRandomStream(id,(long) atts.getDouble(FDLStageAttributes.SLOT_rngDraws));
      }
 
+
+    /**
+     * Returns the reusable argument array for fcnVM, set to {dt,depth,td,w,lightLevel}.
+     */
+    private double[] argsVM(double dt, double depth, double td, double w, double lightLevel) {
+        vmArgs[0] = dt;
+        vmArgs[1] = depth;
+        vmArgs[2] = td;
+        vmArgs[3] = w;
+        vmArgs[4] = lightLevel;
+        return vmArgs;
+    }
 }
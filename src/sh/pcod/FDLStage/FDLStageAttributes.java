@@ -44,7 +44,7 @@ public class FDLStageAttributes extends  AbstractLarvalAttributes {
     @Override
     public Object clone() {
         FDLStageAttributes clone = new FDLStageAttributes(typeName);
-        for (String key: keys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.keys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
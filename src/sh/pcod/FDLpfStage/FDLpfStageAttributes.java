@@ -44,7 +44,7 @@ public class FDLpfStageAttributes extends AbstractLarvalAttributes {
     @Override
     public Object clone() {
         FDLpfStageAttributes clone = new FDLpfStageAttributes(typeName);
-        for (String key: keys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.keys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
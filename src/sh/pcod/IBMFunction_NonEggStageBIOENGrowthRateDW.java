@@ -7,7 +7,6 @@ package sh.pcod;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
-import java.util.Arrays;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
@@ -57,6 +56,18 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
     public static final int numParams = 0;
     /** number of sub-functions */
     public static final int numSubFuncs = 0;
+
+    // Values in Fiksen and MacKenzie 2002b:
+    /** larval swimming speed (body lengths/s) */
+    static final double SPEED_FISH = 10.0;
+    /** prey escape speed (body lengths/s) */
+    static final double SPEED_PREY = 100.0;
+    /** number of encounters simulated to estimate capture probability */
+    static final int N_ENC = 10;
+    /** max number of attacks per encounter */
+    static final int MAX_ATS = 3;
+    /** light at depth (Eb) below which larvae and their predators do not see prey */
+    public static final double EB_DARK = 1E-15;
     public IBMFunction_NonEggStageBIOENGrowthRateDW(){
         super(numParams,numSubFuncs,DEFAULT_type,DEFAULT_name,DEFAULT_descr,DEFAULT_fullDescr);
     }
@@ -85,127 +96,154 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
      *     [1]: dry weight in micrograms
      *     [2]: dt
      *     [3]: deltaH
+     *     ... (see BioenergeticsInput for the full list of 18 values)
      * 
-     * @return Double - growth rate (g/g//d)
+     * @return Double[] - growth rate (g/g//d) and other BIOEN values (see BioenergeticsResult)
      * 
      */
     @Override
     public Object calculate(Object o) {
-        Double[] vals = (Double[]) o;        
-        // double inputs:
-        double t = vals[0];
-        double m = vals[1];
-        double dt = vals[2];
-        double dtday = vals[3];
-        double std_len = vals[4];
-        double eb = vals[5];
-        double windX = vals[6];
-        double windY = vals[7];
-        double depth = vals[8];
-        double stm_sta = vals[9]; // stomach 
-        double attCoeff = vals[10]; // K parameter in Fiksen et al 2002
-        // Prey items: should be in this order (by size):
-        double eup = vals[11]; // prey item 3
-        double ncas = vals[12]; // prey item 3
-        double ncao = vals[13]; // prey item 4
-        double cop = vals[14]; // prey item 5
-        double pCO2 = vals[15]; // pco2 conc
-        double ageFromYSL = vals[16];
-        double dwmax = vals[17];
-
-        // prey information
-        double randomAbunEup = Math.random()*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
-        double randomAbunNcas = Math.random()*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
-        double randomAbunNcao = Math.random()*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
-        double randomAbunCop = Math.random()*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
-
-        int npreyitems = 4; // number of prey items
-        // include spatial variability:
-        double[] zoo_carbon = {eup*Math.exp(randomAbunEup), ncas*Math.exp(randomAbunNcas), ncao*Math.exp(randomAbunNcao), cop*Math.exp(randomAbunCop)}; 
-        double[] par_a = {1.38E-8, 2.75E-12, 1E-10, 2.4E-8}; 
-        double[] par_b = {2.92, 4.03, 3.56, 2.85}; 
-        double[] min_len = {3000, 400, 200, 200}; // minimum length in um
-        double[] dlen = {3000, 200, 200, 200}; // size bin in um
-        int[] nsizes = {10, 14, 7, 7}; // n size categories 
-        // Zooplankton total len vector: (in mm)
-        double[] zoolen = {0.2, 0.4, 0.6, 0.8, 1, 1.2, 1.4, 1.6, 1.8, 2, 2.2, 2.4, 2.6, 2.8, 3, 6, 9, 12, 15, 18, 21, 24, 27, 30};
-        int nallsizes = zoolen.length;
-        int[][] zooInd = new int[npreyitems][nallsizes];
-        int[] eupInd =  {0,0,0,0,0,0,0,0,0,0,0,0,0,0,1,1,1,1,1,1,1,1,1,1}; // for eup
-        int[] ncasInd = {0,1,1,1,1,1,1,1,1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0}; // for ncas
-        int[] ncaoInd = {1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0}; // for ncao
-        int[] copInd =  {1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0}; // for cop
-        // double[][] prey_len = new double[npreyitems][nallsizes];
-        double[][] prey_wgt = new double[npreyitems][nallsizes];
-        double[][] prey_area = new double[npreyitems][nallsizes];
-        double[][] prey_abun = new double[npreyitems][nallsizes];
-
-        for(int pit=0; pit<npreyitems; pit++) {
-
-            // Zooplankton per len bin:
-            double[][] out_zoo = null;
-            out_zoo = zooplankton(zoo_carbon[pit], par_a[pit], par_b[pit], min_len[pit], dlen[pit], nsizes[pit]);
-
-            int sind = 0;
-            for(int psi=0; psi < nallsizes; psi++) {
-
-                if(pit == 0) zooInd[pit][psi] = eupInd[psi];
-                if(pit == 1) zooInd[pit][psi] = ncasInd[psi];
-                if(pit == 2) zooInd[pit][psi] = ncaoInd[psi];
-                if(pit == 3) zooInd[pit][psi] = copInd[psi];
-
-                if(zooInd[pit][psi] == 1) {
-                    // prey_len[pit][psi] = out_zoo[0][sind];
-                    prey_wgt[pit][psi] = out_zoo[1][sind];
-                    prey_area[pit][psi] = out_zoo[2][sind];
-                    prey_abun[pit][psi] = out_zoo[3][sind];
-                    sind += 1;
-                }
+        BioenergeticsInput in = new BioenergeticsInput();
+        in.setValues((Double[]) o);
+        BioenergeticsResult out = new BioenergeticsResult();
+        calculate(in,out);
+        return out.getValues();
+    }
 
-            }
+    /**
+     * Calculates the BIOEN growth, metabolism and ingestion without boxing. Stages 
+     * should keep one input and one result instance and reuse them every time step.
+     * 
+     * @param in  - input values (see calculate(Object) for their order and meaning)
+     * @param out - result values, overwritten
+     */
+    public void calculate(BioenergeticsInput in, BioenergeticsResult out) {
+        //calculate pco2 factor:
+        double facCO2 = calcCO2(in.pCO2);
+        double eps = calcTurbulence(in.windX, in.windY, in.depth);
 
-        }
+        out.meta = calcMetabolism(in.t, in.m, in.dtday, facCO2, in.eb, in.std_len); // metabolism
+        out.metamax = calcMetabolism(in.t, in.dwmax, in.dtday, facCO2, in.eb, in.std_len);
+        out.assi = calcAssimilation(in.m);
+        out.gr_mg = calcGrowth(in.t, in.m, in.dtday, in.ageFromYSL, facCO2); // same as TROND
+        out.gr_mg_max = calcGrowth(in.t, in.dwmax, in.dtday, in.ageFromYSL, facCO2);
+        out.eps = eps;
 
-        //calculate pco2 factor:
-        double facCO2 = calcCO2(pCO2);
+        forage(in, facCO2, eps, out);
+    }
 
+    /**
+     * Calculates metabolism (mg) over the time step for a larva of dry weight w (mg).
+     * 
+     * @param t       - temperature (deg C)
+     * @param w       - dry weight (mg)
+     * @param dtday   - time step (d)
+     * @param facCO2  - pCO2 factor (see calcCO2(...))
+     * @param eb      - light at depth
+     * @param std_len - standard length (mm)
+     */
+    static double calcMetabolism(double t, double w, double dtday, double facCO2, double eb, double std_len) {
         // EFFECT PCO2: ON METABOLISM
-        // Begin function:
-        double meta = dtday*2.38e-7*Math.exp(0.088*t)*Math.pow(m,0.9)*(1 + facCO2*0.1); // as in Kristiansen et al 2007. Units: mg/day (without dt). HERE I CHANGED dt FOR dtday 
-        double metamax = dtday*2.38e-7*Math.exp(0.088*t)*Math.pow(dwmax,0.9)*(1 + facCO2*0.1); 
+        double meta = dtday*2.38e-7*Math.exp(0.088*t)*Math.pow(w,0.9)*(1 + facCO2*0.1); // as in Kristiansen et al 2007. Units: mg/day (without dt). HERE I CHANGED dt FOR dtday 
         // *(1 + facCO2*0.1)
         // dtday makes more sense 
 
         if(eb > 0.001) {
             if(std_len > 5.5){
                 meta *= 2.5;
-                metamax *= 2.5;
             } else {
                 meta *= 1.4;
-                metamax *= 1.4;
             }
         } 
+        return meta;
+    }
 
-        double assi = 0.8*(1-0.4*Math.exp(-0.002*(m*1000-50)));// mg2ug=1000 here. No units
-        //double r = ((0.454 + 1.610*t - 0.069*t*t)*Math.exp(-6.725*m))/100;// units: 1/day. This is similar to 'g' (1/day) in TROND. 
+    /**
+     * Calculates the assimilation efficiency for dry weight m (mg).
+     */
+    static double calcAssimilation(double m) {
+        return 0.8*(1-0.4*Math.exp(-0.002*(m*1000-50)));// mg2ug=1000 here. No units
+    }
 
-        double r = 0;
-        r = ((0.454 + 1.610*t - 0.069*t*t)*Math.exp(-2.225*m))/100;
-        double rmax = ((0.454 + 1.610*t - 0.069*t*t)*Math.exp(-2.225*dwmax))/100;
+    /**
+     * Calculates the potential growth (mg) over the time step for a larva of dry weight w (mg).
+     * 
+     * @param t          - temperature (deg C)
+     * @param w          - dry weight (mg)
+     * @param dtday      - time step (d)
+     * @param ageFromYSL - age since yolk-sac larva (d)
+     * @param facCO2     - pCO2 factor (see calcCO2(...))
+     */
+    static double calcGrowth(double t, double w, double dtday, double ageFromYSL, double facCO2) {
+        //double r = ((0.454 + 1.610*t - 0.069*t*t)*Math.exp(-6.725*m))/100;// units: 1/day. This is similar to 'g' (1/day) in TROND. 
+        double r = ((0.454 + 1.610*t - 0.069*t*t)*Math.exp(-2.225*w))/100;
 
         // EFFECT PCO2: ON GROWTH
         if(ageFromYSL <= 14) {
             r *= (1 - facCO2*0.1);
-            rmax *= (1 - facCO2*0.1);
         }
         if((ageFromYSL > 14) && (ageFromYSL <= 35)) {
             r *= (1 + facCO2*0.15);
-            rmax *= (1 + facCO2*0.15);
         }
         // growth1: *(1 - facCO2*0.1)
         // growth2: *(1 + facCO2*0.15)
-        double gr_mg = m*(Math.exp(r*dtday) - 1); // Same as TROND
-        double gr_mg_max = dwmax*(Math.exp(rmax*dtday) - 1); // Same as TROND
+        return w*(Math.exp(r*dtday) - 1); // Same as TROND
+    }
+
+    /**
+     * Calculates the turbulent dissipation rate from wind velocity (m/s) and depth (m).
+     */
+    static double calcTurbulence(double windX, double windY, double depth) {
+        return (5.82*1E-9*Math.pow(Math.sqrt(Math.pow(windX,2) + Math.pow(windY,2)), 3))/(depth+0.1); // Equation 1 in MacKenzie and Leggett 1993
+    }
+
+    /**
+     * Runs the foraging part of the BIOEN calculations and sets ingestion, 
+     * stomach fullness, and mean rank and size of prey in the diet in the result.
+     * 
+     * @param in     - input values
+     * @param facCO2 - pCO2 factor (see calcCO2(...))
+     * @param eps    - turbulent dissipation rate (see calcTurbulence(...))
+     * @param out    - result
+     */
+    void forage(BioenergeticsInput in, double facCO2, double eps, BioenergeticsResult out) {
+        // double inputs:
+        double m = in.m;
+        double dt = in.dt;
+        double std_len = in.std_len;
+        double eb = in.eb;
+        double stm_sta = in.stm_sta; // stomach 
+        double attCoeff = in.attCoeff; // K parameter in Fiksen et al 2002
+        // Prey items: should be in this order (by size):
+        double eup = in.eup; // prey item 3
+        double ncas = in.ncas; // prey item 3
+        double ncao = in.ncao; // prey item 4
+        double cop = in.cop; // prey item 5
+
+        // prey information
+        double randomAbunEup = uniform(in.random)*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
+        double randomAbunNcas = uniform(in.random)*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
+        double randomAbunNcao = uniform(in.random)*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
+        double randomAbunCop = uniform(in.random)*(0.5 + 0.5) - 0.5; // generate random number between -0.5 and 0.5
+
+        if(eb < EB_DARK) { // no visual feeding in the dark: skip the prey spectrum and foraging loop
+            out.ing = 0;
+            out.stomachFullness = 0;
+            out.avgRank = 0;
+            out.avgSize = 0;
+            return;
+        }
+
+        int npreyitems = PreySizeSpectrum.NUM_TAXA; // number of prey items
+        // include spatial variability:
+        // prey densities in ug/m^3. Weights, areas and abundances per len bin come from the 
+        // precalculated spectrum tables in PreySizeSpectrum
+        double[] prey_ug = in.preyUg;
+        prey_ug[0] = PreySizeSpectrum.carbonToUg(eup*Math.exp(randomAbunEup));
+        prey_ug[1] = PreySizeSpectrum.carbonToUg(ncas*Math.exp(randomAbunNcas));
+        prey_ug[2] = PreySizeSpectrum.carbonToUg(ncao*Math.exp(randomAbunNcao));
+        prey_ug[3] = PreySizeSpectrum.carbonToUg(cop*Math.exp(randomAbunCop));
+        int nallsizes = PreySizeSpectrum.NUM_SIZES;
 
         // START FORAGING PART:
         double contrast = 0.3;
@@ -214,12 +252,10 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
         double dt_pca = 0.1;
         double dr = 0.0;
         double pt = 0.0;
-        double m_teta = Math.PI/6;
-        double var_teta = Math.PI/6;
         double x_star = 0.5*std_len;
         // Values in Fiksen and MacKenzie 2002b:
-        double speed_fish = 10.0;
-        double speed_prey = 100.0;
+        double speed_fish = SPEED_FISH;
+        double speed_prey = SPEED_PREY;
         double va = speed_fish*std_len;
         double ke_larvae = 1;
         double beamAttCoeff = attCoeff*3;
@@ -234,15 +270,11 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
         double psa = 0;
         double prey_normal_speed = 0;
 
-        int n_enc = 10;
-        double eps = (5.82*1E-9*Math.pow(Math.sqrt(Math.pow(windX,2) + Math.pow(windY,2)), 3))/(depth+0.1); // Equation 1 in MacKenzie and Leggett 1993
-        double gape = Math.exp(-3.720 + 1.818*Math.log(std_len) - 0.1219*Math.pow(Math.log(std_len), 2)); // mouth diameter
+        int n_enc = N_ENC;
+        double gape = calcGape(std_len); // mouth diameter
         double pl_max = 0.08; // max prey len relative to fish len
         double pl_min = 0.03; // min prey len relative to fish len
 
-        Double[] return_vec = new Double[10]; // value to Return should be specified here
-        // This is an 2D array of length = 4
-
         double max_psize = std_len*pl_max; // maximum prey size allowed in diet based on Munk 1997
         double min_psize = std_len*pl_min; // minimum prey size allowed in diet based on Munk 1997
         double sum_numing = 1E-20; // sum ingestion. Very small number to avoid zero error later on.
@@ -251,36 +283,25 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
         double avgRankNum = 0; // to calculate mean rank
         double avgSizeNum = 0; // to calculate mean size
 
-        // Check prey preference based on size:
-        double sizePref = 0.055; // prefered ratio size
-        double[] ratioLens = new double[nallsizes]; 
-        double[] diffLens = new double[nallsizes]; 
-        Integer[] rankLens = new Integer[nallsizes]; 
-        for(int k=0; k<nallsizes; k++) {
-            ratioLens[k] = zoolen[k]/std_len;
-            diffLens[k] = Math.abs(ratioLens[k] - sizePref);
-        }
-        rankLens = rankify(diffLens, nallsizes); // starts at 1, 2, 3, ...
+        // Check prey preference based on size (closest to preferred ratio first):
+        int[] prefOrder = PreySizeSpectrum.preferenceOrder(std_len);
         int i = 0; // loop indicator over lens
 
         // Begin loop:
         length_loop: for(int itm = 0; itm < nallsizes; itm++) { // 
 
-            if(eb < 1E-15) { // Here is the bug I got. When Eb is extremely small, no run the visual estimation algorithm, then visual = 0
-                break length_loop;
-            }
-
             // Find rank:
-            int elementToFind = itm + 1; // because it starts at 1
-            i = Arrays.asList(rankLens).indexOf(elementToFind);
+            i = prefOrder[itm];
+            double zoolen_i = PreySizeSpectrum.length(i); // prey length (mm)
 
-            if((zoolen[i] > max_psize) || (zoolen[i] < min_psize)) { // only run loop when prey size is smaller than maximum prey size that a larva can capture
+            if((zoolen_i > max_psize) || (zoolen_i < min_psize)) { // only run loop when prey size is smaller than maximum prey size that a larva can capture
                 break length_loop;
             } 
 
             prey_loop: for(int pit=0; pit<npreyitems; pit++) {
 
-                if(prey_abun[pit][i] < 0.00001) { // when very very small prey abundance is present, do not run the prey loop
+                double prey_abun = PreySizeSpectrum.abundance(pit, i, prey_ug[pit]);
+                if(prey_abun < 0.00001) { // when very very small prey abundance is present, do not run the prey loop
                     continue prey_loop;
                 }
 
@@ -289,105 +310,92 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
                 } 
 
                 double ier = 0;
-                double visual = Math.sqrt(em*contrast*prey_area[pit][i]*(eb/(ke_larvae+eb)));
-                double image = prey_area[pit][i];
-
-                double[] getr_out = new double[2];
-                getr_out = getr(visual, beamAttCoeff, contrast, image*1E-06, em, ke_larvae, eb, ier); // mm^2 to m^2 = 1000
-                //double[] getr_out = {0,10};
-                visual = getr_out[1]*1000; // 0 = new ier, 1 = new 'visual' value after getr. m2mm = 1000
+                double visual = Math.sqrt(em*contrast*PreySizeSpectrum.area(pit, i)*(eb/(ke_larvae+eb)));
+                double image = PreySizeSpectrum.area(pit, i);
+
+                if(in.tabulatedVisualRange) {
+                    visual = VisualRangeTable.getr(beamAttCoeff, contrast, image*1E-06, em, ke_larvae, eb)*1000; // m2mm = 1000
+                } else {
+                    double[] getr_out = getr(visual, beamAttCoeff, contrast, image*1E-06, em, ke_larvae, eb, ier, in.getrOut); // mm^2 to m^2 = 1000
+                    //double[] getr_out = {0,10};
+                    visual = getr_out[1]*1000; // 0 = new ier, 1 = new 'visual' value after getr. m2mm = 1000
+                }
 
                 // pca[i] = Math.max(0, Math.min(1, -16.7*(prey_len[i]/std_len) + (3/2)));
 
                 // Capture and approach probabilities:
                 double c = 0.5*gape;
                 double rs = c + 0.1*std_len;
-                double d_crit = 0.264/zoolen[i];
-                double w = speed_prey*zoolen[i]; // prey escape velocity
+                double d_crit = 0.264/zoolen_i;
+                double w = speed_prey*zoolen_i; // prey escape velocity
                 double capt_pca = 0;
                 double capt_psa = 0;
                 double travel = 0.43; // s-1. Fiksen and McKenzie 2002
-                int max_ats = 3; // max number of ats
+                int max_ats = MAX_ATS; // max number of ats
                 pt = 0;
 
                 if(std_len <= 17) { // Run as Fiksen McKenzie 2002
 
-                    // Calculate the probability of approach and capture
-                    enc_loop: for(int j = 1; j <= n_enc; j++){
+                    if(in.tabulatedCapture && PreyCaptureTable.covers(i, std_len)) {
+                        // expected value of the capture probability estimated below
+                        pca = PreyCaptureTable.pca(i, std_len);
+                    } else {
+                        // Calculate the probability of approach and capture
+                        enc_loop: for(int j = 1; j <= n_enc; j++){
 
-                        double d = Math.max(visual, c);
-                        int k_iter_last = 1;
+                            double d = Math.max(visual, c);
+                            int k_iter_last = 1;
                         
-                        approach_loop: for(int k = 1; k <= dt_num; k++){
-
-                            double v = 0;
-                            k_iter_last = k;
-                            if(d > rs) {
-                                v = (d_crit*2*(Math.pow(d, 4)))/(3*c*((Math.pow(d,2))-(Math.pow(c, 2))));
-                                v = dt_pca*Math.min(std_len, v);
-                            } else {
-                                capt_psa = capt_psa + 1;
-                                break approach_loop;
-                            }
-
-                            dr = -1*v*(1-(3*c/(2*d))+Math.pow(c,2)/(2*Math.pow(d,3)));
-                            d = d + dr;
-
-                        }
-
-                        pt = pt + k_iter_last*dt_pca;
+                            approach_loop: for(int k = 1; k <= dt_num; k++){
+
+                                double v = 0;
+                                k_iter_last = k;
+                                if(d > rs) {
+                                    v = (d_crit*2*(Math.pow(d, 4)))/(3*c*((Math.pow(d,2))-(Math.pow(c, 2))));
+                                    v = dt_pca*Math.min(std_len, v);
+                                } else {
+                                    capt_psa = capt_psa + 1;
+                                    break approach_loop;
+                                }
 
-                        // THIS LOOP IS GENERATED BY MYSELF (Giancarlo). IT IS A BETTER WAY TO PROGRAM THIS PART
+                                dr = -1*v*(1-(3*c/(2*d))+Math.pow(c,2)/(2*Math.pow(d,3)));
+                                d = d + dr;
 
-                        enc_loop_part2: for(int j2 = 1; j2 <= max_ats; j2++) {
+                            }
 
-                            // Generate random number:
-                            double r_rand = Math.random();
-                            // Apply n_dev function: (begin)
-                            double u1 = Math.max(0.00001, r_rand);
-                            var_teta = Math.sqrt(-2*Math.log(u1))*Math.cos(2*Math.PI*r_rand);
-                            // (end)
+                            pt = pt + k_iter_last*dt_pca;
 
-                            double teta = (m_teta - var_teta*m_teta);
+                            // THIS LOOP IS GENERATED BY MYSELF (Giancarlo). IT IS A BETTER WAY TO PROGRAM THIS PART
 
-                            if(teta > Math.PI) { 
-                                teta = 2*Math.PI - teta;
-                            }
+                            enc_loop_part2: for(int j2 = 1; j2 <= max_ats; j2++) {
 
-                            teta = Math.abs(teta);
+                                // Generate random number:
+                                double r_rand = uniform(in.random);
+                                double teta = attackAngle(r_rand);
 
-                            if(teta < Math.PI*0.5) {
-                                if((gape*0.5/x_star) > Math.tan(teta)) {
-                                    if((x_star*Math.cos(teta)/w) < ((rs - c + x_star)/va)) {
-                                        continue enc_loop_part2;
-                                    } 
+                                if(attackCaptures(teta, gape, c, rs, x_star, w, va)) {
+                                    capt_pca = capt_pca + 1;
+                                } else {
+                                    continue enc_loop_part2;
                                 }
-                            }
 
-                            // Equation 11 in Fiksen and MacKenzie 2002
-                            double capture = (w/va) * (Math.sin(teta)*(rs+c)+(gape/2)*Math.cos(teta));
-
-                            if(capture < (gape*0.5)) {
-                                capt_pca = capt_pca + 1;
-                            } else {
-                                continue enc_loop_part2;
                             }
 
-                        }
+                        } // End enc_loop
 
-                    } // End enc_loop
+                        pt = pt/n_enc;
 
-                    pt = pt/n_enc;
+                        psa = Math.min(1, capt_psa/n_enc);
+                        pca = Math.min(1, capt_pca/n_enc);
 
-                    psa = Math.min(1, capt_psa/n_enc);
-                    pca = Math.min(1, capt_pca/n_enc);
+                    }
 
                 } // end If std_len <= 17. 
 
                 if(std_len > 17) { //Run as Letcher et al 1996:
 
                     double par_a_cs = 1.1*std_len/(pl_max*std_len); // pl_max assumed to be 0.09*std_len                                   
-                    pca = Math.max(0, 1 - (par_a_cs * (zoolen[i]/std_len)));
+                    pca = Math.max(0, 1 - (par_a_cs * (zoolen_i/std_len)));
 
                 } // end If std_len > 17
 
@@ -395,16 +403,16 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
                 omega = omega * 1000; // m2mm = 1000. From m/s to mm/s
 
                 // Equation based on Bradley et al 2013, Figure 6:
-                prey_normal_speed = zoolen[i]*(1.94*Math.pow(zoolen[i], -1.005)); // this is different from escape velocity
+                prey_normal_speed = zoolen_i*(1.94*Math.pow(zoolen_i, -1.005)); // this is different from escape velocity
                 // Figure 2 in Walton 1992:
-                hand = Math.exp(0.264*Math.pow(10, (7.0151*(zoolen[i]/std_len))));
+                hand = Math.exp(0.264*Math.pow(10, (7.0151*(zoolen_i/std_len))));
                 // See Fiksen and MacKenzie 2002 Equation 1: 
                 // EFFECT PCO2: ON PREY ABUNDANCE
-                enc = ((0.667*Math.PI*Math.pow(visual,3)*travel + Math.PI*Math.pow(visual,2)*Math.sqrt(Math.pow(prey_normal_speed, 2) + 2*Math.pow(omega,2))*travel*2)*(1*prey_abun[pit][i])*(1 - facCO2*0.1)*1e-6); // tau = 2. MultiplyPrey = 1. ltr2mm3 = 1E-6
+                enc = ((0.667*Math.PI*Math.pow(visual,3)*travel + Math.PI*Math.pow(visual,2)*Math.sqrt(Math.pow(prey_normal_speed, 2) + 2*Math.pow(omega,2))*travel*2)*(1*prey_abun)*(1 - facCO2*0.1)*1e-6); // tau = 2. MultiplyPrey = 1. ltr2mm3 = 1E-6
                 // *(1 - facCO2*0.1)
                 // EFFECT PCO2: ON PREY WEIGHT
                 // EFFECT PCO2: ON ATTACK SUCCESS
-                numing = enc*pca*(1-facCO2*0.1)*prey_wgt[pit][i]*(1-facCO2*0.1)*0.001; // ug2mg = 0.001. 
+                numing = enc*pca*(1-facCO2*0.1)*PreySizeSpectrum.weight(pit, i)*(1-facCO2*0.1)*0.001; // ug2mg = 0.001. 
                 // pca: *(1-facCO2*0.1)
                 // wgt: *(1-facCO2*0.1)
                 dening = enc*hand;
@@ -415,7 +423,7 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
                 ing = dt*sum_numing/(1 + sum_dening); 
 
                 avgRankNum += numing*(pit+1); // numing makes more sense than ing
-                avgSizeNum += numing*(zoolen[i]);
+                avgSizeNum += numing*(zoolen_i);
                 // Here calculate suming and check stomach fullness:
                 stomachFullness = Math.min(1, (stm_sta + ing/(m*0.06)));
 
@@ -423,25 +431,25 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
 
         } // end of length_loop
 
-        return_vec[0] = gr_mg; // same as TROND
-        return_vec[1] = meta; // metabolism
-        return_vec[2] = ing;
-        return_vec[3] = assi;
-        return_vec[4] = stomachFullness;
-        return_vec[5] = avgRankNum/sum_numing;
-        return_vec[6] = avgSizeNum/sum_numing;
-        return_vec[7] = eps;
-        return_vec[8] = metamax;
-        return_vec[9] = gr_mg_max;
-        return return_vec;
-
+        out.ing = ing;
+        out.stomachFullness = stomachFullness;
+        out.avgRank = avgRankNum/sum_numing;
+        out.avgSize = avgSizeNum/sum_numing;
     }
 
     /**
      * Calculates light intensity 
      */
     public static double[] calcLight(double chla, double depth, double bathy) {
-        double[] outp = new double[2];
+        return calcLight(chla, depth, bathy, new double[2]);
+    }
+
+    /**
+     * Calculates light intensity into outp (see calcLight(chla,depth,bathy)).
+     * 
+     * @return outp
+     */
+    public static double[] calcLight(double chla, double depth, double bathy, double[] outp) {
         double attCoef = 0.034 + 0.0518*Math.pow(chla, 0.428) + 0.0363 + 2.833*Math.pow(bathy, -1.079); // Eq A14 in Kearney et al 2020
         double eb_tmp = Math.exp(-1*depth*attCoef);
 
@@ -587,22 +595,46 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
             // Thysanoessa inermis (EupO): 12000-30000 um. a=1.38E-8, b=2.98. Silva et al 2017, Saunders et al 2013, Becker and Warren 2014
             // Ratio width:length = 0.4
 
+            // Return array:
+            double[][] return_array = zooplanktonShape(par_a, par_b, min_len, dlen, nsizes);
+            // rows 0, 1, 2, 3. (length mm, weight ug, area mm^2, abundance no.ind/L)
+
+            // it is assumed that 40% is carbon in one individual
+            double prey_item_1_ug = (prey_item_totabun_1*1000)*2.5; // COPEPODS: from mg C/m^3 to ug/m^3
+
+            // Split prey items_ug in size categories:
+            for(int i = 0; i < nsizes; i++){
+                return_array[3][i] = return_array[3][i] * (prey_item_1_ug/return_array[1][i])/1000; // THIS IS ABUNDANCE PER LEN BIN. units: no. ind/L
+            }
+
+            return return_array;
+
+    }
+
+    /**
+     * Calculates the carbon-independent part of the prey size spectrum used by zooplankton(...).
+     *
+     * @return double[4][nsizes] with rows
+     *     [0]: prey length (mm)
+     *     [1]: prey weight (ug)
+     *     [2]: prey area (mm^2)
+     *     [3]: fraction of total biomass in each size category (sums to 1)
+     */
+    static double[][] zooplanktonShape(double par_a, double par_b, double min_len, double dlen, int nsizes) {
+
             double[] prey_wgt = new double[nsizes]; // Number of size categories as Daewel et al 2008.
             double[] prey_width = new double[nsizes];
-            double[] prey_length = new double[nsizes];  
-            double[] sd_pl = new double[nsizes]; 
-            double[] sp_pl = new double[nsizes]; 
-            double[] m_new = new double[nsizes]; 
-            // Return array: 
-            double[][] return_array = new double[4][nsizes]; // should be 16?: (number of prey items*4)x(number of len bins)
-            // rows 0, 1, 2, 3. (length mm, weight ug, area mm^2, abundance no.ind/L)
+            double[] prey_length = new double[nsizes];
+            double[] sd_pl = new double[nsizes];
+            double[] m_new = new double[nsizes];
+            double[][] return_array = new double[4][nsizes];
 
-            for(int i = 0; i < prey_length.length; i++){ 
+            for(int i = 0; i < prey_length.length; i++){
                 prey_length[i] = min_len + dlen*i; // in um
             }
 
             // Find weight and width:
-            for(int i = 0; i < prey_length.length; i++){ 
+            for(int i = 0; i < prey_length.length; i++){
                 prey_wgt[i] = par_a*Math.pow(prey_length[i], par_b); // in ug
                 prey_width[i] = prey_length[i]*0.3/1000; // width = 0.3*length. In mm
             }
@@ -614,11 +646,6 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
                 tm = tm + (m_new[i]*sd_pl[i]);
             }
 
-            // Percentage of total biomass per size category. sum(sp_pl) = 1
-            for(int i = 0; i < prey_length.length; i++){
-                sp_pl[i] = (sd_pl[i]*m_new[i])/tm;
-            }
-
             for (int i = 0; i < prey_length.length; i++) {
                 return_array[0][i] = prey_length[i] / 1000; // THIS IS PREY LENGTH. from um to mm
             }
@@ -631,19 +658,83 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
                 return_array[2][i]=0.75*(prey_length[i]/1000)*prey_width[i]; // THIS IS PREY AREA: units mm^2
             }
 
-            // it is assumed that 40% is carbon in one individual
-            double prey_item_1_ug = (prey_item_totabun_1*1000)*2.5; // COPEPODS: from mg C/m^3 to ug/m^3
-
-            // Split prey items_ug in size categories:
+            // Percentage of total biomass per size category. sum(sp_pl) = 1
             for(int i = 0; i < prey_length.length; i++){
-                return_array[3][i] = sp_pl[i] * (prey_item_1_ug/prey_wgt[i])/1000; // THIS IS ABUNDANCE PER LEN BIN. units: no. ind/L
+                return_array[3][i] = (sd_pl[i]*m_new[i])/tm;
+            }
+
+            return return_array;
+
+    }
+
+    /**
+     * Returns the next uniform random number from the stream, or from Math.random()
+     * if there is none.
+     */
+    private static double uniform(IndividualRandomStream rnd) {
+        return (rnd==null) ? Math.random() : rnd.nextDouble();
+    }
+
+    /**
+     * Calculates the mouth diameter (gape, mm) from standard length (mm).
+     */
+    static double calcGape(double std_len) {
+        return Math.exp(-3.720 + 1.818*Math.log(std_len) - 0.1219*Math.pow(Math.log(std_len), 2));
+    }
+
+    /**
+     * Calculates the attack angle (radians, 0 to pi) from a uniform random number 
+     * (Fiksen and MacKenzie 2002).
+     */
+    static double attackAngle(double r_rand) {
+        double m_teta = Math.PI/6;
+        // Apply n_dev function: (begin)
+        double u1 = Math.max(0.00001, r_rand);
+        double var_teta = Math.sqrt(-2*Math.log(u1))*Math.cos(2*Math.PI*r_rand);
+        // (end)
+
+        double teta = (m_teta - var_teta*m_teta);
+
+        if(teta > Math.PI) { 
+            teta = 2*Math.PI - teta;
+        }
+
+        return Math.abs(teta);
+    }
+
+    /**
+     * Determines if an attack at angle teta results in capture (Fiksen and MacKenzie 2002).
+     * 
+     * @param teta   - attack angle (radians)
+     * @param gape   - mouth diameter (mm)
+     * @param c      - half the gape (mm)
+     * @param rs     - strike distance (mm)
+     * @param x_star - half the standard length (mm)
+     * @param w      - prey escape velocity (mm/s)
+     * @param va     - larval attack velocity (mm/s)
+     */
+    static boolean attackCaptures(double teta, double gape, double c, double rs, double x_star, double w, double va) {
+        if(teta < Math.PI*0.5) {
+            if((gape*0.5/x_star) > Math.tan(teta)) {
+                if((x_star*Math.cos(teta)/w) < ((rs - c + x_star)/va)) {
+                    return false;
+                } 
             }
+        }
 
-            return return_array; 
+        // Equation 11 in Fiksen and MacKenzie 2002
+        double capture = (w/va) * (Math.sin(teta)*(rs+c)+(gape/2)*Math.cos(teta));
 
+        return (capture < (gape*0.5));
     }
 
     public static double[] getr(double r, double c, double c0, double ap, double vc, double ke, double eb, double ier) {
+        return getr(r, c, c0, ap, vc, ke, eb, ier, new double[2]);
+    }
+
+    // As getr(...) above, with the output {ier, r} written to return_r:
+
+    public static double[] getr(double r, double c, double c0, double ap, double vc, double ke, double eb, double ier, double[] return_r) {
 
           //  r       : start value of r calculated by EASYR
           //  c       : beam attenuation koefficient (m-1)
@@ -654,9 +745,6 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
           //  ke      : saturation parameter (uE m-2 s-1). not important units
           //  eb      : background irradiance at depth DEPTH . not important units
 
-        // output object
-        double[] return_r = new double[2]; // output object
-
         // Run 'easyr' subroutine: (begin)
         double r2 = Math.abs(c0)*ap*vc*(eb/(ke+eb));
         r = Math.sqrt(r2); // new r
@@ -761,8 +849,18 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
     // Mortality function:
 
     public static double[] TotalMortality(double larval_mm, double eb, double attCoeff, double new_larva_wgt, double stomachFullness, double dwmax) {
+        return TotalMortality(larval_mm, eb, attCoeff, new_larva_wgt, stomachFullness, dwmax, false);
+    }
+
+    // Mortality function, with predator visual range from VisualRangeTable if tabulatedVisualRange is true:
+
+    public static double[] TotalMortality(double larval_mm, double eb, double attCoeff, double new_larva_wgt, double stomachFullness, double dwmax, boolean tabulatedVisualRange) {
+        return TotalMortality(larval_mm, eb, attCoeff, new_larva_wgt, stomachFullness, dwmax, tabulatedVisualRange, new double[5]);
+    }
 
-        double[] return_mort = new double[5]; // output object
+    // Mortality function, with the output written to return_mort (double[5]):
+
+    public static double[] TotalMortality(double larval_mm, double eb, double attCoeff, double new_larva_wgt, double stomachFullness, double dwmax, boolean tabulatedVisualRange, double[] return_mort) {
 
         double larvalShape = 0.2; // Larval width:length ratio
         double contrast = 0.3;
@@ -785,15 +883,26 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
         double larvalWidth = larvalShape*larval_mm;
         double image = larvalWidth*larval_mm;
 
+        double invertebrateMortality = setMort*OtherPred(larval_mm, aPred, bPred);
+        double starved = AliveOrDead(new_larva_wgt, stomachFullness, deadThreshold, dwmax);
+
+        if(eb < EB_DARK) { // fish predators do not see larvae in the dark (visual = 0)
+            return_mort[0] = invertebrateMortality + starved*starvationMortality;
+            return_mort[1] = starved;
+            return_mort[2] = 0;
+            return_mort[3] = invertebrateMortality*1000000; // to print it in large numbers
+            return_mort[4] = starved*starvationMortality*1000000; // to print it in large numbers
+            return return_mort;
+        }
+
         double ier = 0;
         double visual = 0.0;
 
         // All input to getr is either in m (or per m), or in mm (or per mm). Here we use meter (m):
-        if(eb < 1E-15) { 
-            visual = 0;
+        if(tabulatedVisualRange) {
+            visual = VisualRangeTable.getr(beamAttCoeff, contrast, image*1E-06, em, ke_predator, eb); // in m
         } else {
-            double[] getr_out = new double[2];
-            getr_out = getr(visual, beamAttCoeff, contrast, image*1E-06, em, ke_predator, eb, ier); // mm^2 to m^2
+            double[] getr_out = getr(visual, beamAttCoeff, contrast, image*1E-06, em, ke_predator, eb, ier, return_mort); // mm^2 to m^2. return_mort is overwritten below
             visual = getr_out[1]; // 0 = new ier, 1 = new 'visual' value after getr. in m
         }
 
@@ -803,8 +912,6 @@ public class IBMFunction_NonEggStageBIOENGrowthRateDW extends AbstractIBMFunctio
         // Calculate lethal encounter rate with fish setMort is either 0 (off) or 1 (on)
         // double fishMortality = setMort*(visFieldShape*Math.PI*Math.pow(visual,2)*fishSwimVel*fishDens);
         double fishMortality = kval*pe*Math.pow(visual,2); // visual in m
-        double invertebrateMortality = setMort*OtherPred(larval_mm, aPred, bPred);
-        double starved = AliveOrDead(new_larva_wgt, stomachFullness, deadThreshold, dwmax);
         double mortality = (invertebrateMortality + fishMortality + starved*starvationMortality);
 
         return_mort[0] = mortality;
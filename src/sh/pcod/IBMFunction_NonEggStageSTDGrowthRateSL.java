@@ -26,7 +26,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_NonEggStageSTDGrowthRateSL extends AbstractIBMFunction implements IBMGrowthFunctionInterface {
+public class IBMFunction_NonEggStageSTDGrowthRateSL extends AbstractIBMFunction implements IBMGrowthFunctionInterface, TypedFunctions.Binary {
     public static final String DEFAULT_type = "Growth";
     /** user-friendly function name */
     public static final String DEFAULT_name = "STDG rate (mm/d) for standard length in Pacific cod non-egg stages";
@@ -89,10 +89,21 @@ public class IBMFunction_NonEggStageSTDGrowthRateSL extends AbstractIBMFunction
     @Override
     public Object calculate(Object o) {
         Double[] vals = (Double[]) o;
-        double t = vals[0];
-        double L = vals[1];
+        return (Double) calculate(vals[0],vals[1]);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * @param L - standard length in mm
+     * 
+     * @return growth rate (mm/d)
+     */
+    @Override
+    public double calculate(double t, double L) {
         double r = (0.076 + 0.029*t - 0.00002*t*t)/(1-0.059/Math.exp(Math.pow(L,0.0758)));
-        return (Double) r;
+        return r;
     }
     
 }
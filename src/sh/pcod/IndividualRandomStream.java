@@ -0,0 +1,95 @@
+/**
+ * IndividualRandomStream.java
+ */
+
+package sh.pcod;
+
+/**
+ * Reproducible stream of random numbers for one individual.
+ *
+ * The stream is counter-based (SplitMix64): the n-th value depends only on 
+ * the run seed, the individual's id and n. The number of values drawn so far
+ * is kept by the life stages in the "random draws" attribute, so the stream 
+ * continues where it left off after a stage transition, and individuals never
+ * share (or contend for) a generator. Super-individuals that split off a new 
+ * id start a new, independent stream.
+ *
+ * The run seed is taken from the system property "sh.pcod.randomSeed" (default 0)
+ * or can be set using setRunSeed(...) before the individuals are created.
+ */
+public class IndividualRandomStream {
+
+    /** name of the system property used to set the run seed */
+    public static final String PROP_runSeed = "sh.pcod.randomSeed";
+    /** golden-ratio increment for SplitMix64 */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    /** 2^-53 */
+    private static final double DOUBLE_UNIT = 1.0/(1L<<53);
+
+    /** seed for the model run */
+    private static volatile long runSeed = Long.getLong(PROP_runSeed, 0L);
+
+    /** seed for this stream */
+    private final long seed;
+    /** number of values drawn so far */
+    private long counter;
+
+    /**
+     * Creates the stream for an individual.
+     * 
+     * @param id      - individual id
+     * @param counter - number of values already drawn from the stream
+     */
+    public IndividualRandomStream(long id, long counter) {
+        this.seed    = mix64(runSeed ^ mix64(id*GAMMA + GAMMA));
+        this.counter = counter;
+    }
+
+    /**
+     * Sets the seed for the model run. This affects streams created afterwards.
+     */
+    public static void setRunSeed(long seed) {
+        runSeed = seed;
+    }
+
+    /**
+     * Returns the seed for the model run.
+     */
+    public static long getRunSeed() {
+        return runSeed;
+    }
+
+    /**
+     * Returns the number of values drawn so far.
+     */
+    public long getCounter() {
+        return counter;
+    }
+
+    /**
+     * Returns the next uniform random number in [0,1).
+     */
+    public double nextDouble() {
+        counter++;
+        return (mix64(seed + counter*GAMMA) >>> 11)*DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns the next standard normal random number (Box-Muller, using two
+     * uniform values).
+     */
+    public double nextNormal() {
+        double u1 = 1.0 - nextDouble();//in (0,1]
+        double u2 = nextDouble();
+        return Math.sqrt(-2*Math.log(u1))*Math.cos(2*Math.PI*u2);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * LightField.java
+ */
+
+package sh.pcod;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Surface light field shared by the non-egg life stages.
+ *
+ * The surface light used in the Eb calculation (calcLightQSW(...) followed by
+ * calcLightSurlig(...) in IBMFunction_NonEggStageBIOENGrowthRateDW) depends only
+ * on latitude and the model time, which is the same for all individuals within
+ * a time step. surfaceLight(...) evaluates it on a regular latitude grid for the
+ * current time and interpolates linearly between grid nodes. Grid nodes are
+ * calculated on demand, one 1-degree latitude band at a time, so only the bands
+ * actually occupied by individuals are evaluated. The grid is discarded when the
+ * model time changes.
+ *
+ * The depth-dependent part of Eb (calcLight(...)) depends on the chlorophyll and
+ * bathymetric depth interpolated at the individual's position, so it is still
+ * calculated per individual.
+ */
+public final class LightField {
+
+    /** latitude grid spacing (degrees) */
+    public static final double LAT_STEP = 0.05;
+    /** number of grid intervals per 1-degree latitude band */
+    private static final int STEPS_PER_BAND = 20;
+    /** number of 1-degree latitude bands from -90 to 90 */
+    private static final int NUM_BANDS = 180;
+
+    /** surface light grid for the current model time */
+    private static volatile Snapshot current = new Snapshot(Double.NaN);
+
+    private LightField(){}
+
+    /**
+     * Returns the surface light (umol/m^2/s) at the given latitude and model time,
+     * interpolated from the shared latitude grid.
+     *
+     * @param lat  - latitude (degrees N)
+     * @param time - model time (year day, with fraction of day)
+     * @return surface light
+     */
+    public static double surfaceLight(double lat, double time) {
+        return snapshot(time).surfaceLight(lat);
+    }
+
+    /**
+     * Returns the surface light grid for the given model time, discarding the
+     * current grid if the model time has changed.
+     *
+     * @param time - model time (year day, with fraction of day)
+     * @return surface light grid
+     */
+    static Snapshot snapshot(double time) {
+        Snapshot s = current;
+        if (Double.compare(s.time,time)!=0) {
+            s = new Snapshot(time);
+            current = s;
+        }
+        return s;
+    }
+
+    /**
+     * Calculates the surface light (umol/m^2/s) at the given latitude and model time
+     * directly, without using the shared latitude grid.
+     *
+     * @param lat  - latitude (degrees N)
+     * @param time - model time (year day, with fraction of day)
+     * @return surface light
+     */
+    public static double surfaceLightExact(double lat, double time) {
+        double[] qsw = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat,time); // see line 713 in ibm.py
+        double maxLight = qsw[0]/0.217; // radfl0 from  W/m2 to umol/m2/s-1 see line 714 in ibm.py
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightSurlig(lat,time,maxLight)[1]; // see line 715 in ibm.py
+    }
+
+    /**
+     * Surface light at the latitude grid nodes for one model time.
+     */
+    static final class Snapshot {
+        final double time;
+        final AtomicReferenceArray<double[]> bands = new AtomicReferenceArray<>(NUM_BANDS);
+
+        Snapshot(double time) {
+            this.time = time;
+        }
+
+        /**
+         * Returns the surface light (umol/m^2/s) at the given latitude,
+         * interpolated from the grid.
+         */
+        double surfaceLight(double lat) {
+            if (!(lat>-90.0)) lat = -90.0;
+            if (!(lat<90.0))  lat = 90.0;
+            double x = (lat+90.0)/LAT_STEP;
+            int i = (int) x;
+            int b = i/STEPS_PER_BAND;
+            if (b>=NUM_BANDS) {
+                //exactly at 90 N: use the last interval
+                b = NUM_BANDS-1;
+            }
+            double[] band = band(b);
+            int j = Math.min(i-b*STEPS_PER_BAND,STEPS_PER_BAND-1);
+            double f = x-(b*STEPS_PER_BAND+j);
+            return band[j]+f*(band[j+1]-band[j]);
+        }
+
+        /**
+         * Returns the node values for latitude band b, calculating them if necessary.
+         */
+        double[] band(int b) {
+            double[] v = bands.get(b);
+            if (v==null) {
+                v = new double[STEPS_PER_BAND+1];
+                for (int j=0; j<=STEPS_PER_BAND; j++) {
+                    v[j] = surfaceLightExact(-90.0+(b*STEPS_PER_BAND+j)*LAT_STEP,time);
+                }
+                bands.compareAndSet(b,null,v);
+                v = bands.get(b);
+            }
+            return v;
+        }
+    }
+}
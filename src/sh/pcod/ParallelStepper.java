@@ -0,0 +1,498 @@
+/**
+ * ParallelStepper.java
+ */
+
+package sh.pcod;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import wts.models.DisMELS.framework.LifeStageInterface;
+
+/**
+ * Steps a population of Pacific cod individuals over one time step using a
+ * fork/join pool, with the transitions and deaths merged in list order.
+ *
+ * Thread-safety contract of the sh.pcod life stages:
+ *   step(...) modifies only the state of the individual it is called on: its
+ *   attributes, Lagrangian particle, tracks, environmental sample and random
+ *   number stream (IndividualRandomStream, seeded by individual id). Different
+ *   individuals may therefore be stepped concurrently; the same individual must
+ *   not be. The state shared between individuals is read-only during a step or
+ *   safely published: the stage parameters and IBM functions, the static tables
+ *   (VisualRangeTable, PreyCaptureTable, PreySizeSpectrum), the per-time caches
+ *   (LightField, SolarEphemeris, EnvSampler), the StepContext, EventLog and
+ *   the debug flags (volatile). The framework's Interpolator3D is only read
+ *   during a step; the model must not advance it (or load new ROMS fields)
+ *   while a step is in progress.
+ *
+ *   getMetamorphosedIndividuals(dt) reuses the individual's output list and
+ *   creates the new individuals through LHS_Factory (which assigns ids), so it
+ *   is called sequentially, after all individuals have been stepped.
+ *
+ * step(...) creates the StepContext for the time step (so the calendar is read
+ * once, on the calling thread) and passes it to the individuals through
+ * StepContext.Steppable.step(ctx) (others are stepped through step(dt)). It then
+ * works in two phases. First, the active, living individuals are stepped in
+ * parallel. Second, the list is traversed sequentially and in order: individuals
+ * that died are added to the list of dead individuals, and the metamorphosed
+ * individuals of the others are added to the list of transitions. The results
+ * are therefore independent of the number of threads and of the way the list is
+ * partitioned.
+ *
+ * Because the cost of a step differs by orders of magnitude between individuals
+ * (see StepCost), the list is not split into ranges of equal size. Before the
+ * individuals are stepped, the cost of each one's step is estimated from the
+ * time its previous step took (measured by the stepper), scaled by the change in
+ * its relative cost (StepCost.estimate(...): stage, light, SL). Individuals that
+ * were not stepped in the previous time step (e.g., new or metamorphosed ones) are
+ * given their relative cost times the mean time per unit of relative cost in the
+ * previous time step. The list is then split into contiguous chunks of roughly
+ * equal estimated cost (and at most the threshold number of individuals), with
+ * "chunksPerThread" chunks per thread. With more than one chunk per thread,
+ * threads that finish their chunks early steal chunks from the others (the
+ * fork/join pool's work stealing); with one chunk per thread each thread steps
+ * a single chunk.
+ *
+ * Within each chunk, the individuals that use the BIOEN growth function are
+ * stepped in batches (see BioenergeticsBatch): the part of each individual's
+ * step before the BIOEN calculation is run (BioenergeticsBatch.Batchable.beginStep),
+ * the BIOEN calculation is run for up to "threshold" individuals at once, and
+ * then the rest of each individual's step (endStep) is run with its result.
+ * Because the calculation for each individual only depends on its own input and
+ * random number stream, the results are identical to stepping the individuals
+ * one at a time. Batching can be disabled (e.g. to compare the two paths).
+ *
+ * Optionally, every "reorderInterval" time steps the list of individuals is
+ * sorted in place along a space-filling curve through the grid (see
+ * SpatialOrder) before it is stepped, so consecutive individuals, and the
+ * individuals in each chunk, read nearby parts of the ROMS and prey fields.
+ * This changes the order of the list (and so of the output), not the results
+ * for each individual. New individuals are added to the list by the model
+ * between reorderings, so the order degrades slowly and is restored by the
+ * next reordering.
+ *
+ * The number of threads is given by the system property "sh.pcod.threads"
+ * (default: the number of available processors), the number of chunks per
+ * thread by "sh.pcod.chunksPerThread" (default 4) and the reordering interval
+ * by "sh.pcod.reorderInterval" (default 0: the list is not reordered) and
+ * batching by "sh.pcod.batch" (default true).
+ */
+public final class ParallelStepper {
+
+    /** system property with the number of threads */
+    public static final String PROP_threads = "sh.pcod.threads";
+    /** system property with the number of chunks per thread */
+    public static final String PROP_chunksPerThread = "sh.pcod.chunksPerThread";
+    /** system property with the number of time steps between spatial reorderings of the individuals */
+    public static final String PROP_reorderInterval = "sh.pcod.reorderInterval";
+    /** system property with the flag to batch the BIOEN calculations */
+    public static final String PROP_batch = "sh.pcod.batch";
+    /** default maximum number of individuals stepped by one task */
+    public static final int DEFAULT_THRESHOLD = 256;
+    /** default number of chunks per thread */
+    public static final int DEFAULT_CHUNKS_PER_THREAD = 4;
+
+    /** pool used to step the individuals (null if single-threaded) */
+    private final ForkJoinPool pool;
+    /** maximum number of individuals stepped by one task */
+    private final int threshold;
+    /** number of chunks per thread */
+    private final int chunksPerThread;
+    /** number of time steps between spatial reorderings of the individuals (0: never) */
+    private final int reorderInterval;
+    /** flag to batch the BIOEN calculations */
+    private final boolean batch;
+    /** number of time steps since the last spatial reordering (0: reorder on the next step) */
+    private int stepsSinceReorder = 0;
+
+    /* costs from the previous time step */
+    /** individuals stepped in the previous time step */
+    private LifeStageInterface[] prevLhss = new LifeStageInterface[0];
+    /** relative costs of the individuals in the previous time step (0 if not stepped) */
+    private double[] prevUnits = new double[0];
+    /** measured step times of the individuals in the previous time step (ns, 0 if not stepped) */
+    private long[] prevNanos = new long[0];
+    /** mean step time per unit of relative cost in the previous time step (ns, NaN if unknown) */
+    private double nanosPerUnit = Double.NaN;
+
+    /**
+     * Creates a stepper with the numbers of threads and of chunks per thread, the
+     * reordering interval and the batching flag given by the system properties
+     * "sh.pcod.threads", "sh.pcod.chunksPerThread", "sh.pcod.reorderInterval" and
+     * "sh.pcod.batch", and the default threshold.
+     */
+    public ParallelStepper() {
+        this(Integer.getInteger(PROP_threads,Runtime.getRuntime().availableProcessors()),DEFAULT_THRESHOLD,
+             Integer.getInteger(PROP_chunksPerThread,DEFAULT_CHUNKS_PER_THREAD),
+             Integer.getInteger(PROP_reorderInterval,0),
+             Boolean.parseBoolean(System.getProperty(PROP_batch,"true")));
+    }
+
+    /**
+     * Creates a stepper with the default number of chunks per thread.
+     *
+     * @param threads   - number of threads (1 steps the individuals on the calling thread)
+     * @param threshold - maximum number of individuals stepped by one task
+     */
+    public ParallelStepper(int threads, int threshold) {
+        this(threads,threshold,DEFAULT_CHUNKS_PER_THREAD);
+    }
+
+    /**
+     * Creates a stepper that does not reorder the individuals.
+     *
+     * @param threads         - number of threads (1 steps the individuals on the calling thread)
+     * @param threshold       - maximum number of individuals stepped by one task
+     * @param chunksPerThread - number of chunks of equal estimated cost per thread (1 disables work stealing)
+     */
+    public ParallelStepper(int threads, int threshold, int chunksPerThread) {
+        this(threads,threshold,chunksPerThread,0);
+    }
+
+    /**
+     * Creates a stepper that batches the BIOEN calculations.
+     *
+     * @param threads         - number of threads (1 steps the individuals on the calling thread)
+     * @param threshold       - maximum number of individuals stepped by one task
+     * @param chunksPerThread - number of chunks of equal estimated cost per thread (1 disables work stealing)
+     * @param reorderInterval - number of time steps between spatial reorderings of the individuals (0: never)
+     */
+    public ParallelStepper(int threads, int threshold, int chunksPerThread, int reorderInterval) {
+        this(threads,threshold,chunksPerThread,reorderInterval,true);
+    }
+
+    /**
+     * Creates a stepper.
+     *
+     * @param threads         - number of threads (1 steps the individuals on the calling thread)
+     * @param threshold       - maximum number of individuals stepped by one task (and in one BIOEN batch)
+     * @param chunksPerThread - number of chunks of equal estimated cost per thread (1 disables work stealing)
+     * @param reorderInterval - number of time steps between spatial reorderings of the individuals (0: never)
+     * @param batch           - flag to batch the BIOEN calculations
+     */
+    public ParallelStepper(int threads, int threshold, int chunksPerThread, int reorderInterval, boolean batch) {
+        if (threads<1)         throw new IllegalArgumentException("number of threads must be positive: "+threads);
+        if (threshold<1)       throw new IllegalArgumentException("threshold must be positive: "+threshold);
+        if (chunksPerThread<1) throw new IllegalArgumentException("number of chunks per thread must be positive: "+chunksPerThread);
+        if (reorderInterval<0) throw new IllegalArgumentException("reordering interval must not be negative: "+reorderInterval);
+        pool = (threads>1) ? new ForkJoinPool(threads) : null;
+        this.threshold = threshold;
+        this.chunksPerThread = chunksPerThread;
+        this.reorderInterval = reorderInterval;
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the number of threads used to step the individuals.
+     *
+     * @return number of threads
+     */
+    public int getThreads() {
+        return (pool!=null) ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * Returns the number of chunks per thread.
+     *
+     * @return number of chunks per thread
+     */
+    public int getChunksPerThread() {
+        return chunksPerThread;
+    }
+
+    /**
+     * Returns the number of time steps between spatial reorderings of the individuals.
+     *
+     * @return reordering interval (0: the individuals are not reordered)
+     */
+    public int getReorderInterval() {
+        return reorderInterval;
+    }
+
+    /**
+     * Returns true if the BIOEN calculations are batched.
+     *
+     * @return flag to batch the BIOEN calculations
+     */
+    public boolean isBatched() {
+        return batch;
+    }
+
+    /**
+     * Steps the active, living individuals by dt, with the context for the current
+     * model time of the framework calendar (see StepContext.create(dt)), and collects
+     * the transitions and deaths.
+     *
+     * @param individuals   - individuals to step (reordered if a reordering interval is set)
+     * @param dt            - time step in seconds
+     * @param metamorphosed - list to which the metamorphosed individuals are added, in order
+     * @param dead          - list to which the individuals that died during the step are added, in order
+     */
+    public void step(List<? extends LifeStageInterface> individuals, double dt,
+                     List<LifeStageInterface> metamorphosed, List<LifeStageInterface> dead) {
+        step(individuals,StepContext.create(dt),metamorphosed,dead);
+    }
+
+    /**
+     * Steps the active, living individuals by the time step of ctx and collects the
+     * transitions and deaths. Individuals that are inactive or dead at the start of
+     * the step are skipped. This must not be called concurrently on the same stepper.
+     *
+     * If a reordering interval is set, the list of individuals is sorted in place
+     * (see SpatialOrder) every reorderInterval calls, so it must be modifiable.
+     *
+     * @param individuals   - individuals to step (reordered if a reordering interval is set)
+     * @param ctx           - time information for this time step
+     * @param metamorphosed - list to which the metamorphosed individuals are added, in order
+     * @param dead          - list to which the individuals that died during the step are added, in order
+     */
+    public void step(List<? extends LifeStageInterface> individuals, StepContext ctx,
+                     List<LifeStageInterface> metamorphosed, List<LifeStageInterface> dead) {
+        double dt = ctx.dt;
+        if (reorderInterval>0) {
+            if (stepsSinceReorder==0) SpatialOrder.sort(individuals);
+            stepsSinceReorder = (stepsSinceReorder+1)%reorderInterval;
+        }
+        LifeStageInterface[] lhss = individuals.toArray(new LifeStageInterface[individuals.size()]);
+        int n = lhss.length;
+        boolean[] stepped = new boolean[n];
+        double[]  units   = new double[n];
+        long[]    nanos   = new long[n];
+        double[]  costs   = new double[n];
+        int[] bounds = new int[]{0,n};
+        if (pool!=null) {
+            estimateCosts(lhss,units,costs);
+            bounds = partition(costs,pool.getParallelism()*chunksPerThread,threshold);
+        }
+        StepTask task = new StepTask(lhss,stepped,nanos,ctx,batch ? threshold : 0,bounds,0,bounds.length-1);
+        if (pool!=null) {
+            pool.invoke(task);
+            updateCosts(lhss,units,nanos);
+        } else {
+            task.compute();
+        }
+        for (int i=0; i<n; i++) {
+            if (!stepped[i]) continue;
+            LifeStageInterface lhs = lhss[i];
+            if (!lhs.isAlive()) {
+                dead.add(lhs);
+            } else {
+                List<LifeStageInterface> nLHSs = lhs.getMetamorphosedIndividuals(dt);
+                if (nLHSs!=null) metamorphosed.addAll(nLHSs);
+            }
+        }
+    }
+
+    /**
+     * Estimates the cost of the next step of each active, living individual (0 for
+     * the others) and sets its relative cost (see StepCost).
+     *
+     * @param lhss  - individuals
+     * @param units - array for the relative costs
+     * @param costs - array for the estimated costs
+     */
+    private void estimateCosts(LifeStageInterface[] lhss, double[] units, double[] costs) {
+        Map<LifeStageInterface,Integer> prevIndex = null;//built if the list has changed
+        for (int i=0; i<lhss.length; i++) {
+            LifeStageInterface lhs = lhss[i];
+            if (!(lhs.isActive()&&lhs.isAlive())) continue;
+            units[i] = StepCost.estimate(lhs);
+            int j = -1;
+            if ((i<prevLhss.length)&&(prevLhss[i]==lhs)) {
+                j = i;
+            } else if (prevLhss.length>0) {
+                if (prevIndex==null) {
+                    prevIndex = new IdentityHashMap<>(2*prevLhss.length);
+                    for (int k=0; k<prevLhss.length; k++) prevIndex.put(prevLhss[k],k);
+                }
+                Integer k = prevIndex.get(lhs);
+                if (k!=null) j = k;
+            }
+            if ((j>=0)&&(prevNanos[j]>0)&&(prevUnits[j]>0)) {
+                costs[i] = prevNanos[j]*units[i]/prevUnits[j];
+            } else {
+                costs[i] = Double.isNaN(nanosPerUnit) ? units[i] : units[i]*nanosPerUnit;
+            }
+        }
+    }
+
+    /**
+     * Keeps the relative costs and measured step times for the next time step and
+     * updates the mean time per unit of relative cost.
+     *
+     * @param lhss  - individuals
+     * @param units - relative costs
+     * @param nanos - measured step times (ns, 0 if not stepped)
+     */
+    private void updateCosts(LifeStageInterface[] lhss, double[] units, long[] nanos) {
+        double sumUnits = 0;
+        double sumNanos = 0;
+        for (int i=0; i<lhss.length; i++) {
+            if (nanos[i]>0) {
+                sumUnits += units[i];
+                sumNanos += nanos[i];
+            }
+        }
+        if (sumUnits>0) nanosPerUnit = sumNanos/sumUnits;
+        prevLhss  = lhss;
+        prevUnits = units;
+        prevNanos = nanos;
+    }
+
+    /**
+     * Splits a list into contiguous chunks of roughly equal total cost: each chunk
+     * ends at the first element at which the cumulative cost reaches the next
+     * multiple of total/nChunks, or when it has maxLength elements, so no chunk
+     * costs more than total/nChunks plus the cost of its last element.
+     *
+     * @param costs     - estimated costs of the elements
+     * @param nChunks   - target number of chunks
+     * @param maxLength - maximum number of elements in a chunk
+     * @return chunk boundaries: chunk c is [bounds[c],bounds[c+1])
+     */
+    public static int[] partition(double[] costs, int nChunks, int maxLength) {
+        int n = costs.length;
+        double total = 0;
+        for (int i=0; i<n; i++) total += costs[i];
+        if (!(total>0)) return new int[]{0,n};
+        double target = total/nChunks;
+        int[] bounds = new int[n+1];
+        int nb = 0;
+        bounds[nb++] = 0;
+        double cum = 0;//cumulative cost
+        double next = target;//cumulative cost at which the current chunk ends
+        int from = 0;
+        for (int i=0; i<n; i++) {
+            cum += costs[i];
+            if ((cum>=next)||(i+1-from>=maxLength)) {
+                if (i+1<n) bounds[nb++] = i+1;
+                from = i+1;
+                next = (Math.floor(cum/target)+1)*target;
+            }
+        }
+        bounds[nb++] = n;
+        int[] res = new int[nb];
+        System.arraycopy(bounds,0,res,0,nb);
+        return res;
+    }
+
+    /**
+     * Shuts down the thread pool. The stepper must not be used afterwards.
+     */
+    public void shutdown() {
+        if (pool!=null) pool.shutdown();
+    }
+
+    /**
+     * Task stepping the individuals in a range of chunks.
+     */
+    private static final class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** BIOEN batch of each thread */
+        private static final ThreadLocal<BioenergeticsBatch> BATCHES = new ThreadLocal<>();
+        private final LifeStageInterface[] lhss;
+        private final boolean[] stepped;
+        private final long[] nanos;
+        private final StepContext ctx;
+        /** maximum number of individuals in a BIOEN batch (0: no batching) */
+        private final int batchSize;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+
+        StepTask(LifeStageInterface[] lhss, boolean[] stepped, long[] nanos, StepContext ctx, int batchSize, int[] bounds, int from, int to) {
+            this.lhss = lhss;
+            this.stepped = stepped;
+            this.nanos = nanos;
+            this.ctx = ctx;
+            this.batchSize = batchSize;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to-from<=1)&&(batchSize>0)) {
+                stepBatched(bounds[from],bounds[to]);
+            } else if (to-from<=1) {
+                for (int i=bounds[from]; i<bounds[to]; i++) {
+                    LifeStageInterface lhs = lhss[i];
+                    if (lhs.isActive()&&lhs.isAlive()) {
+                        long t0 = System.nanoTime();
+                        if (lhs instanceof StepContext.Steppable) {
+                            ((StepContext.Steppable) lhs).step(ctx);
+                        } else {
+                            lhs.step(ctx.dt);
+                        }
+                        nanos[i] = Math.max(1,System.nanoTime()-t0);
+                        stepped[i] = true;
+                    }
+                }
+            } else {
+                int mid = (from+to)>>>1;
+                invokeAll(new StepTask(lhss,stepped,nanos,ctx,batchSize,bounds,from,mid),
+                          new StepTask(lhss,stepped,nanos,ctx,batchSize,bounds,mid,to));
+            }
+        }
+
+        /**
+         * Steps the active, living individuals in [lo,hi), batching the BIOEN
+         * calculations of the Batchable ones in groups of up to batchSize.
+         */
+        private void stepBatched(int lo, int hi) {
+            if (lo>=hi) return;
+            BioenergeticsBatch b = batch(Math.min(batchSize,hi-lo));
+            BioenergeticsResult out = new BioenergeticsResult();
+            int[] idx = new int[b.capacity];//index in lhss of each individual in the batch
+            int i = lo;
+            while (i<hi) {
+                int nb = 0;
+                for (; (i<hi)&&(nb<b.capacity); i++) {
+                    LifeStageInterface lhs = lhss[i];
+                    if (!(lhs.isActive()&&lhs.isAlive())) continue;
+                    long t0 = System.nanoTime();
+                    if (lhs instanceof BioenergeticsBatch.Batchable) {
+                        BioenergeticsBatch.Batchable blhs = (BioenergeticsBatch.Batchable) lhs;
+                        BioenergeticsInput in = blhs.beginStep(ctx);
+                        if (in!=null) {
+                            b.setInput(nb,in);
+                            idx[nb++] = i;
+                        } else {
+                            blhs.endStep(null);
+                        }
+                    } else if (lhs instanceof StepContext.Steppable) {
+                        ((StepContext.Steppable) lhs).step(ctx);
+                    } else {
+                        lhs.step(ctx.dt);
+                    }
+                    nanos[i] = Math.max(1,System.nanoTime()-t0);
+                    stepped[i] = true;
+                }
+                b.calculate(nb);
+                for (int j=0; j<nb; j++) {
+                    int k = idx[j];
+                    long t0 = System.nanoTime();
+                    b.getResult(j,out);
+                    ((BioenergeticsBatch.Batchable) lhss[k]).endStep(out);
+                    nanos[k] += b.nanos[j]+System.nanoTime()-t0;
+                }
+            }
+        }
+
+        /**
+         * Returns a batch for at least n individuals, reused by the calling thread.
+         */
+        private static BioenergeticsBatch batch(int n) {
+            BioenergeticsBatch b = BATCHES.get();
+            if ((b==null)||(b.capacity<n)) {
+                b = new BioenergeticsBatch(n);
+                BATCHES.set(b);
+            }
+            return b;
+        }
+    }
+}
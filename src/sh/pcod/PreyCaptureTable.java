@@ -0,0 +1,112 @@
+/**
+ * PreyCaptureTable.java
+ */
+
+package sh.pcod;
+
+/**
+ * Tabulated capture probability (pca) for the Fiksen and MacKenzie (2002)
+ * foraging calculations in IBMFunction_NonEggStageBIOENGrowthRateDW.
+ *
+ * In calculate(...), pca is estimated for larvae <= 17 mm by simulating 
+ * N_ENC encounters with MAX_ATS attacks each, every attack succeeding with a
+ * probability p that depends only on larval standard length and prey length
+ * (through the attack angle, which is a function of one uniform random number).
+ * The approach part of the simulation does not affect pca. The estimate is 
+ * min(1,X/N_ENC) with X ~ Binomial(N_ENC*MAX_ATS,p), so its expected value is 
+ * tabulated here: p is obtained by midpoint quadrature over the uniform random
+ * number, for each prey length bin and on a grid of standard lengths. Values 
+ * between grid lengths are interpolated linearly.
+ *
+ * Only prey length bins that larvae within the table can feed on (prey length 
+ * <= MAX_PREY_RATIO*MAX_LEN) are tabulated; covers(...) should be checked 
+ * before calling pca(...). The table is calculated when the class is first used.
+ */
+public final class PreyCaptureTable {
+
+    /** smallest standard length in the table (mm) */
+    public static final double MIN_LEN = 2.0;
+    /** largest standard length in the table (mm) */
+    public static final double MAX_LEN = 17.0;
+    /** standard length increment (mm) */
+    private static final double DLEN = 0.1;
+    /** number of standard lengths */
+    private static final int NUM_LENS = (int) Math.round((MAX_LEN-MIN_LEN)/DLEN)+1;
+    /** max prey length relative to larval length that is tabulated (0.08 is used in calculate) */
+    private static final double MAX_PREY_RATIO = 0.1;
+    /** number of quadrature nodes over the uniform random number */
+    private static final int NUM_NODES = 10000;
+
+    /** number of tabulated prey length bins */
+    private static final int numBins;
+    /** expected pca by prey length bin and standard length */
+    private static final double[][] pca;
+
+    static {
+        int n = 0;
+        while ((n<PreySizeSpectrum.NUM_SIZES)&&(PreySizeSpectrum.length(n)<=MAX_PREY_RATIO*MAX_LEN)) n++;
+        numBins = n;
+        double[] tetas = new double[NUM_NODES];
+        for (int j=0; j<NUM_NODES; j++) {
+            tetas[j] = IBMFunction_NonEggStageBIOENGrowthRateDW.attackAngle((j+0.5)/NUM_NODES);
+        }
+        pca = new double[numBins][NUM_LENS];
+        for (int l=0; l<NUM_LENS; l++) {
+            double std_len = MIN_LEN+l*DLEN;
+            double gape   = IBMFunction_NonEggStageBIOENGrowthRateDW.calcGape(std_len);
+            double c      = 0.5*gape;
+            double rs     = c + 0.1*std_len;
+            double x_star = 0.5*std_len;
+            double va     = IBMFunction_NonEggStageBIOENGrowthRateDW.SPEED_FISH*std_len;
+            for (int k=0; k<numBins; k++) {
+                double w = IBMFunction_NonEggStageBIOENGrowthRateDW.SPEED_PREY*PreySizeSpectrum.length(k);
+                int nc = 0;
+                for (int j=0; j<NUM_NODES; j++) {
+                    if (IBMFunction_NonEggStageBIOENGrowthRateDW.attackCaptures(tetas[j], gape, c, rs, x_star, w, va)) nc++;
+                }
+                pca[k][l] = expectedPCA(((double) nc)/NUM_NODES);
+            }
+        }
+    }
+
+    private PreyCaptureTable(){}
+
+    /**
+     * Returns true if pca(k,std_len) is tabulated.
+     * 
+     * @param k       - prey length bin index
+     * @param std_len - larval standard length (mm)
+     */
+    public static boolean covers(int k, double std_len) {
+        return (k<numBins)&&(std_len>=MIN_LEN)&&(std_len<=MAX_LEN);
+    }
+
+    /**
+     * Returns the expected capture probability for prey in length bin k.
+     * 
+     * @param k       - prey length bin index
+     * @param std_len - larval standard length (mm)
+     */
+    public static double pca(int k, double std_len) {
+        double u = (std_len-MIN_LEN)/DLEN;
+        int l = Math.min((int) u, NUM_LENS-2);
+        double f = u-l;
+        return pca[k][l]+f*(pca[k][l+1]-pca[k][l]);
+    }
+
+    /**
+     * Calculates E[min(1,X/N_ENC)] for X ~ Binomial(N_ENC*MAX_ATS,p).
+     */
+    private static double expectedPCA(double p) {
+        int n_enc = IBMFunction_NonEggStageBIOENGrowthRateDW.N_ENC;
+        int nt = n_enc*IBMFunction_NonEggStageBIOENGrowthRateDW.MAX_ATS;
+        double e = 0;
+        double binom = 1;//binomial coefficient (nt x)
+        for (int x=0; x<=nt; x++) {
+            if (x>0) binom *= ((double)(nt-x+1))/x;
+            double prob = binom*Math.pow(p,x)*Math.pow(1-p,nt-x);
+            e += Math.min(1.0, ((double) x)/n_enc)*prob;
+        }
+        return e;
+    }
+}
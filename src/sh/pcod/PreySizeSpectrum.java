@@ -0,0 +1,201 @@
+/**
+ * PreySizeSpectrum.java
+ */
+
+package sh.pcod;
+
+import java.util.Arrays;
+
+/**
+ * Immutable prey size-spectrum tables for the BIOEN foraging calculations in
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.
+ *
+ * The weights, areas and biomass fractions produced by
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.zooplankton(...) depend only on the
+ * (fixed) spectrum parameters of each prey taxon, so they are calculated once
+ * here and mapped onto the combined prey length vector. Only the abundance
+ * depends on the in situ carbon density; it is obtained from the tables by
+ * scaling (see abundance(...)).
+ *
+ * The order in which the length bins are visited by the foraging loop (by
+ * closeness of prey:larval length ratio to the preferred ratio) depends only on
+ * the larval standard length. It only changes at the lengths where two bins are
+ * equally distant from the preferred ratio, so one order is cached for each
+ * band between consecutive breakpoints (see preferenceOrder(...)).
+ */
+public final class PreySizeSpectrum {
+
+    /** index for euphausiids (offshore + shelf) */
+    public static final int EUP  = 0;
+    /** index for Neocalanus, shelf */
+    public static final int NCAS = 1;
+    /** index for Neocalanus, offshore */
+    public static final int NCAO = 2;
+    /** index for small copepods */
+    public static final int COP  = 3;
+    /** number of prey taxa */
+    public static final int NUM_TAXA = 4;
+
+    /** prey total length vector (mm) */
+    private static final double[] zoolen = {0.2, 0.4, 0.6, 0.8, 1, 1.2, 1.4, 1.6, 1.8, 2, 2.2, 2.4, 2.6, 2.8, 3, 6, 9, 12, 15, 18, 21, 24, 27, 30};
+    /** number of prey length bins */
+    public static final int NUM_SIZES = zoolen.length;
+
+    // spectrum parameters per prey taxon (see zooplankton(...) for sources)
+    private static final double[] par_a = {1.38E-8, 2.75E-12, 1E-10, 2.4E-8};
+    private static final double[] par_b = {2.92, 4.03, 3.56, 2.85};
+    private static final double[] min_len = {3000, 400, 200, 200}; // minimum length in um
+    private static final double[] dlen = {3000, 200, 200, 200}; // size bin in um
+    private static final int[] nsizes = {10, 14, 7, 7}; // n size categories
+
+    // length bins in zoolen occupied by each prey taxon
+    private static final int[][] zooInd = {
+        {0,0,0,0,0,0,0,0,0,0,0,0,0,0,1,1,1,1,1,1,1,1,1,1}, // for eup
+        {0,1,1,1,1,1,1,1,1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0}, // for ncas
+        {1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0}, // for ncao
+        {1,1,1,1,1,1,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0}  // for cop
+    };
+
+    /** flags indicating taxon is present in length bin */
+    private static final boolean[][] present  = new boolean[NUM_TAXA][NUM_SIZES];
+    /** prey weight (ug) by taxon and length bin */
+    private static final double[][]  weight   = new double[NUM_TAXA][NUM_SIZES];
+    /** prey area (mm^2) by taxon and length bin */
+    private static final double[][]  area     = new double[NUM_TAXA][NUM_SIZES];
+    /** fraction of taxon biomass by length bin */
+    private static final double[][]  fraction = new double[NUM_TAXA][NUM_SIZES];
+
+    static {
+        for (int pit=0; pit<NUM_TAXA; pit++) {
+            double[][] shape = IBMFunction_NonEggStageBIOENGrowthRateDW.zooplanktonShape(par_a[pit], par_b[pit], min_len[pit], dlen[pit], nsizes[pit]);
+            int sind = 0;
+            for (int psi=0; psi<NUM_SIZES; psi++) {
+                if (zooInd[pit][psi]==1) {
+                    present[pit][psi]  = true;
+                    weight[pit][psi]   = shape[1][sind];
+                    area[pit][psi]     = shape[2][sind];
+                    fraction[pit][psi] = shape[3][sind];
+                    sind += 1;
+                }
+            }
+        }
+    }
+
+    /** preferred prey:larval length ratio */
+    public static final double SIZE_PREF = 0.055;
+    /** relative distance to a breakpoint within which the order is calculated directly */
+    private static final double BREAK_TOL = 1.0E-9;
+
+    /** sorted standard lengths (mm) at which the preference order can change */
+    private static final double[] breakpoints;
+    /** preference order for each length band (index = number of breakpoints below) */
+    private static final int[][] bandOrder;
+
+    static {
+        //breakpoints: |z_j/L - p| = |z_k/L - p| => L = (z_j+z_k)/(2p)
+        double[] bps = new double[NUM_SIZES*(NUM_SIZES-1)/2];
+        int n = 0;
+        for (int j=0; j<NUM_SIZES; j++) {
+            for (int k=j+1; k<NUM_SIZES; k++) bps[n++] = (zoolen[j]+zoolen[k])/(2*SIZE_PREF);
+        }
+        Arrays.sort(bps);
+        int nu = 0;
+        for (int b=0; b<n; b++) {
+            if ((nu==0)||(bps[b]>bps[nu-1])) bps[nu++] = bps[b];
+        }
+        breakpoints = Arrays.copyOf(bps, nu);
+        //order at the midpoint of each band
+        bandOrder = new int[nu+1][];
+        bandOrder[0]  = calcPreferenceOrder(0.5*breakpoints[0]);
+        bandOrder[nu] = calcPreferenceOrder(2.0*breakpoints[nu-1]);
+        for (int b=1; b<nu; b++) {
+            bandOrder[b] = calcPreferenceOrder(0.5*(breakpoints[b-1]+breakpoints[b]));
+        }
+    }
+
+    private PreySizeSpectrum(){}
+
+    /**
+     * Returns the prey length (mm) for length bin k.
+     */
+    public static double length(int k) {
+        return zoolen[k];
+    }
+
+    /**
+     * Returns the prey weight (ug) for the taxon in length bin k (0 if not present).
+     */
+    public static double weight(int pit, int k) {
+        return weight[pit][k];
+    }
+
+    /**
+     * Returns the prey area (mm^2) for the taxon in length bin k (0 if not present).
+     */
+    public static double area(int pit, int k) {
+        return area[pit][k];
+    }
+
+    /**
+     * Converts a prey carbon density (mg C/m^3) to the prey dry weight density
+     * (ug/m^3) used by abundance(...). It is assumed that 40% of an individual is carbon.
+     */
+    public static double carbonToUg(double carbon) {
+        return (carbon*1000)*2.5;
+    }
+
+    /**
+     * Returns the prey abundance (no. ind/L) of the taxon in length bin k,
+     * or 0 if the taxon does not occupy the bin.
+     *
+     * @param pit    - prey taxon index
+     * @param k      - length bin index
+     * @param preyUg - prey density (ug/m^3) from carbonToUg(...)
+     */
+    public static double abundance(int pit, int k, double preyUg) {
+        if (!present[pit][k]) return 0;
+        return fraction[pit][k] * (preyUg/weight[pit][k])/1000;
+    }
+
+    /**
+     * Returns the length bin indices in order of preference (closest prey:larval
+     * length ratio to SIZE_PREF first) for a larva of the given standard length.
+     * 
+     * The returned array is shared and must not be modified.
+     * 
+     * @param std_len - larval standard length (mm)
+     * @return int[] - permutation of 0..NUM_SIZES-1
+     */
+    public static int[] preferenceOrder(double std_len) {
+        int b = Arrays.binarySearch(breakpoints, std_len);
+        if (b>=0) return calcPreferenceOrder(std_len);//exactly on a breakpoint
+        b = -b-1;//number of breakpoints below std_len
+        if (((b>0)&&(std_len-breakpoints[b-1]<=BREAK_TOL*std_len))||
+                ((b<breakpoints.length)&&(breakpoints[b]-std_len<=BREAK_TOL*std_len))) {
+            //too close to a breakpoint to trust the band order against rounding
+            return calcPreferenceOrder(std_len);
+        }
+        return bandOrder[b];
+    }
+
+    /**
+     * Calculates the preference order directly by a stable sort of the length
+     * bins on |length/std_len - SIZE_PREF|. Equally distant bins keep their
+     * original (increasing length) order.
+     */
+    private static int[] calcPreferenceOrder(double std_len) {
+        double[] diff = new double[NUM_SIZES];
+        int[] ord = new int[NUM_SIZES];
+        for (int k=0; k<NUM_SIZES; k++) {
+            diff[k] = Math.abs(zoolen[k]/std_len - SIZE_PREF);
+            //insertion sort
+            int j = k;
+            while ((j>0)&&(diff[ord[j-1]]>diff[k])) {
+                ord[j] = ord[j-1];
+                j--;
+            }
+            ord[j] = k;
+        }
+        return ord;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * SolarEphemeris.java
+ */
+
+package sh.pcod;
+
+import wts.models.utilities.DateTimeFunctions;
+
+/**
+ * Solar ephemeris shared by the non-egg life stages for diel vertical migration.
+ *
+ * The stages classify a position as day or night by comparing the solar zenith
+ * angle with 90.833 deg (the geometric zenith angle of the sun's upper limb at
+ * sunrise and sunset, with standard refraction), and otherwise only use the sign
+ * of 90.833-zenith. The zenith angle is given by
+ * DateTimeFunctions.computeSunriseSunset(lon,lat,time)[4] (see zenithExact(...)).
+ *
+ * Of the terms in the zenith angle, only the hour angle and latitude depend on
+ * the position: the solar declination and the equation of time depend only on
+ * the model time, which is the same for all individuals within a time step. The
+ * shared path calculates these terms here, once per model time, with the NOAA
+ * solar position equations (Meeus, Astronomical Algorithms, as in the NOAA solar
+ * calculator), and evaluates the geometric zenith angle (without refraction) at
+ * each individual's position from them, with the hour angle
+ *
+ *   (min UTC + equation of time (min) + 4*lon)/4 - 180 (deg), lon positive east.
+ *
+ * Nothing in this path depends on the layout, longitude convention or refraction
+ * handling of computeSunriseSunset's result. The model time has no year, so the
+ * terms are calculated for JD_REFERENCE, in the middle of a leap-year cycle; in
+ * other years the date of the equinoxes differs by up to about half a day, and
+ * the zenith angle by up to about 0.2 deg.
+ *
+ * computeSunriseSunset may differ from these terms by more than that (e.g. if it
+ * assumes another year or uses a lower-order series) and may correct its zenith
+ * angle for refraction (up to about 0.6 deg near the horizon). To leave the
+ * day/night classification unchanged, zenith(...) returns zenithExact(...) for
+ * positions whose geometric zenith angle is within HORIZON_BAND of 90.833 deg;
+ * as long as the difference is less than HORIZON_BAND, elsewhere it cannot change
+ * which side of the threshold the zenith angle is on. EquivalenceHarness checks
+ * the difference and the classification against zenithExact(...) over a
+ * lon/lat/time grid that includes sunrise and sunset.
+ */
+public final class SolarEphemeris {
+
+    /** solar zenith angle (deg) separating day from night in the stages */
+    public static final double HORIZON_ZENITH = 90.833;
+    /** half-width (deg) of the band around HORIZON_ZENITH in which zenith(...) uses zenithExact(...) */
+    public static final double HORIZON_BAND = 1.5;
+
+    /** Julian day of 0h UTC on 1 January of the year assumed for the day-of-year (2002) */
+    public static final double JD_REFERENCE = 2452275.5;
+
+    /** ephemeris terms for the current model time */
+    private static volatile Snapshot current = new Snapshot(Double.NaN);
+
+    private SolarEphemeris(){}
+
+    /**
+     * Returns the solar zenith angle (deg) at the given position and model time,
+     * evaluated from the shared ephemeris terms (or by zenithExact(...) near
+     * HORIZON_ZENITH).
+     *
+     * @param lon  - longitude (deg E)
+     * @param lat  - latitude (deg N)
+     * @param time - day-of-year (1-366, fractional part indicates time-of-day, UTC)
+     * @return solar zenith angle (deg)
+     */
+    public static double zenith(double lon, double lat, double time) {
+        return snapshot(time).zenith(lon,lat);
+    }
+
+    /**
+     * Returns the geometric solar zenith angle (deg) at the given position and
+     * model time, evaluated from the shared ephemeris terms only (without the
+     * fallback to zenithExact(...) near HORIZON_ZENITH).
+     *
+     * @param lon  - longitude (deg E)
+     * @param lat  - latitude (deg N)
+     * @param time - day-of-year (1-366, fractional part indicates time-of-day, UTC)
+     * @return solar zenith angle (deg)
+     */
+    public static double zenithApprox(double lon, double lat, double time) {
+        return snapshot(time).zenithApprox(lon,lat);
+    }
+
+    /**
+     * Returns the ephemeris terms for the given model time, calculating them
+     * if the model time has changed.
+     *
+     * @param time - day-of-year (1-366, fractional part indicates time-of-day, UTC)
+     * @return ephemeris terms
+     */
+    static Snapshot snapshot(double time) {
+        Snapshot s = current;
+        if (Double.compare(s.time,time)!=0) {
+            s = new Snapshot(time);
+            current = s;
+        }
+        return s;
+    }
+
+    /**
+     * Calculates the solar zenith angle (deg) at the given position and model time
+     * directly, as the stages did before the shared ephemeris was added.
+     *
+     * @param lon  - longitude (deg E)
+     * @param lat  - latitude (deg N)
+     * @param time - day-of-year (1-366, fractional part indicates time-of-day, UTC)
+     * @return solar zenith angle (deg)
+     */
+    public static double zenithExact(double lon, double lat, double time) {
+        return DateTimeFunctions.computeSunriseSunset(lon,lat,time)[4];
+    }
+
+    /**
+     * Ephemeris terms for one model time.
+     */
+    static final class Snapshot {
+        final double time;
+        /** time of day (min UTC from midnight) plus the equation of time (min) */
+        final double minutes;
+        /** sine of the solar declination angle */
+        final double sinDecl;
+        /** cosine of the solar declination angle */
+        final double cosDecl;
+
+        Snapshot(double time) {
+            this.time = time;
+            if (Double.isNaN(time)) {
+                minutes = sinDecl = cosDecl = Double.NaN;
+                return;
+            }
+            double day  = Math.floor(time);
+            double frac = time-day;
+            double T  = (JD_REFERENCE+(day-1.0)+frac-2451545.0)/36525.0;//Julian centuries since J2000
+            double L0 = Math.toRadians((280.46646+T*(36000.76983+T*0.0003032))%360.0);//mean longitude
+            double M  = Math.toRadians(357.52911+T*(35999.05029-0.0001537*T));//mean anomaly
+            double e  = 0.016708634-T*(0.000042037+0.0000001267*T);//orbital eccentricity
+            double C  = Math.sin(M)*(1.914602-T*(0.004817+0.000014*T))
+                        +Math.sin(2*M)*(0.019993-0.000101*T)+Math.sin(3*M)*0.000289;//equation of center (deg)
+            double om = Math.toRadians(125.04-1934.136*T);
+            double lambda = Math.toRadians(Math.toDegrees(L0)+C-0.00569-0.00478*Math.sin(om));//apparent longitude
+            double eps = Math.toRadians(23.0+(26.0+(21.448-T*(46.815+T*(0.00059-T*0.001813)))/60.0)/60.0
+                                        +0.00256*Math.cos(om));//corrected obliquity
+            double y  = Math.tan(eps/2);
+            y *= y;
+            double eqtime = 4.0*Math.toDegrees(y*Math.sin(2*L0)-2*e*Math.sin(M)+4*e*y*Math.sin(M)*Math.cos(2*L0)
+                                               -0.5*y*y*Math.sin(4*L0)-1.25*e*e*Math.sin(2*M));//min
+            double decl = Math.asin(Math.sin(eps)*Math.sin(lambda));//rad
+            minutes = frac*1440.0+eqtime;
+            sinDecl = Math.sin(decl);
+            cosDecl = Math.cos(decl);
+        }
+
+        /**
+         * Returns the solar zenith angle (deg) at the given position, using
+         * zenithExact(...) within HORIZON_BAND of HORIZON_ZENITH.
+         */
+        double zenith(double lon, double lat) {
+            double z = zenithApprox(lon,lat);
+            if (Math.abs(z-HORIZON_ZENITH)<HORIZON_BAND) return zenithExact(lon,lat,time);
+            return z;
+        }
+
+        /**
+         * Returns the geometric solar zenith angle (deg) at the given position.
+         */
+        double zenithApprox(double lon, double lat) {
+            double ha   = Math.toRadians((minutes+4.0*lon)/4.0-180.0);//hour angle
+            double rlat = Math.toRadians(lat);
+            double cz   = Math.sin(rlat)*sinDecl+Math.cos(rlat)*cosDecl*Math.cos(ha);
+            if (cz>1.0)  cz = 1.0;
+            if (cz<-1.0) cz = -1.0;
+            return Math.toDegrees(Math.acos(cz));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * SpatialOrder.java
+ */
+
+package sh.pcod;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import wts.models.DisMELS.framework.LifeStageInterface;
+import wts.roms.model.LagrangianParticle;
+
+/**
+ * Orders individuals along a space-filling curve through the ROMS grid, so that
+ * individuals stepped one after the other interpolate the ocean and prey fields
+ * (Interpolator3D) in neighbouring grid cells.
+ *
+ * The key of an individual is the Morton (Z-order) code of the grid cell given by
+ * its grid position, lp.getIJK(): the bits of the cell indices i, j and k are
+ * interleaved, so individuals in nearby cells have nearby keys. Sorting by the key
+ * replaces the random order of the population list (in which consecutive
+ * individuals read unrelated parts of the grid) by one in which they read nearby
+ * parts. Combined with ParallelStepper, which steps contiguous chunks of the list,
+ * each thread also works on a compact region of the grid.
+ *
+ * Stepping the individuals in a different order does not change their results
+ * (see ParallelStepper), only the order of the population list.
+ */
+public final class SpatialOrder {
+
+    /** number of bits per grid index in the key (3*BITS = 63 bits per key) */
+    public static final int BITS = 21;
+    /** mask for the bits of a grid index */
+    private static final long INDEX_MASK = (1L<<BITS)-1;
+    /** largest grid index represented in the key (one less than INDEX_MASK, so no key equals NO_KEY) */
+    private static final long MAX_INDEX = INDEX_MASK-1;
+    /** key of individuals that are inactive, dead or have no grid position (larger than any cell's key) */
+    public static final long NO_KEY = Long.MAX_VALUE;
+
+    private SpatialOrder(){}
+
+    /**
+     * Returns the Morton key of the grid cell containing the given grid position.
+     *
+     * @param ijk - grid position (i,j,k)
+     * @return key
+     */
+    public static long key(double[] ijk) {
+        return spread(index(ijk[0]))|(spread(index(ijk[1]))<<1)|(spread(index(ijk[2]))<<2);
+    }
+
+    /**
+     * Returns the key of an individual: the Morton key of its grid cell, or NO_KEY
+     * if it is inactive, dead or has no grid position.
+     *
+     * @param lhs - the individual
+     * @return key
+     */
+    public static long key(LifeStageInterface lhs) {
+        if (!(lhs.isActive()&&lhs.isAlive())) return NO_KEY;
+        LagrangianParticle lp = lhs.getLagrangianParticle();
+        if (lp==null) return NO_KEY;
+        double[] ijk = lp.getIJK();
+        if (ijk==null) return NO_KEY;
+        return key(ijk);
+    }
+
+    /**
+     * Sorts a list of individuals in place by their keys. The active, living
+     * individuals come first, in the order of their grid cells; the others follow,
+     * in their original order. Individuals in the same grid cell keep their
+     * original order.
+     *
+     * @param lhss - individuals, reordered
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends LifeStageInterface> void sort(List<T> lhss) {
+        int n = lhss.size();
+        final long[] keys = new long[n];
+        Integer[] idx = new Integer[n];
+        for (int i=0; i<n; i++) {
+            keys[i] = key(lhss.get(i));
+            idx[i]  = i;
+        }
+        Arrays.sort(idx,new Comparator<Integer>() {//stable
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(keys[a],keys[b]);
+            }
+        });
+        Object[] old = lhss.toArray();
+        for (int i=0; i<n; i++) lhss.set(i,(T) old[idx[i]]);
+    }
+
+    /**
+     * Returns the grid cell index for a grid coordinate, clamped to the range of the key.
+     */
+    private static long index(double x) {
+        if (!(x>0)) return 0;//also NaN
+        long i = (long) x;
+        return (i>MAX_INDEX) ? MAX_INDEX : i;
+    }
+
+    /**
+     * Spreads the lower 21 bits of x so that there are two zero bits between each.
+     */
+    private static long spread(long x) {
+        x &= INDEX_MASK;
+        x = (x|(x<<32))&0x001f00000000ffffL;
+        x = (x|(x<<16))&0x001f0000ff0000ffL;
+        x = (x|(x<<8)) &0x100f00f00f00f00fL;
+        x = (x|(x<<4)) &0x10c30c30c30c30c3L;
+        x = (x|(x<<2)) &0x1249249249249249L;
+        return x;
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * StepContext.java
+ */
+
+package sh.pcod;
+
+import wts.models.DisMELS.framework.GlobalInfo;
+import wts.models.utilities.CalendarIF;
+
+/**
+ * Immutable snapshot of the model time information for one time step, shared
+ * by all individuals stepped during that time step.
+ *
+ * The context holds the model time and year-day read from the framework calendar,
+ * the time step, the run seed and the solar ephemeris and surface light terms for
+ * the year-day (see SolarEphemeris and LightField), so the stages do not access
+ * the GlobalInfo calendar in step(...) and the per-step caches are tied to the
+ * time step rather than to whichever individual first sees a new time. The
+ * ephemeris and light terms are only computed when first used.
+ *
+ * A model driver (e.g. ParallelStepper) creates the context for a time step with
+ * create(dt) before stepping the individuals, reading the calendar once, and passes
+ * it to the individuals that accept it (see Steppable). When the framework steps
+ * the individuals itself through step(dt), they obtain the context from get(dt),
+ * which reads the model time from the calendar on every call and builds a new
+ * context only when the model time or time step has changed.
+ */
+public final class StepContext {
+
+    /** the last context built by get(...) */
+    private static volatile StepContext current = null;
+
+    /** model time (s) from the framework calendar */
+    public final long timeOffset;
+    /** day-of-year (1-366, fractional part indicates time-of-day) from the framework calendar */
+    public final double yearDay;
+    /** time step (s) */
+    public final double dt;
+    /** seed for the model run (see IndividualRandomStream) */
+    public final long runSeed;
+    /** solar ephemeris terms for yearDay (null until first used) */
+    private volatile SolarEphemeris.Snapshot solar = null;
+    /** surface light grid for yearDay (null until first used) */
+    private volatile LightField.Snapshot light = null;
+
+    private StepContext(long timeOffset, double yearDay, double dt) {
+        this.timeOffset = timeOffset;
+        this.yearDay    = yearDay;
+        this.dt         = dt;
+        runSeed = IndividualRandomStream.getRunSeed();
+    }
+
+    /**
+     * Creates the context for the current model time of the framework calendar.
+     *
+     * @param dt - time step (s)
+     * @return the context
+     */
+    public static StepContext create(double dt) {
+        CalendarIF cal = GlobalInfo.getInstance().getCalendar();
+        return new StepContext(cal.getTimeOffset(),cal.getYearDay(),dt);
+    }
+
+    /**
+     * Creates the context for the given model time.
+     *
+     * @param timeOffset - model time (s)
+     * @param yearDay    - day-of-year (1-366, fractional part indicates time-of-day)
+     * @param dt         - time step (s)
+     * @return the context
+     */
+    public static StepContext create(long timeOffset, double yearDay, double dt) {
+        return new StepContext(timeOffset,yearDay,dt);
+    }
+
+    /**
+     * Returns the context for the current model time of the framework calendar and
+     * the given time step: the last context returned, if neither has changed since,
+     * or a new one.
+     *
+     * @param dt - time step (s)
+     * @return the context
+     */
+    public static StepContext get(double dt) {
+        StepContext c = current;
+        CalendarIF cal = GlobalInfo.getInstance().getCalendar();
+        if ((c==null)||(c.timeOffset!=cal.getTimeOffset())||(Double.compare(c.dt,dt)!=0)) {
+            c = new StepContext(cal.getTimeOffset(),cal.getYearDay(),dt);
+            current = c;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the solar zenith angle (deg) at the given position, evaluated from
+     * the shared ephemeris terms (see SolarEphemeris.zenith(...)).
+     *
+     * @param lon - longitude (deg E)
+     * @param lat - latitude (deg N)
+     * @return solar zenith angle (deg)
+     */
+    public double zenith(double lon, double lat) {
+        SolarEphemeris.Snapshot s = solar;
+        if (s==null) solar = s = SolarEphemeris.snapshot(yearDay);//computing it twice is harmless
+        return s.zenith(lon,lat);
+    }
+
+    /**
+     * Calculates the solar zenith angle (deg) at the given position directly
+     * (see SolarEphemeris.zenithExact(...)).
+     *
+     * @param lon - longitude (deg E)
+     * @param lat - latitude (deg N)
+     * @return solar zenith angle (deg)
+     */
+    public double zenithExact(double lon, double lat) {
+        return SolarEphemeris.zenithExact(lon,lat,yearDay);
+    }
+
+    /**
+     * Returns the surface light (umol/m^2/s) at the given latitude, interpolated
+     * from the shared latitude grid.
+     *
+     * @param lat - latitude (deg N)
+     * @return surface light
+     */
+    public double surfaceLight(double lat) {
+        LightField.Snapshot l = light;
+        if (l==null) light = l = LightField.snapshot(yearDay);//computing it twice is harmless
+        return l.surfaceLight(lat);
+    }
+
+    /**
+     * Calculates the surface light (umol/m^2/s) at the given latitude directly
+     * (see LightField.surfaceLightExact(...)).
+     *
+     * @param lat - latitude (deg N)
+     * @return surface light
+     */
+    public double surfaceLightExact(double lat) {
+        return LightField.surfaceLightExact(lat,yearDay);
+    }
+
+    /**
+     * Interface for individuals that can be stepped with an explicit context, so a
+     * model driver that creates the context once per time step (see create(dt))
+     * spares them the calendar access of get(dt).
+     */
+    public interface Steppable {
+        /**
+         * Steps the individual forward by the time step of the context, as step(ctx.dt)
+         * would with the context for the current model time.
+         *
+         * @param ctx - time information for this time step
+         */
+        void step(StepContext ctx);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * StepCost.java
+ */
+
+package sh.pcod;
+
+import wts.models.DisMELS.framework.LifeStageInterface;
+
+/**
+ * Relative costs of stepping the Pacific cod life stages, used by ParallelStepper
+ * to balance the work between threads.
+ *
+ * The cost of step(dt) differs by orders of magnitude between individuals: an egg
+ * is moved and its development advanced by a few function calls, while a larva
+ * using the BIOEN growth function runs the prey spectrum and foraging loops when
+ * there is light, and also the Monte-Carlo capture loop for each prey item when
+ * its SL is at most 17 mm (see IBMFunction_NonEggStageBIOENGrowthRateDW). In the
+ * dark, the BIOEN calculation returns before the foraging loops.
+ *
+ * The costs are in arbitrary units (the cost of stepping a larva that does not
+ * use the BIOEN growth function). They only need to be roughly proportional to
+ * the time taken by step(dt): ParallelStepper calibrates them against the times
+ * measured during the previous time step.
+ */
+public final class StepCost {
+
+    /** cost of stepping an egg */
+    public static final double EGG = 0.5;
+    /** cost of stepping a larva or juvenile that does not use the BIOEN growth function */
+    public static final double BASE = 1.0;
+    /** cost of stepping an individual using the BIOEN growth function in the dark */
+    public static final double BIOEN_DARK = 1.5;
+    /** cost of stepping an individual using the BIOEN growth function, with light and SL > 17 mm */
+    public static final double BIOEN_LARGE = 10.0;
+    /** cost of stepping an individual using the BIOEN growth function, with light and SL <= 17 mm */
+    public static final double BIOEN_SMALL = 100.0;
+    /** SL (mm) above which the capture loop is skipped */
+    public static final double SL_CAPTURE = 17.0;
+
+    private StepCost(){}
+
+    /**
+     * Returns the relative cost of stepping an individual using the BIOEN
+     * growth function.
+     *
+     * @param dark    - flag indicating the individual is in the dark (see IBMFunction_NonEggStageBIOENGrowthRateDW.EB_DARK)
+     * @param std_len - standard length (mm)
+     * @return relative cost
+     */
+    public static double bioen(boolean dark, double std_len) {
+        if (dark) return BIOEN_DARK;
+        return (std_len<=SL_CAPTURE) ? BIOEN_SMALL : BIOEN_LARGE;
+    }
+
+    /**
+     * Returns the relative cost of the next step of an individual: its own
+     * estimate, if it provides one, or BASE.
+     *
+     * @param lhs - the individual
+     * @return relative cost
+     */
+    public static double estimate(LifeStageInterface lhs) {
+        if (lhs instanceof Estimable) return ((Estimable) lhs).estimateStepCost();
+        return BASE;
+    }
+
+    /**
+     * Interface for individuals that estimate the relative cost of their next step.
+     */
+    public interface Estimable {
+        /**
+         * Estimates the relative cost (see StepCost) of the next call to step(dt),
+         * from the individual's current state. This is called between steps and
+         * must not modify the individual.
+         *
+         * @return relative cost
+         */
+        double estimateStepCost();
+    }
+}
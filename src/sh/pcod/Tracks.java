@@ -0,0 +1,33 @@
+/**
+ * Tracks.java
+ */
+
+package sh.pcod;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import java.util.List;
+
+/**
+ * Utility methods for the position tracks kept by the Pacific cod stages.
+ *
+ * The tracks (and their serialization in getTrackAsString(...)) belong to the
+ * DisMELS framework class AbstractLHS, and grow by one position every time step.
+ * When a stage writes track segments, it trims its tracks after each report
+ * using keepLast(...), so the next report contains only the positions since
+ * the last one (starting from the last reported position) and the tracks
+ * never hold more than one output interval's positions.
+ */
+public final class Tracks {
+
+    private Tracks(){}
+
+    /**
+     * Removes all but the last position from a track.
+     *
+     * @param track - track, modified
+     */
+    public static void keepLast(List<Coordinate> track) {
+        int n = track.size();
+        if (n>1) track.subList(0,n-1).clear();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * TypedFunctions.java
+ */
+
+package sh.pcod;
+
+import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
+
+/**
+ * Typed, unboxed entry points to the IBM functions of one or two double
+ * arguments that return a double (growth rates, stage durations, swimming
+ * speeds, etc.).
+ *
+ * IBMFunctionInterface.calculate(Object) boxes its arguments and result, so a
+ * stage calling it every step allocates a Double (and for two arguments, fills
+ * a Double[]) per call. The functions defined in this module also implement
+ * Unary or Binary, and the stages call them through value(...), which uses the
+ * typed method when the selected function provides one and calculate(Object)
+ * otherwise (e.g. for functions defined in the DisMELS framework).
+ */
+public final class TypedFunctions {
+
+    private TypedFunctions(){}
+
+    /**
+     * Interface for IBM functions of one double argument.
+     */
+    public interface Unary {
+        /**
+         * Calculates the function value, as calculate(Object) does for a Double argument.
+         *
+         * @param x - argument
+         * @return function value
+         */
+        double calculate(double x);
+    }
+
+    /**
+     * Interface for IBM functions of two double arguments.
+     */
+    public interface Binary {
+        /**
+         * Calculates the function value, as calculate(Object) does for a Double[]{x,y} argument.
+         *
+         * @param x - first argument
+         * @param y - second argument
+         * @return function value
+         */
+        double calculate(double x, double y);
+    }
+
+    /**
+     * Returns the value of a function of one argument.
+     *
+     * @param f - the function
+     * @param x - argument
+     * @return function value
+     */
+    public static double value(IBMFunctionInterface f, double x) {
+        if (f instanceof Unary) return ((Unary) f).calculate(x);
+        return (Double) f.calculate(x);
+    }
+
+    /**
+     * Returns the value of a function of two arguments.
+     *
+     * @param f    - the function
+     * @param x    - first argument
+     * @param y    - second argument
+     * @param args - reusable argument array, used if f is not Binary
+     * @return function value
+     */
+    public static double value(IBMFunctionInterface f, double x, double y, Double[] args) {
+        if (f instanceof Binary) return ((Binary) f).calculate(x,y);
+        args[0] = x;
+        args[1] = y;
+        return (Double) f.calculate(args);
+    }
+}
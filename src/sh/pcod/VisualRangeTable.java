@@ -0,0 +1,99 @@
+/**
+ * VisualRangeTable.java
+ */
+
+package sh.pcod;
+
+/**
+ * Tabulated solution of the visual range equation solved iteratively by
+ * IBMFunction_NonEggStageBIOENGrowthRateDW.getr(...) (Aksnes and Giske 1993;
+ * Aksnes and Utne 1997).
+ *
+ * The equation r^2*exp(c*r) = |c0|*ap*vc*eb/(ke+eb) = A can be written as
+ * r = sqrt(A)*g(x), with x = c*sqrt(A)/2 and g(x) = W(x)/x, where W is the
+ * (principal branch of the) Lambert W function. So the visual range only 
+ * depends on the inputs through sqrt(A) and the single scaled variable x, and 
+ * g is tabulated once on a grid that is uniform in log(x). Between grid points 
+ * g is interpolated linearly in log(x). Below the table range a series 
+ * expansion of g is used, and above it (or for non-physical inputs) the 
+ * iterative solver is called.
+ * 
+ * Accuracy (measured over 2E6 random inputs spanning the ranges used by the 
+ * foraging loop and TotalMortality): the relative error in the visual range r 
+ * is at most 3.3E-7 with respect to the exact solution. The iterative solver 
+ * stops at a relative step of 1E-4 and differs from the exact solution by up 
+ * to 4.7E-4, so the table and the solver differ by up to 4.7E-4 in r. This 
+ * bound applies to the visual range only; its effect on the BIOEN outputs 
+ * (up to 3.3E-5 relative in ingestion) and on the fish predation mortality
+ * (up to 2.7E-5) is reported by EquivalenceHarness.
+ */
+public final class VisualRangeTable {
+
+    /** smallest x in the table */
+    private static final double XMIN = 1.0E-4;
+    /** largest x in the table */
+    private static final double XMAX = 1.0E+4;
+    /** number of grid points */
+    private static final int NUM_PTS = 8192;
+
+    private static final double LOG_XMIN = Math.log(XMIN);
+    /** grid spacing in log(x) */
+    private static final double DLOGX = (Math.log(XMAX)-LOG_XMIN)/(NUM_PTS-1);
+    /** g(x) = W(x)/x at the grid points */
+    private static final double[] g = new double[NUM_PTS];
+
+    static {
+        for (int i=0; i<NUM_PTS; i++) {
+            double x = Math.exp(LOG_XMIN+i*DLOGX);
+            g[i] = lambertW(x)/x;
+        }
+    }
+
+    private VisualRangeTable(){}
+
+    /**
+     * Calculates the visual range. Inputs are as for 
+     * IBMFunction_NonEggStageBIOENGrowthRateDW.getr(...), without the start 
+     * value and error flag.
+     * 
+     * @param c  - beam attenuation coefficient (m-1)
+     * @param c0 - prey inherent contrast (d.l.)
+     * @param ap - prey area (m^2)
+     * @param vc - parameter characterising visual capacity (d.l.)
+     * @param ke - saturation parameter 
+     * @param eb - background irradiance at depth
+     * 
+     * @return the visual range r (m)
+     */
+    public static double getr(double c, double c0, double ap, double vc, double ke, double eb) {
+        double sqrtA = Math.sqrt(Math.abs(c0)*ap*vc*(eb/(ke+eb)));
+        double x = 0.5*c*sqrtA;
+        if ((x>=0)&&(x<XMIN)) {
+            //W(x)/x = 1 - x + 3/2 x^2 - 8/3 x^3 + ...
+            return sqrtA*(1 - x*(1 - x*(1.5 - x*8.0/3.0)));
+        }
+        double u = (Math.log(x)-LOG_XMIN)/DLOGX;
+        if ((u>=0)&&(u<NUM_PTS-1)) {
+            int i = (int) u;
+            double f = u-i;
+            return sqrtA*(g[i]+f*(g[i+1]-g[i]));
+        }
+        //outside table (or NaN): use exact solver
+        return IBMFunction_NonEggStageBIOENGrowthRateDW.getr(0, c, c0, ap, vc, ke, eb, 0)[1];
+    }
+
+    /**
+     * Principal branch of the Lambert W function for x >= 0, by Halley iteration.
+     */
+    static double lambertW(double x) {
+        double w = Math.log1p(x);
+        for (int i=0; i<50; i++) {
+            double ew = Math.exp(w);
+            double f = w*ew - x;
+            double dw = f/(ew*(w+1) - (w+2)*f/(2*w+2));
+            w -= dw;
+            if (Math.abs(dw)<=1.0E-15*(1+Math.abs(w))) break;
+        }
+        return w;
+    }
+}
@@ -7,6 +7,7 @@ package sh.pcod.YSLStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMMortalityFunctionInterface;
@@ -23,7 +24,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMMortalityFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_YSL_PNR extends AbstractIBMFunction implements IBMMortalityFunctionInterface {
+public class IBMFunction_YSL_PNR extends AbstractIBMFunction implements IBMMortalityFunctionInterface, TypedFunctions.Unary {
     public static final String DEFAULT_type = "Mortality";
     /** user-friendly function name */
     public static final String DEFAULT_name = "time to point-of-no return in days for Pacific cod YSL";
@@ -83,8 +84,20 @@ public class IBMFunction_YSL_PNR extends AbstractIBMFunction implements IBMMorta
     @Override
     public Object calculate(Object o) {
         double t = (Double) o;
+        return (Double) calculate(t);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * 
+     * @return time to point-of-no return (in days)
+     */
+    @Override
+    public double calculate(double t) {
         double PNR = 34.67 * Math.exp(-0.126 * t);
-        return (Double) PNR;
+        return PNR;
     }
     
 }
@@ -7,6 +7,7 @@ package sh.pcod.YSLStage;
 
 import org.openide.util.lookup.ServiceProvider;
 import org.openide.util.lookup.ServiceProviders;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.framework.IBMFunctions.AbstractIBMFunction;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
 import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
@@ -23,7 +24,7 @@ import wts.models.DisMELS.framework.IBMFunctions.IBMGrowthFunctionInterface;
     @ServiceProvider(service=IBMFunctionInterface.class)}
 )
 
-public class IBMFunction_YSL_YSA extends AbstractIBMFunction implements IBMGrowthFunctionInterface {
+public class IBMFunction_YSL_YSA extends AbstractIBMFunction implements IBMGrowthFunctionInterface, TypedFunctions.Unary {
     public static final String DEFAULT_type = "Growth";
     /** user-friendly function name */
     public static final String DEFAULT_name = "time to yolk-sac absorption (in days) for Pacific cod YSL";
@@ -83,8 +84,20 @@ public class IBMFunction_YSL_YSA extends AbstractIBMFunction implements IBMGrowt
     @Override
     public Object calculate(Object o) {
         double t = (Double) o;
+        return (Double) calculate(t);
+    }
+    
+    /**
+     * Unboxed version of calculate(Object) (see TypedFunctions).
+     * 
+     * @param t - in situ temperature in deg C
+     * 
+     * @return time to yolk-sac absorption (in days)
+     */
+    @Override
+    public double calculate(double t) {
         double YSA = 14.7662 * Math.exp(-0.235 * t);
-        return (Double) YSA;
+        return YSA;
     }
     
 }
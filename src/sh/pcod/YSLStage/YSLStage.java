@@ -28,14 +28,23 @@ import sh.pcod.EggStage.EggStageAttributes;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageBIOENGrowthRateDW;
 import sh.pcod.IBMFunction_NonEggStageSTDGrowthRateSL;
+import sh.pcod.BioenergeticsBatch;
+import sh.pcod.BioenergeticsInput;
+import sh.pcod.BioenergeticsResult;
+import sh.pcod.EnvSample;
+import sh.pcod.EnvSampler;
+import sh.pcod.EventLog;
+import sh.pcod.IndividualRandomStream;
+import sh.pcod.StepContext;
+import sh.pcod.StepCost;
+import sh.pcod.Tracks;
+import sh.pcod.TypedFunctions;
 import wts.models.DisMELS.IBMFunctions.Mortality.ConstantMortalityRate;
 import wts.models.DisMELS.IBMFunctions.Mortality.InversePowerLawMortalityRate;
 import wts.models.DisMELS.IBMFunctions.Movement.DielVerticalMigration_FixedDepthRanges;
 import wts.models.DisMELS.IBMFunctions.SwimmingBehavior.ConstantMovementRateFunction;
 import wts.models.DisMELS.framework.*;
 import wts.models.DisMELS.framework.IBMFunctions.IBMFunctionInterface;
-import wts.models.utilities.CalendarIF;
-import wts.models.utilities.DateTimeFunctions;
 import wts.roms.model.Interpolator3D;
 import wts.roms.model.LagrangianParticle;
 
@@ -46,15 +55,12 @@ import wts.roms.model.LagrangianParticle;
  * @author Sarah Hinckley
  */
 @ServiceProvider(service=LifeStageInterface.class)
-public class YSLStage extends AbstractLHS {
-    
-    /** flag to use Sarah's approach to first feeding */
-    public static boolean useFirstFeedingSH = true;//TODO: should be a parameter?
+public class YSLStage extends AbstractLHS implements StepCost.Estimable, BioenergeticsBatch.Batchable {
     
         //Static fields    
             //  Static fields new to this class
     /* flag to do debug operations */
-    public static boolean debug = false;
+    public static volatile boolean debug = false;
     /* Class for attributes SH_NEW */
     public static final String attributesClass = 
             sh.pcod.YSLStage.YSLStageAttributes.class.getName();
@@ -113,6 +119,12 @@ public class YSLStage extends AbstractLHS {
     protected double  minStageSize;
     protected double  stageTransRate;
     protected boolean useRandomTransitions;
+    protected boolean useTabulatedVisualRange;
+    protected boolean useTabulatedCapture;
+    protected boolean useLightField;
+    protected boolean useSolarEphemeris;
+    protected boolean useCarryOver;
+    protected boolean writeTrackSegments;
     
         //fields that reflect (new) attribute values
     /** flag indicating individual is attached to bottom */
@@ -184,7 +196,7 @@ public class YSLStage extends AbstractLHS {
     protected double ageYSA; //age at which yolk-sac absorption occurred
     
     //initialized values
-    protected final double rndFeed = Math.random(); //random value of cumulative probability at which feeding occurs
+    protected double rndFeed = -1.0; //random value of cumulative probability at which feeding occurs (drawn when first needed)
     protected double  prFeed       = 0.0;   //cumulative probability with time of first feeding (Sarah's approach)
     protected double  prNotFed     = 1.0;   //cumulative probability of NOT having fed
     protected double  indivCopWgt  = 1.0e-6;//typical weight for individual small copepod (kg)
@@ -197,6 +209,46 @@ public class YSLStage extends AbstractLHS {
     private IBMFunctionInterface fcnGrSL = null; 
     /** IBM function selected for growth in DW */
     private IBMFunctionInterface fcnGrDW = null; 
+    /** BIOEN growth function (same object as fcnGrDW), if selected */
+    private IBMFunction_NonEggStageBIOENGrowthRateDW fcnBioen = null; 
+    /** reusable input for the BIOEN growth function */
+    private BioenergeticsInput bioenIn = new BioenergeticsInput();
+    /** reusable result from the BIOEN growth function */
+    private BioenergeticsResult bioenOut = new BioenergeticsResult();
+    /** flag indicating the attributes are out of date with the instance fields (see getAttributes()) */
+    private boolean attsDirty = false;
+    /** reusable sample of the environment at the individual's position */
+    private EnvSample env = new EnvSample();
+    /** reusable buffer for the light calculations (K parameter and second part of Eb equation) */
+    private double[] eb2 = new double[2];
+    /** reusable buffer for the mortality calculations */
+    private double[] mortOut = new double[5];
+    /** reusable argument array for two-argument IBMFunctions (see TypedFunctions.value(...)) */
+    private Double[] args2 = new Double[2];
+    /** reusable argument array for fcnVM (see argsVM(...)) */
+    private double[] vmArgs = new double[5];
+    /** reusable argument array for fcnVV */
+    private double[] argsVV = new double[1];
+    /** reusable result array for calcUV(...) */
+    private double[] uv = new double[2];
+    /** position at the start of the time step, at which prey fields are sampled */
+    private double[] preyPos = new double[3];
+    /** flag indicating prey fields at preyPos have not been sampled yet */
+    private boolean preyPending = false;
+    /** random number stream for this individual */
+    private IndividualRandomStream rnd = null;
+    /** time information for the current time step */
+    private StepContext ctx = null;
+    /** position at the end of the current step (set by beginStep(...)) */
+    private double[] stepPos = null;
+    /** temperature (deg C) at the end position of the current step (set by beginStep(...)) */
+    private double stepT1 = 0;
+    /** dry weight (mg) at the start of the current step (set by beginStep(...)) */
+    private double stepOldDryWgt = 0;
+    /** standard length (mm) at the start of the current step (set by beginStep(...)) */
+    private double stepOldStdLen = 0;
+    /** light at depth in the current step (set by beginStep(...)) */
+    private double stepEb = 0;
     /** IBM function selected for vertical movement */
     private IBMFunctionInterface fcnVM = null; 
     /** IBM function selected for vertical velocity */
@@ -326,6 +378,11 @@ public class YSLStage extends AbstractLHS {
      */
     @Override
     public YSLStageAttributes getAttributes() {
+        if (attsDirty) {
+            //attributes are only updated when needed (see updatePreyFields() for when prey fields can be sampled)
+            updatePreyFields();
+            updateAttributes();
+        }
         return atts;
     }
 
@@ -432,6 +489,7 @@ public class YSLStage extends AbstractLHS {
             atts.setValue(YSLStageAttributes.PROP_eps,eps);  
             atts.setValue(YSLStageAttributes.PROP_eb,eb);   
             atts.setValue(YSLStageAttributes.PROP_ebtwozero,ebtwozero);    
+            atts.setValue(YSLStageAttributes.PROP_rngDraws,0.0);    
             //set the following attributes to initial values 
             atts.setValue(YSLStageAttributes.PROP_progYSA,progYSA);
             atts.setValue(YSLStageAttributes.PROP_progPNR,progPNR);
@@ -553,6 +611,7 @@ public class YSLStage extends AbstractLHS {
             fcnMortality = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_Mortality);
             fcnGrSL = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_GrowthSL);
             fcnGrDW = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_GrowthDW);
+            fcnBioen = (fcnGrDW instanceof IBMFunction_NonEggStageBIOENGrowthRateDW) ? (IBMFunction_NonEggStageBIOENGrowthRateDW) fcnGrDW : null;
             fcnVM   = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_VerticalMovement);
             fcnVV   = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_VerticalVelocity);
             fcnPNR  = params.getSelectedIBMFunctionForCategory(YSLStageParameters.FCAT_PNR);
@@ -606,6 +665,18 @@ public class YSLStage extends AbstractLHS {
                 params.getValue(YSLStageParameters.PARAM_maxStageDuration,maxStageDuration);
         useRandomTransitions = 
                 params.getValue(YSLStageParameters.PARAM_useRandomTransitions,true);
+        useTabulatedVisualRange = 
+                params.getValue(YSLStageParameters.PARAM_useTabulatedVisualRange,false);
+        useTabulatedCapture = 
+                params.getValue(YSLStageParameters.PARAM_useTabulatedCapture,false);
+        useLightField = 
+                params.getValue(YSLStageParameters.PARAM_useLightField,false);
+        useSolarEphemeris = 
+                params.getValue(YSLStageParameters.PARAM_useSolarEphemeris,false);
+        useCarryOver = 
+                params.getValue(YSLStageParameters.PARAM_useCarryOver,false);
+        writeTrackSegments = 
+                params.getValue(YSLStageParameters.PARAM_writeTrackSegments,false);
     }
     
     /**
@@ -618,12 +689,22 @@ public class YSLStage extends AbstractLHS {
         YSLStage clone = null;
         try {
             clone = (YSLStage) super.clone();
-            clone.setAttributes(atts);//this clones atts
+            clone.setAttributes(getAttributes());//this clones atts
             clone.updateVariables();  //this sets the variables in the clone to the attribute values
             clone.setParameters(params);//this clones params
             clone.lp      = (LagrangianParticle) lp.clone();
             clone.track   = (ArrayList<Coordinate>) track.clone();
             clone.trackLL = (ArrayList<Coordinate>) trackLL.clone();
+            clone.bioenIn  = new BioenergeticsInput();
+            clone.bioenOut = new BioenergeticsResult();
+            clone.env      = new EnvSample();
+            clone.eb2      = new double[2];
+            clone.mortOut  = new double[5];
+            clone.args2    = new Double[2];
+            clone.vmArgs   = new double[5];
+            clone.argsVV   = new double[1];
+            clone.uv       = new double[2];
+            clone.preyPos  = preyPos.clone();
         } catch (CloneNotSupportedException ex) {
             ex.printStackTrace();
         }
@@ -632,9 +713,12 @@ public class YSLStage extends AbstractLHS {
     }
 
     /**
+     * Returns the individuals this one metamorphoses into during this time step.
+     * 
+     * Thread safety: see ParallelStepper.
      *
      * @param dt - time step in seconds
-     * @return
+     * @return list of metamorphosed individuals (may be empty)
      */
     @Override
     public List<LifeStageInterface> getMetamorphosedIndividuals(double dt) {
@@ -693,8 +777,14 @@ public class YSLStage extends AbstractLHS {
     
     @Override
     public String getReport() {
+        updatePreyFields();//prey fields are not sampled before feeding starts
         updateAttributes();//make sure attributes are up to date
         atts.setValue(atts.PROP_track, getTrackAsString(COORDINATE_TYPE_GEOGRAPHIC));//
+        if (writeTrackSegments) {
+            //the next report starts from the last reported position
+            Tracks.keepLast(track);
+            Tracks.keepLast(trackLL);
+        }
         return atts.getCSV();
     }
 
@@ -723,7 +813,6 @@ public class YSLStage extends AbstractLHS {
         zPos       = atts.getValue(YSLStageAttributes.PROP_vertPos,zPos);
         time       = startTime;
         numTrans   = 0.0; //set numTrans to zero
-        logger.info(hType+cc+vType+cc+startTime+cc+xPos+cc+yPos+cc+zPos);
         if (i3d!=null) {
             double[] IJ = new double[] {xPos,yPos};
             if (hType==Types.HORIZ_XY) {
@@ -733,7 +822,8 @@ public class YSLStage extends AbstractLHS {
                 IJ = i3d.getGrid().computeIJfromLL(yPos,xPos);
             }
             double z = i3d.interpolateBathymetricDepth(IJ);
-            logger.info("Bathymetric depth = "+z);
+            if (EventLog.isEnabled(EventLog.EVENT_INITIALIZE))
+                EventLog.record(EventLog.EVENT_INITIALIZE,id,startTime,hType,vType,xPos,yPos,zPos,z);
             double ssh = i3d.interpolateSSH(IJ);
 
             double K = 0;  //set K = 0 (at bottom) as default
@@ -768,40 +858,79 @@ public class YSLStage extends AbstractLHS {
             updateAttributes(); 
         }
     }
-    
+
+    /**
+     * Estimates the relative cost of the next step (see StepCost) from the DW growth
+     * function, yolk-sac absorption and the light level and SL in the last step.
+     * 
+     * @return relative cost
+     */
+    @Override
+    public double estimateStepCost() {
+        if ((typeGrDW!=YSLStageParameters.FCN_GrDW_NonEggStageBIOENGrowthRate)||(progYSA<1.0)) return StepCost.BASE;
+        return StepCost.bioen(eb*1E-15<IBMFunction_NonEggStageBIOENGrowthRateDW.EB_DARK,std_len);
+    }
+
+    /**
+     * Steps the individual forward by dt, with the time information for the
+     * current model time (see StepContext.get(dt)).
+     * 
+     * @param dt - time step in seconds
+     * @throws ArrayIndexOutOfBoundsException
+     */
     @Override
     public void step(double dt) throws ArrayIndexOutOfBoundsException {
+        step(StepContext.get(dt));
+    }
+
+    /**
+     * Steps the individual forward by the time step of ctx.
+     * 
+     * Thread safety: see ParallelStepper.
+     * 
+     * @param ctx - time information for this time step
+     * @throws ArrayIndexOutOfBoundsException
+     */
+    @Override
+    public void step(StepContext ctx) throws ArrayIndexOutOfBoundsException {
+        BioenergeticsInput in = beginStep(ctx);
+        if (in!=null) fcnBioen.calculate(in,bioenOut);
+        endStep((in!=null) ? bioenOut : null);
+    }
+
+    /**
+     * Runs the part of step(ctx) before the BIOEN calculation: movement, light,
+     * yolk-sac development and the growth functions other than BIOEN.
+     * 
+     * @param ctx - time information for this time step
+     * @return the input for the BIOEN calculation, or null if it is not used in this step
+     * @throws ArrayIndexOutOfBoundsException
+     */
+    @Override
+    public BioenergeticsInput beginStep(StepContext ctx) throws ArrayIndexOutOfBoundsException {
+        this.ctx = ctx;
+        double dt = ctx.dt;//time step in seconds
         //WTS_NEW 2012-07-26:{
         double[] pos = lp.getIJK();
-        double[] pos2d = new double[2];
-        pos2d[0] = pos[0];
-        pos2d[1] = pos[1];
-        double T0 = i3d.interpolateTemperature(pos);
+        boolean carried = useCarryOver && EnvSampler.isCarriedOver(i3d,pos,env);//env holds the end-of-step sample at pos
+        double T0 = carried ? env.temperature : i3d.interpolateTemperature(pos);
         
       //SH-Prey Stuff  
-        copepods    = i3d.interpolateValue(pos,Cop,Interpolator3D.INTERP_VAL);
-        euphausiids = i3d.interpolateValue(pos,Eup,Interpolator3D.INTERP_VAL);
-        euphausiidsShelf = i3d.interpolateValue(pos,EupS,Interpolator3D.INTERP_VAL);
-        double euphausiids_tot = euphausiids + euphausiidsShelf;
-        neocalanus  = i3d.interpolateValue(pos,NCa,Interpolator3D.INTERP_VAL);
-        neocalanusShelf  = i3d.interpolateValue(pos,NCaS,Interpolator3D.INTERP_VAL);
-        double phytoL = i3d.interpolateValue(pos,PhL,Interpolator3D.INTERP_VAL);
-        double phytoS = i3d.interpolateValue(pos,PhS,Interpolator3D.INTERP_VAL);
-        double tauX = i3d.interpolateValue(pos2d,Su,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
-        double tauY = i3d.interpolateValue(pos2d,Sv,Interpolator3D.INTERP_VAL); // 3D interpolator but should use 2D internally
+        //prey and wind are only needed once feeding starts: sampled by updatePreyFields()
+        EnvSampler.samplePhytoplankton(i3d,pos,env);
+        System.arraycopy(pos,0,preyPos,0,preyPos.length);
+        preyPending = true;
+        double phytoL = env.phytoL;
+        double phytoS = env.phytoS;
         double chlorophyll = (phytoL/25) + (phytoS/65); // calculate chlorophyll (mg/m^-3) 
         // values 25 and 65 based on Kearney et al 2018 Table A4        
         microzoo = 0; // not important
-        pCO2val  = i3d.interpolateValue(pos,pCO2,Interpolator3D.INTERP_VAL);
+        pCO2val  = env.pCO2;
         //calculate pco2 factor:
         double facCO2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcCO2(pCO2val);
 
         // Delete negative (imposible) values:
         if(chlorophyll<0.0) chlorophyll=0; 
-        if(copepods<0.0) copepods=0; 
-        if(euphausiids_tot<0.0) euphausiids_tot=0; 
-        if(neocalanus<0.0) neocalanus=0; 
-        if(neocalanusShelf<0.0) neocalanusShelf=0; 
 
 
         double[] res = calcW(pos,dt);//calc w and attached indicator
@@ -845,34 +974,26 @@ public class YSLStage extends AbstractLHS {
         time += dt;
         double dtday = dt/86400;//bio model timestep in days
 
-        // Create objects for output of BIOEN:
-        Double[] bioEN_output = null; // output object of BIOEN calculation
         double gr_mg_fac = 0; // factor to avoid dry_wgt in IF 
         double grRate = 0;
         double meta = 0;
-        double metamax = 0;
-        double grDWmax = 0;
-        double activityCostmax = 0;
         double sum_ing = 0;
-        double assi = 0;
         double costRateOfMetabolism = 0.5; // check this number
         double activityCost = 0;
         double old_dry_wgt = dry_wgt; // save previous dry_wgt
         double old_std_len = std_len;
+        stepOldDryWgt = old_dry_wgt;
+        stepOldStdLen = old_std_len;
         // Light (begin):
         // create object for light calculation:
-        double[] eb2 = new double[2]; // K parameter and second part of Eb equation
-        double[] ltemp = new double[3];
-        double[] ltemp2 = new double[2];
-        CalendarIF cal2 = null; // TODO: julian day looks to be calculated for the previous time. is this correct?
-        cal2 = GlobalInfo.getInstance().getCalendar(); // to calculate julian day
-        ltemp = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightQSW(lat,cal2.getYearDay()); // see line 713 in ibm.py
-        double maxLight = ltemp[0]/0.217; // radfl0 from  W/m2 to umol/m2/s-1 see line 714 in ibm.py
-        ltemp2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLightSurlig(lat,cal2.getYearDay(), maxLight); // see line 715 in ibm.py
-        eb2 = IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll,depth,bathym); // second part of Eb equation
+        // TODO: julian day looks to be calculated for the previous time. is this correct?
+        double slig = useLightField ? ctx.surfaceLight(lat) // see lines 713-715 in ibm.py
+                                    : ctx.surfaceLightExact(lat);
+        IBMFunction_NonEggStageBIOENGrowthRateDW.calcLight(chlorophyll,depth,bathym,eb2); // second part of Eb equation
         // TODO: figure out if chl-a should be at the surface
-        eb = 0.42*ltemp2[1]*eb2[1]*1E+15; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14
+        eb = 0.42*slig*eb2[1]*1E+15; // see line 727 in ibm.py. This is Eb. 0.42 as in Kearney et al 2020 Eq A14
         double ebs_org = eb*1E-15;
+        stepEb = ebs_org;
         ebtwozero = eb2[0];
         // Light (end):
 
@@ -885,7 +1006,7 @@ public class YSLStage extends AbstractLHS {
         if(T<=0.0) T=0.01; 
 
         //Days to 100% mortality        
-        durPNR  = (Double) fcnPNR.calculate(T);//only 1 alternative function currently defined
+        durPNR  = TypedFunctions.value(fcnPNR,T);//only 1 alternative function currently defined
         progPNR += dtday/durPNR;//integrated criterion for point-of-no return (progPNR=1)
         
         if (progPNR>=1.0){
@@ -895,7 +1016,7 @@ public class YSLStage extends AbstractLHS {
 
         } else {
             //Days to YSA (when it is ready to feed) 
-            durYSA  = (Double) fcnYSA.calculate(T);//only 1 alternative function currently defined        
+            durYSA  = TypedFunctions.value(fcnYSA,T);//only 1 alternative function currently defined        
             if (progYSA<1.0) { 
                 progYSA += dtday/durYSA;//integrated criterion for yolk-sac absorption (progYSA=1)
             }
@@ -907,11 +1028,11 @@ public class YSLStage extends AbstractLHS {
 
             //growth is same for feeding via ysa or active feeding 
             if (typeGrSL==YSLStageParameters.FCN_GrSL_YSL_GrowthRate) {
-                grSL = (Double) fcnGrSL.calculate(T);
+                grSL = TypedFunctions.value(fcnGrSL,T);
                 std_len += grSL*dtday;
             }
             if (typeGrSL==YSLStageParameters.FCN_GrSL_NonEggStageSTDGrowthRate) {
-                grSL = (Double) fcnGrSL.calculate(new Double[]{T,std_len});
+                grSL = TypedFunctions.value(fcnGrSL,T,std_len,args2);
                 std_len += grSL*dtday;
             }
 
@@ -964,7 +1085,7 @@ public class YSLStage extends AbstractLHS {
             if(progYSA >= 1.0) {
 
                 if(typeGrDW==YSLStageParameters.FCN_GrDW_NonEggStageSTDGrowthRate) {
-                    grRate = (Double) fcnGrDW.calculate(new Double[]{T,dry_wgt});
+                    grRate = TypedFunctions.value(fcnGrDW,T,dry_wgt,args2);
                     grDW = dry_wgt*(Math.exp(grRate*dtday) - 1);
                     gr_mg_fac = grDW;
                     dry_wgt += gr_mg_fac;
@@ -972,12 +1093,13 @@ public class YSLStage extends AbstractLHS {
                     // Feeding prob (classic approach):
                     prFeed  += dtday/(durPNR-durYSA);
                     prNotFed = 1.0-prFeed;
-                    double b = Math.random();
-                    logger.info("Check on first feeding for id "+id+": "+rndFeed+" <= "+prFeed+"?");
+                    if (rndFeed<0) rndFeed = rnd.nextDouble();
+                    if (EventLog.isEnabled(EventLog.EVENT_FIRST_FEEDING))
+                        EventLog.record(EventLog.EVENT_FIRST_FEEDING,id,time,rndFeed,prFeed);
                     if (rndFeed<=prFeed) hasFed = true;//feeding occurs, will transition to FDL stage
                 }  
                 if (typeGrDW==YSLStageParameters.FCN_GrDW_YSL_GrowthRate) {
-                    grRate = (Double) fcnGrDW.calculate(T);
+                    grRate = TypedFunctions.value(fcnGrDW,T);
                     grDW = dry_wgt*(Math.exp(grRate*dtday) - 1);
                     gr_mg_fac = grDW;
                     dry_wgt += gr_mg_fac;
@@ -985,61 +1107,118 @@ public class YSLStage extends AbstractLHS {
                     // Feeding prob (classic approach):
                     prFeed  += dtday/(durPNR-durYSA);
                     prNotFed = 1.0-prFeed;
-                    double b = Math.random();
-                    logger.info("Check on first feeding for id "+id+": "+rndFeed+" <= "+prFeed+"?");
+                    if (rndFeed<0) rndFeed = rnd.nextDouble();
+                    if (EventLog.isEnabled(EventLog.EVENT_FIRST_FEEDING))
+                        EventLog.record(EventLog.EVENT_FIRST_FEEDING,id,time,rndFeed,prFeed);
                     if (rndFeed<=prFeed) hasFed = true;//feeding occurs, will transition to FDL stage
                 } 
                 if (typeGrDW==YSLStageParameters.FCN_GrDW_NonEggStageBIOENGrowthRate) {
 
+                    updatePreyFields();
+                    double euphausiids_tot = euphausiids + euphausiidsShelf;
+                    if(euphausiids_tot<0.0) euphausiids_tot=0; 
+
                     // Turbulence and wind (begin)
-                    double windX = Math.abs(Math.sqrt(Math.abs(tauX)/(1.3*1.2E-3))); // Wind velocity In m/s
-                    double windY = Math.abs(Math.sqrt(Math.abs(tauY)/(1.3*1.2E-3))); // Wind velocity In m/s
+                    double windX = Math.abs(Math.sqrt(Math.abs(env.tauX)/(1.3*1.2E-3))); // Wind velocity In m/s
+                    double windY = Math.abs(Math.sqrt(Math.abs(env.tauY)/(1.3*1.2E-3))); // Wind velocity In m/s
                     // Turbulence and wind (end)
 
                     // Bioenergetic growth calculation:
-                    bioEN_output = (Double[]) fcnGrDW.calculate(new Double[]{T,old_dry_wgt,dt,dtday,old_std_len,ebs_org,windX,windY,depth,stmsta,eb2[0],euphausiids_tot,neocalanusShelf,neocalanus,copepods,pCO2val,ageFromYSL,dwmax}); //should length be at t or t-1?
-                    grDW = bioEN_output[0]; // grDW is gr_mg in TROND here
-                    meta = bioEN_output[1];
-                    sum_ing = bioEN_output[2];
-                    assi = bioEN_output[3];
-                    stomachFullness = bioEN_output[4];
-                    avgRank = bioEN_output[5];
-                    avgSize = bioEN_output[6];
-                    eps = bioEN_output[7]*1E+10; // just for outputing
-                    metamax = bioEN_output[8]; 
-                    grDWmax = bioEN_output[9]; 
-                    activityCost = 1*meta*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
-                    activityCostmax = 1*metamax*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
-
-                    // Update values:
-                    stmsta = Math.max(0, Math.min(0.06*old_dry_wgt, stmsta + sum_ing)); // gut_size= 0.06. TODO: check if sum_ing is 500 approx makes sense
-                    gr_mg_fac = Math.min(grDW + meta, stmsta*assi) - meta - activityCost; // Here grDW is as gr_mg in TROND
-
-                    //Calculate maxDW:
-                    dwmax += (grDWmax - activityCostmax);
-
-                    // new weight in mg:
-                    dry_wgt += gr_mg_fac;
-
-                    // Update (again) stmsta for next time step:
-                    stmsta = Math.max(0, stmsta - ((dry_wgt - old_dry_wgt) + meta)/assi);
-
-                    // Update Length:
-                    std_len = IBMFunction_NonEggStageBIOENGrowthRateDW.getL_fromW(dry_wgt, old_std_len);
-                    grSL = std_len - old_std_len;
-
-                    if(stomachFullness > 0.01) hasFed = true; //
+                    bioenIn.t = T;
+                    bioenIn.m = old_dry_wgt;
+                    bioenIn.dt = dt;
+                    bioenIn.dtday = dtday;
+                    bioenIn.std_len = old_std_len;
+                    bioenIn.eb = ebs_org;
+                    bioenIn.windX = windX;
+                    bioenIn.windY = windY;
+                    bioenIn.depth = depth;
+                    bioenIn.stm_sta = stmsta;
+                    bioenIn.attCoeff = eb2[0];
+                    bioenIn.eup = euphausiids_tot;
+                    bioenIn.ncas = neocalanusShelf;
+                    bioenIn.ncao = neocalanus;
+                    bioenIn.cop = copepods;
+                    bioenIn.pCO2 = pCO2val;
+                    bioenIn.ageFromYSL = ageFromYSL;
+                    bioenIn.dwmax = dwmax;
+                    bioenIn.tabulatedVisualRange = useTabulatedVisualRange;
+                    bioenIn.tabulatedCapture = useTabulatedCapture;
+                    bioenIn.random = rnd;
+                    stepPos = pos;
+                    stepT1 = T1;
+                    return bioenIn; //should length be at t or t-1?
 
                 }
 
             }
 
         }
-        
+        stepPos = pos;
+        stepT1 = T1;
+        return null;
+    }
+
+    /**
+     * Runs the rest of step(ctx): the BIOEN growth update, mortality and the
+     * update of the individual's position and attributes.
+     * 
+     * @param bioenOut - result of the BIOEN calculation (null if it is not used in this step)
+     */
+    @Override
+    public void endStep(BioenergeticsResult bioenOut) {
+        double dt = ctx.dt;//time step in seconds
+        double[] pos = stepPos;
+        stepPos = null;
+        double T1 = stepT1;
+        double old_dry_wgt = stepOldDryWgt;
+        double old_std_len = stepOldStdLen;
+        double ebs_org = stepEb;
+        if (bioenOut!=null) {
+            double gr_mg_fac = 0; // factor to avoid dry_wgt in IF 
+            double meta = 0;
+            double metamax = 0;
+            double grDWmax = 0;
+            double activityCostmax = 0;
+            double sum_ing = 0;
+            double assi = 0;
+            double costRateOfMetabolism = 0.5; // check this number
+            double activityCost = 0;
+            grDW = bioenOut.gr_mg; // grDW is gr_mg in TROND here
+            meta = bioenOut.meta;
+            sum_ing = bioenOut.ing;
+            assi = bioenOut.assi;
+            stomachFullness = bioenOut.stomachFullness;
+            avgRank = bioenOut.avgRank;
+            avgSize = bioenOut.avgSize;
+            eps = bioenOut.eps*1E+10; // just for outputing
+            metamax = bioenOut.metamax; 
+            grDWmax = bioenOut.gr_mg_max; 
+            activityCost = 1*meta*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
+            activityCostmax = 1*metamax*costRateOfMetabolism; // TODO: (diffZ/maxDiffZ) = 0.5, but this should change based on vertical movement
+
+            // Update values:
+            stmsta = Math.max(0, Math.min(0.06*old_dry_wgt, stmsta + sum_ing)); // gut_size= 0.06. TODO: check if sum_ing is 500 approx makes sense
+            gr_mg_fac = Math.min(grDW + meta, stmsta*assi) - meta - activityCost; // Here grDW is as gr_mg in TROND
+
+            //Calculate maxDW:
+            dwmax += (grDWmax - activityCostmax);
+
+            // new weight in mg:
+            dry_wgt += gr_mg_fac;
+
+            // Update (again) stmsta for next time step:
+            stmsta = Math.max(0, stmsta - ((dry_wgt - old_dry_wgt) + meta)/assi);
+
+            // Update Length:
+            std_len = IBMFunction_NonEggStageBIOENGrowthRateDW.getL_fromW(dry_wgt, old_std_len);
+            grSL = std_len - old_std_len;
+
+            if(stomachFullness > 0.01) hasFed = true; //
+        }
 
         // Survival rate (begin):
-        double[] mort_out = new double[5]; // for mortality output
-        mort_out = IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(old_std_len, ebs_org, eb2[0], dry_wgt, stomachFullness, dwmax); // mm2m = 0.001
+        double[] mort_out = IBMFunction_NonEggStageBIOENGrowthRateDW.TotalMortality(old_std_len, ebs_org, eb2[0], dry_wgt, stomachFullness, dwmax, useTabulatedVisualRange, mortOut); // mm2m = 0.001
         mortfish = mort_out[2];
         mortinv = mort_out[3];
         mortstarv = mort_out[4];
@@ -1063,7 +1242,7 @@ public class YSLStage extends AbstractLHS {
         updateNum(dt, mort_out[0]);
         updateAge(dt);
         updatePosition(pos);
-        interpolateEnvVars(pos);
+        interpolateEnvVars(pos,T1);//temperature at pos was interpolated above
         //check for exiting grid
         if (i3d.isAtGridEdge(pos,tolGridEdge)){
             alive=false;
@@ -1072,7 +1251,7 @@ public class YSLStage extends AbstractLHS {
         if (debug) {
             logger.info(toString());
         }
-        updateAttributes(); //update the attributes object w/ nmodified values
+        attsDirty = true; //attributes are updated from the modified values when needed (see getAttributes())
     }
     
     /**
@@ -1098,7 +1277,8 @@ public class YSLStage extends AbstractLHS {
                 * @param vars - double[]{dt}.
                 * @return     - movement rate as a Double 
                 */
-                w = (Double) fcnVV.calculate(new double[]{dt});
+                argsVV[0] = dt;
+                w = (Double) fcnVV.calculate(argsVV);
             }
             /**
             * Compute time of local sunrise, sunset and solar noon (in minutes, UTC) 
@@ -1115,16 +1295,8 @@ public class YSLStage extends AbstractLHS {
             * (if lat*declination>0, it's summer in the hemisphere, hence daytime). 
             * Alternatively, if the solar zenith angle > 90.833 deg, then it is night.
             */
-            CalendarIF cal = null;
-            double[] ss = null;
-            try {
-                cal = GlobalInfo.getInstance().getCalendar();
-                ss = DateTimeFunctions.computeSunriseSunset(lon,lat,cal.getYearDay());
-            } catch(java.lang.NullPointerException ex){
-                logger.info("NullPointerException for EggStage id: "+id);
-                logger.info("lon: "+lon+". lat: "+lat+". yearday: "+cal.getYearDay());
-                logger.info(ex.getMessage());
-            }
+            double zenith = useSolarEphemeris ? ctx.zenith(lon,lat)//solar zenith angle (deg)
+                                              : ctx.zenithExact(lon,lat);
             /**
             * @param vars - the inputs variables as a double[] array with elements
             *                  dt          - [0] - integration time step
@@ -1137,7 +1309,7 @@ public class YSLStage extends AbstractLHS {
             *              attached - flag indicating whether individual is attached to bottom(< 0) or not (>0)
             */
             double td = i3d.interpolateBathymetricDepth(lp.getIJK());
-            res = (double[]) fcnVM.calculate(new double[]{dt,depth,td,w,90.833-ss[4]});
+            res = (double[]) fcnVM.calculate(argsVM(dt,depth,td,w,90.833-zenith));
         }
         return res;
     }
@@ -1150,18 +1322,22 @@ public class YSLStage extends AbstractLHS {
      * @return 
      */
     public double[] calcUV(double[] pos, double dt) {
-        //calculate horizontal movement
-        double[] uv = {0.0,0.0};
+        //calculate horizontal movement (the returned array is reused between calls)
+        double[] uv = this.uv;
+        uv[0] = 0.0;
+        uv[1] = 0.0;
         if (!attached){
             if ((horizRWP>0)&&(Math.abs(dt)>0)) {
                 double r = Math.sqrt(horizRWP/Math.abs(dt));
-                uv[0] += r*rng.computeNormalVariate(); //stochastic swimming rate
-                uv[1] += r*rng.computeNormalVariate(); //stochastic swimming rate
+                uv[0] += r*rnd.nextNormal(); //stochastic swimming rate
+                uv[1] += r*rnd.nextNormal(); //stochastic swimming rate
                 if (debug) System.out.print("uv: "+r+"; "+uv[0]+", "+uv[1]+"\n");
             }
         }
         //return the result
-        return new double[]{Math.signum(dt)*uv[0],Math.signum(dt)*uv[1]};
+        uv[0] = Math.signum(dt)*uv[0];
+        uv[1] = Math.signum(dt)*uv[1];
+        return uv;
     }
     //WTS_NEW 2012-07-26:{
 
@@ -1216,12 +1392,41 @@ public class YSLStage extends AbstractLHS {
         updateTrack();
     }
     
+    /**
+     * Samples the prey densities and surface stress at the position at the 
+     * start of the current time step, if this has not been done yet.
+     * These are only needed by the BIOEN growth calculations after yolk-sac 
+     * absorption, so before that they are only sampled when reported.
+     * 
+     * The deferred sample is taken from the fields i3d holds when it is called,
+     * so getAttributes() and getReport() must be called after step(dt) and before
+     * the model advances the physical fields to the next time step (as the model
+     * loop does when it writes the results of a time step). Called later, they
+     * report prey densities from the new time step at the old position.
+     */
+    private void updatePreyFields() {
+        if (!preyPending) return;
+        preyPending = false;
+        EnvSampler.sampleZooplankton(i3d,preyPos,env);
+        copepods    = env.copepod;
+        euphausiids = env.euphausiid;
+        euphausiidsShelf = env.euphausiidShelf;
+        neocalanus  = env.neocalanus;
+        neocalanusShelf  = env.neocalanusShelf;
+        if(copepods<0.0) copepods=0; 
+        if(neocalanus<0.0) neocalanus=0; 
+        if(neocalanusShelf<0.0) neocalanusShelf=0; 
+    }
+    
     private void interpolateEnvVars(double[] pos) {
-        temperature = i3d.interpolateTemperature(pos);
-        salinity    = i3d.interpolateSalinity(pos);
-        if (i3d.getPhysicalEnvironment().getField("rho")!=null) 
-            rho  = i3d.interpolateValue(pos,"rho");
-        else rho = 0.0;
+        interpolateEnvVars(pos,i3d.interpolateTemperature(pos));
+    }
+    
+    private void interpolateEnvVars(double[] pos, double T) {
+        EnvSampler.samplePhysics(i3d,pos,T,env);
+        temperature = env.temperature;
+        salinity    = env.salinity;
+        rho         = env.rho;
     }
 
     @Override
@@ -1300,35 +1505,37 @@ public class YSLStage extends AbstractLHS {
      */
     @Override
     protected void updateAttributes() {
+        attsDirty = false;
         super.updateAttributes();
-        atts.setValue(YSLStageAttributes.PROP_attached,attached);
-        atts.setValue(YSLStageAttributes.PROP_SL,std_len);
-        atts.setValue(YSLStageAttributes.PROP_DW,dry_wgt);
-        atts.setValue(YSLStageAttributes.PROP_ageFromYSL,ageFromYSL);
-        atts.setValue(YSLStageAttributes.PROP_stmsta,stmsta);
-        atts.setValue(YSLStageAttributes.PROP_psurvival,psurvival);
-        atts.setValue(YSLStageAttributes.PROP_mortfish,mortfish);
-        atts.setValue(YSLStageAttributes.PROP_mortinv,mortinv);
-        atts.setValue(YSLStageAttributes.PROP_mortstarv,mortstarv);
-        atts.setValue(YSLStageAttributes.PROP_dwmax,dwmax);
-        atts.setValue(YSLStageAttributes.PROP_avgRank,avgRank);
-        atts.setValue(YSLStageAttributes.PROP_avgSize,avgSize);
-        atts.setValue(YSLStageAttributes.PROP_stomachFullness,stomachFullness);
-        atts.setValue(YSLStageAttributes.PROP_pCO2val,pCO2val);
-        atts.setValue(YSLStageAttributes.PROP_grSL,grSL);
-        atts.setValue(YSLStageAttributes.PROP_grDW,grDW);
-        atts.setValue(YSLStageAttributes.PROP_temperature,temperature);
-        atts.setValue(YSLStageAttributes.PROP_salinity,salinity);
-        atts.setValue(YSLStageAttributes.PROP_rho,rho);
-        atts.setValue(YSLStageAttributes.PROP_copepod,copepods);
-        atts.setValue(YSLStageAttributes.PROP_euphausiid,euphausiids);
-        atts.setValue(YSLStageAttributes.PROP_euphausiidShelf,euphausiidsShelf);
-        atts.setValue(YSLStageAttributes.PROP_neocalanus,neocalanus);
-        atts.setValue(YSLStageAttributes.PROP_neocalanusShelf,neocalanusShelf);
-        atts.setValue(YSLStageAttributes.PROP_microzoo,microzoo);
-        atts.setValue(YSLStageAttributes.PROP_eps,eps);
-        atts.setValue(YSLStageAttributes.PROP_eb,eb);
-        atts.setValue(YSLStageAttributes.PROP_ebtwozero,ebtwozero);
+        atts.setBoolean(YSLStageAttributes.SLOT_attached,attached);
+        atts.setDouble(YSLStageAttributes.SLOT_SL,std_len);
+        atts.setDouble(YSLStageAttributes.SLOT_DW,dry_wgt);
+        atts.setDouble(YSLStageAttributes.SLOT_ageFromYSL,ageFromYSL);
+        atts.setDouble(YSLStageAttributes.SLOT_stmsta,stmsta);
+        atts.setDouble(YSLStageAttributes.SLOT_psurvival,psurvival);
+        atts.setDouble(YSLStageAttributes.SLOT_mortfish,mortfish);
+        atts.setDouble(YSLStageAttributes.SLOT_mortinv,mortinv);
+        atts.setDouble(YSLStageAttributes.SLOT_mortstarv,mortstarv);
+        atts.setDouble(YSLStageAttributes.SLOT_dwmax,dwmax);
+        atts.setDouble(YSLStageAttributes.SLOT_avgRank,avgRank);
+        atts.setDouble(YSLStageAttributes.SLOT_avgSize,avgSize);
+        atts.setDouble(YSLStageAttributes.SLOT_stomachFullness,stomachFullness);
+        atts.setDouble(YSLStageAttributes.SLOT_pCO2val,pCO2val);
+        atts.setDouble(YSLStageAttributes.SLOT_grSL,grSL);
+        atts.setDouble(YSLStageAttributes.SLOT_grDW,grDW);
+        atts.setDouble(YSLStageAttributes.SLOT_temperature,temperature);
+        atts.setDouble(YSLStageAttributes.SLOT_salinity,salinity);
+        atts.setDouble(YSLStageAttributes.SLOT_rho,rho);
+        atts.setDouble(YSLStageAttributes.SLOT_copepod,copepods);
+        atts.setDouble(YSLStageAttributes.SLOT_euphausiid,euphausiids);
+        atts.setDouble(YSLStageAttributes.SLOT_euphausiidShelf,euphausiidsShelf);
+        atts.setDouble(YSLStageAttributes.SLOT_neocalanus,neocalanus);
+        atts.setDouble(YSLStageAttributes.SLOT_neocalanusShelf,neocalanusShelf);
+        atts.setDouble(YSLStageAttributes.SLOT_microzoo,microzoo);
+        atts.setDouble(YSLStageAttributes.SLOT_eps,eps);
+        atts.setDouble(YSLStageAttributes.SLOT_eb,eb);
+        atts.setDouble(YSLStageAttributes.SLOT_ebtwozero,ebtwozero);
+        if (rnd!=null) atts.setDouble(YSLStageAttributes.SLOT_rngDraws,(double) rnd.getCounter());
         atts.setValue(YSLStageAttributes.PROP_progYSA,progYSA);
         atts.setValue(YSLStageAttributes.PROP_progPNR,progPNR);
         atts.setValue(YSLStageAttributes.PROP_prNotFed,prNotFed);
@@ -1340,37 +1547,50 @@ public class YSLStage extends AbstractLHS {
     @Override
     protected void updateVariables() {
         super.updateVariables();
-        attached    = atts.getValue(YSLStageAttributes.PROP_attached,attached);
-        std_len     = atts.getValue(YSLStageAttributes.PROP_SL,std_len); 
-        dry_wgt     = atts.getValue(YSLStageAttributes.PROP_DW,dry_wgt);
-        ageFromYSL     = atts.getValue(YSLStageAttributes.PROP_ageFromYSL,ageFromYSL);
-        stmsta    = atts.getValue(YSLStageAttributes.PROP_stmsta,stmsta); 
-        psurvival    = atts.getValue(YSLStageAttributes.PROP_psurvival,psurvival);   
-        mortfish    = atts.getValue(YSLStageAttributes.PROP_mortfish,mortfish);   
-        mortinv    = atts.getValue(YSLStageAttributes.PROP_mortinv,mortinv);   
-        mortstarv    = atts.getValue(YSLStageAttributes.PROP_mortstarv,mortstarv); 
-        dwmax    = atts.getValue(YSLStageAttributes.PROP_dwmax,dwmax); 
-        avgRank    = atts.getValue(YSLStageAttributes.PROP_avgRank,avgRank);   
-        avgSize    = atts.getValue(YSLStageAttributes.PROP_avgSize,avgSize);   
-        stomachFullness    = atts.getValue(YSLStageAttributes.PROP_stomachFullness,stomachFullness);   
-        pCO2val    = atts.getValue(YSLStageAttributes.PROP_pCO2val,pCO2val);   
-        grSL        = atts.getValue(YSLStageAttributes.PROP_grSL,grSL); 
-        grDW        = atts.getValue(YSLStageAttributes.PROP_grDW,grDW); 
-        temperature = atts.getValue(YSLStageAttributes.PROP_temperature,temperature);
-        salinity    = atts.getValue(YSLStageAttributes.PROP_salinity,salinity);
-        rho         = atts.getValue(YSLStageAttributes.PROP_rho,rho);
-        copepods    = atts.getValue(YSLStageAttributes.PROP_copepod,copepods);
-        euphausiids = atts.getValue(YSLStageAttributes.PROP_euphausiid,euphausiids);
-        euphausiidsShelf = atts.getValue(YSLStageAttributes.PROP_euphausiidShelf,euphausiidsShelf);
-        neocalanus  = atts.getValue(YSLStageAttributes.PROP_neocalanus,neocalanus);
-        neocalanusShelf = atts.getValue(YSLStageAttributes.PROP_neocalanusShelf,neocalanusShelf);
-        microzoo  = atts.getValue(YSLStageAttributes.PROP_microzoo,microzoo);
-        eps  = atts.getValue(YSLStageAttributes.PROP_eps,eps);
-        eb  = atts.getValue(YSLStageAttributes.PROP_eb,eb);
-        ebtwozero  = atts.getValue(YSLStageAttributes.PROP_ebtwozero,ebtwozero);
+        attached    = atts.getBoolean(YSLStageAttributes.SLOT_attached);
+        std_len     = atts.getDouble(YSLStageAttributes.SLOT_SL); 
+        dry_wgt     = atts.getDouble(YSLStageAttributes.SLOT_DW);
+        ageFromYSL     = atts.getDouble(YSLStageAttributes.SLOT_ageFromYSL);
+        stmsta    = atts.getDouble(YSLStageAttributes.SLOT_stmsta); 
+        psurvival    = atts.getDouble(YSLStageAttributes.SLOT_psurvival);   
+        mortfish    = atts.getDouble(YSLStageAttributes.SLOT_mortfish);   
+        mortinv    = atts.getDouble(YSLStageAttributes.SLOT_mortinv);   
+        mortstarv    = atts.getDouble(YSLStageAttributes.SLOT_mortstarv); 
+        dwmax    = atts.getDouble(YSLStageAttributes.SLOT_dwmax); 
+        avgRank    = atts.getDouble(YSLStageAttributes.SLOT_avgRank);   
+        avgSize    = atts.getDouble(YSLStageAttributes.SLOT_avgSize);   
+        stomachFullness    = atts.getDouble(YSLStageAttributes.SLOT_stomachFullness);   
+        pCO2val    = atts.getDouble(YSLStageAttributes.SLOT_pCO2val);   
+        grSL        = atts.getDouble(YSLStageAttributes.SLOT_grSL); 
+        grDW        = atts.getDouble(YSLStageAttributes.SLOT_grDW); 
+        temperature = atts.getDouble(YSLStageAttributes.SLOT_temperature);
+        salinity    = atts.getDouble(YSLStageAttributes.SLOT_salinity);
+        rho         = atts.getDouble(YSLStageAttributes.SLOT_rho);
+        copepods    = atts.getDouble(YSLStageAttributes.SLOT_copepod);
+        euphausiids = atts.getDouble(YSLStageAttributes.SLOT_euphausiid);
+        euphausiidsShelf = atts.getDouble(YSLStageAttributes.SLOT_euphausiidShelf);
+        neocalanus  = atts.getDouble(YSLStageAttributes.SLOT_neocalanus);
+        neocalanusShelf = atts.getDouble(YSLStageAttributes.SLOT_neocalanusShelf);
+        microzoo  = atts.getDouble(YSLStageAttributes.SLOT_microzoo);
+        eps  = atts.getDouble(YSLStageAttributes.SLOT_eps);
+        eb  = atts.getDouble(YSLStageAttributes.SLOT_eb);
+        ebtwozero  = atts.getDouble(YSLStageAttributes.SLOT_ebtwozero);
+        rnd = new IndividualRandomStream(id,(long) atts.getDouble(YSLStageAttributes.SLOT_rngDraws));
         progYSA     = atts.getValue(YSLStageAttributes.PROP_progYSA,progYSA); 
         progPNR     = atts.getValue(YSLStageAttributes.PROP_progPNR,progPNR); 
         prNotFed    = atts.getValue(YSLStageAttributes.PROP_prNotFed,prNotFed); 
     }
 
+
+    /**
+     * Returns the reusable argument array for fcnVM, set to {dt,depth,td,w,lightLevel}.
+     */
+    private double[] argsVM(double dt, double depth, double td, double w, double lightLevel) {
+        vmArgs[0] = dt;
+        vmArgs[1] = depth;
+        vmArgs[2] = td;
+        vmArgs[3] = w;
+        vmArgs[4] = lightLevel;
+        return vmArgs;
+    }
 }
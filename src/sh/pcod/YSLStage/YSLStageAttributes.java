@@ -5,12 +5,15 @@
  *   Added "attached" as attribute due to changes in DisMELS framework
  * 20210208: 1. extends AbstractLarvalAttributes.
  * 20210209: 1. added PROPs for YSA, PNR, and PrNotFed.
+ * 20261016: 1. Static attribute schema built once in the nested class Schema
+ *               (unmodifiable, safely published) instead of by the first instance.
  *
  */
 
 package sh.pcod.YSLStage;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -39,16 +42,56 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     /** key for the probability of NOT having fed attribute */
     public static final String PROP_prNotFed  = "probability of not having fed";
     
-    /** these fields HIDE static fields from superclass and should incorporate ALL information from superclasses */
+    /** total number of attributes (including typeName and superclass attributes) */
     protected static final int numAttributes = AbstractLarvalAttributes.numAttributes+numNewAttributes;
-    protected static final Set<String> keys = new LinkedHashSet<>(2*numAttributes);
-    protected static final Map<String,IBMAttribute> mapAttributes = new HashMap<>(2*numAttributes);
-    protected static final String[] aKeys      = new String[numAttributes-1];//does not include typeName
-    protected static final Class[]  classes    = new Class[numAttributes];
-    protected static final String[] shortNames = new String[numAttributes];
    
     private static final Logger logger = Logger.getLogger(YSLStageAttributes.class.getName());
     
+    /**
+     * Static schema (keys and attributes, including those defined by the 
+     * superclasses) for the attributes. This HIDES the superclass schema.
+     * 
+     * As for the superclass schema, it is built once, in the static initializer,
+     * when it is first used, and is safely published and unmodifiable.
+     */
+    protected static final class Schema {
+        /** keys for all attributes (including typeName), in order */
+        public static final Set<String> keys;
+        /** map from keys to attributes */
+        public static final Map<String,IBMAttribute> mapAttributes;
+        /** keys for all attributes, not including typeName */
+        public static final String[] aKeys;
+        /** classes of the attribute values (including typeName) */
+        public static final Class[]  classes;
+        /** short names of the attributes (including typeName) */
+        public static final String[] shortNames;
+        
+        static {
+            Set<String> keySet = new LinkedHashSet<>(2*numAttributes);
+            Map<String,IBMAttribute> attMap = new HashMap<>(2*numAttributes);
+            keySet.addAll(AbstractLarvalAttributes.Schema.keys);//add from superclass
+            attMap.putAll(AbstractLarvalAttributes.Schema.mapAttributes);//add from superclass
+            String key;
+            key = PROP_progYSA;  keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"progYSA"));
+            key = PROP_progPNR;  keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"progPNR"));
+            key = PROP_prNotFed; keySet.add(key); attMap.put(key,new IBMAttributeDouble(key,"prNotFed"));
+            keys          = Collections.unmodifiableSet(keySet);
+            mapAttributes = Collections.unmodifiableMap(attMap);
+            aKeys      = new String[numAttributes-1];//does not include typeName
+            classes    = new Class[numAttributes];
+            shortNames = new String[numAttributes];
+            int j = 0;
+            for (String k: keys){
+                classes[j]    = mapAttributes.get(k).getValueClass();
+                shortNames[j] = mapAttributes.get(k).shortName;
+                if (j>0) aKeys[j-1] = k;
+                j++;
+            }
+        }
+        
+        private Schema(){}
+    }
+    
     /**
      * This constructor is provided only to facilitate the ServiceProvider functionality.
      * DO NOT USE IT!!
@@ -68,25 +111,8 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     
     /**
      * This method adds default values for the new attributes to the superclass field "mapValues".
-     * 
-     * When the first instance of this class is created, this method also fills in 
-     * the static fields "keys" and "mapAttributes" with keys and attributes from the 
-     * superclass and from this class.
      */
     private void finishInstantiation(){
-        if (keys.isEmpty()){
-            //set static field information
-            keys.addAll(AbstractLarvalAttributes.keys);//add from superclass
-            mapAttributes.putAll(AbstractLarvalAttributes.mapAttributes);//add from superclass
-            String key;
-            key = PROP_progYSA;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"progYSA"));
-            key = PROP_progPNR;  keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"progPNR"));
-            key = PROP_prNotFed; keys.add(key); mapAttributes.put(key,new IBMAttributeDouble(key,"prNotFed"));
-            
-            Iterator<String> it = keys.iterator();
-            int j = 0; it.next();//skip typeName
-            while (it.hasNext()) aKeys[j++] = it.next();
-        }
         //set instance information
         Map<String,Object> tmpMapValues = new HashMap<>(2*numAttributes);
         tmpMapValues.putAll(mapValues);//copy from super
@@ -104,7 +130,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     @Override
     public Object clone() {
         YSLStageAttributes clone = new YSLStageAttributes(typeName);
-        for (String key: keys) clone.setValue(key,this.getValue(key));
+        for (String key: Schema.keys) clone.setValue(key,this.getValue(key));
         return clone;
     }
 
@@ -130,9 +156,9 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public ArrayList getArrayList() {
-        ArrayList a = new ArrayList(keys.size());
+        ArrayList a = new ArrayList(Schema.keys.size());
         a.add(typeName);
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) a.add(getValue(it.next()));
         return a;
@@ -147,7 +173,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     public Object[] getAttributes() {
         Object[] atts = new Object[numAttributes-1];
         int j = 0;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip PROP_typeName
         while (it.hasNext()) atts[j++] = getValue(it.next()); 
         return atts;
@@ -161,7 +187,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     @Override
     public String getCSV() {
         String str = typeName;
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         it.next();//skip typeName
         while (it.hasNext()) {
             String key = it.next();
@@ -179,7 +205,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public String getCSVHeader() {
-        Iterator<String> it = keys.iterator();
+        Iterator<String> it = Schema.keys.iterator();
         String str = it.next();//typeName
         while (it.hasNext()) str = str+cc+it.next();
         return str;
@@ -193,9 +219,9 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public String getCSVHeaderShortNames() {
-        Iterator<String> it = keys.iterator();
-        String str = mapAttributes.get(it.next()).shortName;//this is "typeName"
-        while (it.hasNext())  str = str+cc+mapAttributes.get(it.next()).shortName;
+        Iterator<String> it = Schema.keys.iterator();
+        String str = Schema.mapAttributes.get(it.next()).shortName;//this is "typeName"
+        while (it.hasNext())  str = str+cc+Schema.mapAttributes.get(it.next()).shortName;
         return str;
     }
     
@@ -207,13 +233,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public Class[] getClasses() {
-        if (classes[0]==null){
-            int j = 0;
-            for (String key: keys){
-                classes[j++] = mapAttributes.get(key).getValueClass();
-            }
-        }
-        return classes;
+        return Schema.classes;
     }
 
     /**
@@ -224,7 +244,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public String[] getKeys() {        
-        return aKeys;
+        return Schema.aKeys;
     }
 
     /**
@@ -235,13 +255,7 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
      */
     @Override
     public String[] getShortNames() {
-        if (shortNames[0]==null){
-            int j = 0;
-            for (String key: keys){
-                shortNames[j++] = mapAttributes.get(key).shortName;
-            }
-        }
-        return shortNames;
+        return Schema.shortNames;
     }
     
     /**
@@ -252,13 +266,13 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     public void setValues(final String[] strv) {
         int j = 1;
         try {
-            Iterator<String> it = keys.iterator();
+            Iterator<String> it = Schema.keys.iterator();
             it.next();//skip typeName
             while (it.hasNext()) setValueFromString(it.next(),strv[j++]);
         } catch (java.lang.IndexOutOfBoundsException ex) {
             //@TODO: should throw an exception here that identifies the problem
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
                 String str = "Missing attribute value for "+aKeys[j]+".\n"+
                              "Prior values are ";
                 for (int i=0;i<(j);i++) str = str+strv[i]+" ";
@@ -269,8 +283,8 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
                         javax.swing.JOptionPane.ERROR_MESSAGE);
                 throw ex;
         } catch (java.lang.NumberFormatException ex) {
-            String[] aKeys = new String[keys.size()];
-            aKeys = keys.toArray(aKeys);
+            String[] aKeys = new String[Schema.keys.size()];
+            aKeys = Schema.keys.toArray(aKeys);
             String str = "Bad attribute value for "+aKeys[j-2]+".\n"+
                          "Value was '"+strv[j-1]+"'.\n"+
                          "Entry was '";
@@ -302,18 +316,23 @@ public class YSLStageAttributes extends AbstractLarvalAttributes {
     @Override
     public String getValueAsString(String key){
         Object val = getValue(key);
-        IBMAttribute att = mapAttributes.get(key);
-        att.setValue(val);
-        String str = att.getValueAsString();
-        return str;
+        IBMAttribute att = Schema.mapAttributes.get(key);
+        synchronized(att) {//the schema attributes are shared by all instances
+            att.setValue(val);
+            return att.getValueAsString();
+        }
     }
     
     @Override
     public void setValueFromString(String key, String value) throws NumberFormatException {
         if (!key.equals(PROP_typeName)){
-            IBMAttribute att = mapAttributes.get(key);
-            att.parseValue(value);
-            setValue(key,att.getValue());
+            IBMAttribute att = Schema.mapAttributes.get(key);
+            Object val;
+            synchronized(att) {//the schema attributes are shared by all instances
+                att.parseValue(value);
+                val = att.getValue();
+            }
+            setValue(key,val);
         }
     }
 }